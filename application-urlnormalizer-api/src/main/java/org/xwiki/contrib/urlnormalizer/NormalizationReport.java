@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.stability.Unstable;
+
+/**
+ * The per-document results of the normalization of a set of documents, see
+ * {@link URLNormalizationManager#normalize(java.util.Collection, java.util.List, boolean, int)}.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Unstable
+public class NormalizationReport
+{
+    /**
+     * The possible results of the normalization of a document.
+     *
+     * @version $Id$
+     */
+    public enum Status
+    {
+        /**
+         * The document has been modified and saved.
+         */
+        MODIFIED,
+
+        /**
+         * There was nothing to normalize in the document.
+         */
+        UNCHANGED,
+
+        /**
+         * The document could not be loaded, normalized or saved.
+         */
+        FAILED
+    }
+
+    private final Map<DocumentReference, Status> statuses = new LinkedHashMap<>();
+
+    private final Map<DocumentReference, NormalizationException> errors = new HashMap<>();
+
+    /**
+     * @param documentReference the normalized document
+     * @param documentModified true if the document has been modified and saved
+     */
+    public void addResult(DocumentReference documentReference, boolean documentModified)
+    {
+        this.statuses.put(documentReference, documentModified ? Status.MODIFIED : Status.UNCHANGED);
+        this.errors.remove(documentReference);
+    }
+
+    /**
+     * @param documentReference the document which could not be normalized
+     * @param error the reason of the failure
+     */
+    public void addFailure(DocumentReference documentReference, NormalizationException error)
+    {
+        this.statuses.put(documentReference, Status.FAILED);
+        this.errors.put(documentReference, error);
+    }
+
+    /**
+     * @return the handled documents, in the order in which their result was known
+     */
+    public Set<DocumentReference> getDocuments()
+    {
+        return Collections.unmodifiableSet(this.statuses.keySet());
+    }
+
+    /**
+     * @param documentReference the reference of a document
+     * @return the result of the normalization of the passed document, null if it was not handled
+     */
+    public Status getStatus(DocumentReference documentReference)
+    {
+        return this.statuses.get(documentReference);
+    }
+
+    /**
+     * @param documentReference the reference of a document
+     * @return the reason why the normalization of the passed document failed, null if it did not fail
+     */
+    public NormalizationException getError(DocumentReference documentReference)
+    {
+        return this.errors.get(documentReference);
+    }
+
+    /**
+     * @return the number of modified documents
+     */
+    public int getModifiedCount()
+    {
+        return count(Status.MODIFIED);
+    }
+
+    /**
+     * @return the number of documents which could not be normalized
+     */
+    public int getFailedCount()
+    {
+        return count(Status.FAILED);
+    }
+
+    private int count(Status status)
+    {
+        return (int) this.statuses.values().stream().filter(status::equals).count();
+    }
+}
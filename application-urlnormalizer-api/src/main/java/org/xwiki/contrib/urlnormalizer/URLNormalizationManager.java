@@ -19,7 +19,9 @@
  */
 package org.xwiki.contrib.urlnormalizer;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.DocumentReference;
@@ -87,7 +89,9 @@ public interface URLNormalizationManager
     boolean normalize(DocumentReference documentReference, List<String> normalizers) throws NormalizationException;
 
     /**
-     * Normalize the given {@link DocumentReference}. See {@link #normalize(DocumentReference, List, boolean)}.
+     * Normalize the given {@link DocumentReference}. See {@link #normalize(DocumentReference, List, boolean)}. A copy
+     * of the cached document is normalized, and it's not saved (an exception is thrown) when the document has been
+     * saved by someone else in the meantime.
      *
      * @param documentReference the document to normalize
      * @param normalizers a list of hints for {@link DocumentNormalizer} components to be used on the document. See
@@ -98,4 +102,36 @@ public interface URLNormalizationManager
      */
     boolean normalize(DocumentReference documentReference, List<String> normalizers, boolean createNewVersion)
         throws NormalizationException;
+
+    /**
+     * Normalize the given documents and save the modified ones. Each document is normalized and saved on its own
+     * (firing the usual save events) as with {@link #normalize(DocumentReference, List, boolean)}. There is no
+     * rollback: a document which cannot be loaded, normalized or saved (including a document saved by someone else
+     * during its normalization) is reported as a failure and doesn't prevent the other documents from being saved, and
+     * the documents saved before a failure stay saved.
+     *
+     * @param documentReferences the documents to normalize
+     * @param normalizers a list of hints for {@link DocumentNormalizer} components to be used on the documents. See
+     * {@link #normalize(DocumentReference, List)}.
+     * @param createNewVersion defines whether a new document version should be created if the document is saved.
+     * @return the result of the normalization of each document
+     * @since 1.9.1
+     */
+    NormalizationReport normalize(Collection<DocumentReference> documentReferences, List<String> normalizers,
+        boolean createNewVersion);
+
+    /**
+     * Normalize the given documents without saving them (dry-run), to know which documents would be modified and how.
+     *
+     * @param documentReferences the documents to normalize
+     * @param normalizers a list of hints for {@link DocumentNormalizer} components to be used on the documents. See
+     * {@link #normalize(DocumentReference, List)}.
+     * @param rewrites called for each reference which would be rewritten, possibly from several threads when
+     * the method is called concurrently
+     * @return the result of the normalization of each document, {@link NormalizationReport.Status#MODIFIED} meaning
+     * that the document would be modified
+     * @since 1.9.1
+     */
+    NormalizationReport dryRun(Collection<DocumentReference> documentReferences, List<String> normalizers,
+        Consumer<URLRewrite> rewrites);
 }
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A reference rewritten (or which would be rewritten in dry-run mode) by the normalization of a document.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Unstable
+public class URLRewrite
+{
+    private final DocumentReference document;
+
+    private final EntityReference location;
+
+    private final ResourceReference oldReference;
+
+    private final ResourceReference newReference;
+
+    private final String filter;
+
+    /**
+     * @param document the normalized document
+     * @param location the location of the reference in the document: the document itself for its content or the
+     *            reference of an object property
+     * @param oldReference the reference before the normalization
+     * @param newReference the reference after the normalization
+     * @param filter the pattern of the filter which produced the new reference, null if it was produced by the
+     *            standard conversion of local URLs
+     */
+    public URLRewrite(DocumentReference document, EntityReference location, ResourceReference oldReference,
+        ResourceReference newReference, String filter)
+    {
+        this.document = document;
+        this.location = location;
+        this.oldReference = oldReference;
+        this.newReference = newReference;
+        this.filter = filter;
+    }
+
+    /**
+     * @return the normalized document
+     */
+    public DocumentReference getDocument()
+    {
+        return this.document;
+    }
+
+    /**
+     * @return the location of the reference in the document: the document itself for its content or the reference of
+     *         an object property
+     */
+    public EntityReference getLocation()
+    {
+        return this.location;
+    }
+
+    /**
+     * @return the reference before the normalization
+     */
+    public ResourceReference getOldReference()
+    {
+        return this.oldReference;
+    }
+
+    /**
+     * @return the reference after the normalization
+     */
+    public ResourceReference getNewReference()
+    {
+        return this.newReference;
+    }
+
+    /**
+     * @return the pattern of the filter which produced the new reference, null if it was produced by the standard
+     *         conversion of local URLs
+     */
+    public String getFilter()
+    {
+        return this.filter;
+    }
+}
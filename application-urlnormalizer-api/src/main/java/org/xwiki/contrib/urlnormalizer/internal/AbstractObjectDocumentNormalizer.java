@@ -65,6 +65,15 @@ public abstract class AbstractObjectDocumentNormalizer implements DocumentNormal
     @Inject
     protected Provider<XWikiContext> xcontextProvider;
 
+    @Inject
+    protected URLCandidateScanner scanner;
+
+    @Inject
+    protected URLNormalizerMetrics metrics;
+
+    @Inject
+    protected URLRewriteRecorder recorder;
+
     /**
      * Normalize the given XObject property.
      *
@@ -85,17 +94,37 @@ public abstract class AbstractObjectDocumentNormalizer implements DocumentNormal
         if (propertyClass instanceof TextAreaClass && ((TextAreaClass) propertyClass).isWikiContent()) {
             String content = (String) property.getValue();
 
+            // Don't parse the content when it cannot contain anything to normalize
+            if (!this.scanner.mayContainCandidate(content)) {
+                return false;
+            }
+
+            this.recorder.setLocation(property.getReference());
+
             try {
+                long start = System.nanoTime();
                 XDOM xdom = parser.parse(new StringReader(content));
+                this.metrics.parsed(System.nanoTime() - start);
 
-                boolean modified = this.linkXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-                modified |= this.imageXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-                modified |= this.macroXDOMNormalizer.normalize(xdom, parser, blockRenderer);
+                // Walk the XDOM only once for all the normalizers
+                CompositeXDOMNormalizer normalizer = new CompositeXDOMNormalizer(this.linkXDOMNormalizer,
+                    this.imageXDOMNormalizer, this.macroXDOMNormalizer);
+                MarkupSplicer splicer = new MarkupSplicer(blockRenderer);
+                normalizer.setMarkupSplicer(splicer);
+                start = System.nanoTime();
+                boolean modified = normalizer.normalize(xdom, parser, blockRenderer);
+                this.metrics.normalized(System.nanoTime() - start);
 
                 if (modified) {
-                    WikiPrinter wikiPrinter = new DefaultWikiPrinter();
-                    blockRenderer.render(xdom, wikiPrinter);
-                    String normalizedContent = wikiPrinter.toString();
+                    // Only rewrite the modified markup when possible, to keep the rest of the content as is
+                    start = System.nanoTime();
+                    String normalizedContent = splicer.splice(content, xdom, parser);
+                    if (normalizedContent == null) {
+                        WikiPrinter wikiPrinter = new DefaultWikiPrinter();
+                        blockRenderer.render(xdom, wikiPrinter);
+                        normalizedContent = wikiPrinter.toString();
+                    }
+                    this.metrics.rendered(System.nanoTime() - start);
                     property.setValue(normalizedContent);
                 }
 
@@ -49,7 +49,7 @@ import org.xwiki.rendering.renderer.BlockRenderer;
  * @version $Id$
  * @since 1.9.0
  */
-public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> implements XDOMNormalizer
+public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> implements XDOMBlockNormalizer
 {
     @Inject
     protected Logger logger;
@@ -57,6 +57,9 @@ public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> i
     @Inject
     protected ResourceReferenceNormalizer resourceReferenceNormalizer;
 
+    @Inject
+    protected URLRewriteRecorder recorder;
+
     @Override
     public boolean normalize(XDOM xdom, Parser parser, BlockRenderer blockRenderer)
     {
@@ -72,6 +75,23 @@ public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> i
         return normalized;
     }
 
+    @Override
+    public Block normalize(Block block, XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+    {
+        Class<T> type = getTypeParameterClass();
+
+        if (type.isInstance(block)) {
+            List<T> blocks = new ArrayList<>(1);
+            blocks.add(type.cast(block));
+
+            if (normalize(blocks)) {
+                return blocks.get(0);
+            }
+        }
+
+        return block;
+    }
+
     /**
      * @return the class of the type parameter.
      */
@@ -84,7 +104,15 @@ public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> i
      */
     protected abstract boolean normalize(List<T> blocks);
 
-    protected boolean handleQueryStringParameters(T block, ResourceReference newReference)
+    /**
+     * Merge the query string parameters of the normalized reference into the passed block parameters. The original
+     * block is not modified so that its markup can still be rendered once it's replaced.
+     *
+     * @param parameters the parameters of the new block, initialized with the parameters of the original block
+     * @param newReference the normalized reference
+     * @return true if the normalization should be aborted because a query string parameter would be lost
+     */
+    protected boolean handleQueryStringParameters(Map<String, String> parameters, ResourceReference newReference)
     {
         // Note: We need to merge the query string parameters coming from the URL (and stored as parameters in
         // the normalized ResourceReference) with any existing "queryString" Block parameters.
@@ -96,7 +124,7 @@ public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> i
 
         // Parse the query string into a data structure to which we can easily add new items to
         List<NameValuePair> queryStringParameters;
-        String queryString = block.getParameter(DocumentResourceReference.QUERY_STRING);
+        String queryString = parameters.get(DocumentResourceReference.QUERY_STRING);
         if (StringUtils.isEmpty(queryString)) {
             queryStringParameters = new ArrayList<>();
         } else {
@@ -118,7 +146,7 @@ public abstract class AbstractResourceReferenceXDOMNormalizer<T extends Block> i
             // empty
             String newQueryString = formatQueryString(queryStringParameters);
             if (!StringUtils.isEmpty(newQueryString)) {
-                block.setParameter(DocumentResourceReference.QUERY_STRING, newQueryString);
+                parameters.put(DocumentResourceReference.QUERY_STRING, newQueryString);
             }
 
             // Remove the parameters from the newReference since we've now moved them as link block parameters
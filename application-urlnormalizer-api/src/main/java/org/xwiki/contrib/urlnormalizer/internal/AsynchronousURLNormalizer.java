@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Normalize saved documents in the background. Repeated saves of a document waiting to be normalized are coalesced
+ * and the document is normalized synchronously when the queue is full.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = AsynchronousURLNormalizer.class)
+@Singleton
+public class AsynchronousURLNormalizer implements Disposable
+{
+    /**
+     * The maximum number of documents waiting to be normalized.
+     */
+    static final int QUEUE_CAPACITY = 10000;
+
+    @Inject
+    private URLNormalizationManager manager;
+
+    @Inject
+    private URLNormalizerMetrics metrics;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    private final BlockingQueue<DocumentReference> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Set<DocumentReference> queued = ConcurrentHashMap.newKeySet();
+
+    private volatile ExecutorService executor;
+
+    @Override
+    public void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Normalize the passed saved document in the background.
+     * 
+     * @param documentReference the reference of the saved document
+     */
+    public void normalize(DocumentReference documentReference)
+    {
+        if (this.executor == null) {
+            startWorker();
+        }
+
+        // Coalesce with a pending normalization of the same document
+        if (this.queued.add(documentReference)) {
+            this.metrics.queued();
+
+            if (!this.queue.offer(documentReference)) {
+                this.metrics.dequeued();
+                this.queued.remove(documentReference);
+
+                this.logger.debug("The normalization queue is full, normalizing [{}] synchronously",
+                    documentReference);
+
+                normalizeNow(documentReference);
+            }
+        }
+    }
+
+    private synchronized void startWorker()
+    {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("URL Normalizer").daemon(true).priority(Thread.MIN_PRIORITY).build());
+            this.executor.execute(this::run);
+        }
+    }
+
+    private void run()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            DocumentReference documentReference;
+            try {
+                documentReference = this.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+
+            this.metrics.dequeued();
+
+            // A save happening from now on requires a new normalization
+            this.queued.remove(documentReference);
+
+            try {
+                this.executionContextManager.initialize(new ExecutionContext());
+                this.xcontextProvider.get().setWikiId(documentReference.getWikiReference().getName());
+
+                normalizeNow(documentReference);
+            } catch (Exception e) {
+                this.logger.error("Failed to normalize document [{}] in the background", documentReference, e);
+            } finally {
+                this.execution.removeContext();
+            }
+        }
+    }
+
+    private void normalizeNow(DocumentReference documentReference)
+    {
+        try {
+            // The document is already saved: normalize all its objects and don't create a new version
+            this.manager.normalize(documentReference, Collections.emptyList(), false);
+        } catch (DocumentModifiedException e) {
+            this.logger.debug("Document [{}] was modified during its normalization, normalizing it again later",
+                documentReference);
+
+            requeue(documentReference);
+        } catch (NormalizationException e) {
+            this.logger.warn("Unable to normalize URLs for document [{}]. Root error [{}]", documentReference,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private void requeue(DocumentReference documentReference)
+    {
+        // The save which modified the document might already have queued it again
+        if (this.queued.add(documentReference)) {
+            this.metrics.queued();
+
+            if (!this.queue.offer(documentReference)) {
+                this.metrics.dequeued();
+                this.queued.remove(documentReference);
+
+                this.logger.warn("The normalization queue is full, document [{}] modified during its normalization"
+                    + " won't be normalized again", documentReference);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+/**
+ * Apply several {@link XDOMNormalizer}s to an XDOM in a single walk of the tree. The {@link XDOMBlockNormalizer}s are
+ * called for each block in the order they were passed, the other normalizers are called on the whole XDOM once the
+ * walk is done.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class CompositeXDOMNormalizer implements XDOMNormalizer
+{
+    private final List<XDOMBlockNormalizer> blockNormalizers = new ArrayList<>();
+
+    private final List<XDOMNormalizer> xdomNormalizers = new ArrayList<>();
+
+    private MarkupSplicer splicer;
+
+    /**
+     * @param normalizers the normalizers to apply
+     */
+    public CompositeXDOMNormalizer(XDOMNormalizer... normalizers)
+    {
+        for (XDOMNormalizer normalizer : normalizers) {
+            if (normalizer instanceof XDOMBlockNormalizer) {
+                this.blockNormalizers.add((XDOMBlockNormalizer) normalizer);
+            } else {
+                this.xdomNormalizers.add(normalizer);
+            }
+        }
+    }
+
+    /**
+     * @param splicer the splicer to notify of the blocks replaced during the walk
+     */
+    public void setMarkupSplicer(MarkupSplicer splicer)
+    {
+        this.splicer = splicer;
+    }
+
+    @Override
+    public boolean normalize(XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+    {
+        boolean modified = false;
+
+        if (!this.blockNormalizers.isEmpty()) {
+            modified = normalizeChildren(xdom, xdom, parser, blockRenderer);
+        }
+
+        for (XDOMNormalizer normalizer : this.xdomNormalizers) {
+            modified |= normalizer.normalize(xdom, parser, blockRenderer);
+        }
+
+        return modified;
+    }
+
+    private boolean normalizeBlock(Block block, XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+    {
+        boolean modified = false;
+
+        Block currentBlock = block;
+        for (XDOMBlockNormalizer normalizer : this.blockNormalizers) {
+            Block newBlock = normalizer.normalize(currentBlock, xdom, parser, blockRenderer);
+
+            if (newBlock != currentBlock) {
+                currentBlock = newBlock;
+                modified = true;
+            }
+        }
+
+        if (modified && this.splicer != null) {
+            this.splicer.replaced(block, currentBlock);
+        }
+
+        // Go through the children of the (possibly new) block
+        return normalizeChildren(currentBlock, xdom, parser, blockRenderer) || modified;
+    }
+
+    private boolean normalizeChildren(Block parent, XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+    {
+        boolean modified = false;
+
+        // The children list is modified in place when a block is replaced so it's read again at each step
+        for (int i = 0; i < parent.getChildren().size(); ++i) {
+            modified |= normalizeBlock(parent.getChildren().get(i), xdom, parser, blockRenderer);
+        }
+
+        return modified;
+    }
+}
@@ -49,6 +49,15 @@ public class ContentDocumentNormalizer implements DocumentNormalizer
      */
     public static final String HINT = "content";
 
+    @Inject
+    private URLCandidateScanner scanner;
+
+    @Inject
+    private URLNormalizerMetrics metrics;
+
+    @Inject
+    private URLRewriteRecorder recorder;
+
     @Inject
     @Named("link")
     private XDOMNormalizer linkXDOMNormalizer;
@@ -65,15 +74,38 @@ public class ContentDocumentNormalizer implements DocumentNormalizer
     public boolean normalize(XWikiDocument document, Parser parser, BlockRenderer blockRenderer)
         throws NormalizationException
     {
+        // Don't parse the content when it cannot contain anything to normalize
+        if (!this.scanner.mayContainCandidate(document.getContent())) {
+            return false;
+        }
+
+        this.recorder.setLocation(document.getDocumentReference());
+
+        long start = System.nanoTime();
         XDOM xdom = document.getXDOM();
+        this.metrics.parsed(System.nanoTime() - start);
 
-        boolean modified = this.linkXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-        modified |= this.imageXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-        modified |= this.macroXDOMNormalizer.normalize(xdom, parser, blockRenderer);
+        // Walk the XDOM only once for all the normalizers
+        CompositeXDOMNormalizer normalizer = new CompositeXDOMNormalizer(this.linkXDOMNormalizer,
+            this.imageXDOMNormalizer, this.macroXDOMNormalizer);
+        MarkupSplicer splicer = new MarkupSplicer(blockRenderer);
+        normalizer.setMarkupSplicer(splicer);
+        start = System.nanoTime();
+        boolean modified = normalizer.normalize(xdom, parser, blockRenderer);
+        this.metrics.normalized(System.nanoTime() - start);
 
         if (modified) {
             try {
-                document.setContent(xdom);
+                // Only rewrite the modified markup when possible, to keep the rest of the content as is
+                start = System.nanoTime();
+                String content = splicer.splice(document.getContent(), xdom, parser);
+                if (content != null) {
+                    document.setContent(content);
+                } else {
+                    // Setting the XDOM renders it as the document content
+                    document.setContent(xdom);
+                }
+                this.metrics.rendered(System.nanoTime() - start);
             } catch (XWikiException e) {
                 throw new NormalizationException("Failed to normalize the document content.", e);
             }
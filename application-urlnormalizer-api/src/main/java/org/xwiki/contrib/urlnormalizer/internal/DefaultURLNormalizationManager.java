@@ -20,7 +20,10 @@
 package org.xwiki.contrib.urlnormalizer.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -33,7 +36,10 @@ import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.urlnormalizer.DocumentNormalizer;
 import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.contrib.urlnormalizer.NormalizationReport;
 import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.contrib.urlnormalizer.internal.ParserRendererCache.ParserRenderer;
 import org.xwiki.localization.ContextualLocalizationManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.rendering.parser.Parser;
@@ -56,6 +62,15 @@ public class DefaultURLNormalizationManager implements URLNormalizationManager
     private static final List<String> DEFAULT_NORMALIZERS = Arrays.asList(ContentDocumentNormalizer.HINT,
         ObjectDocumentNormalizer.HINT);
 
+    private static final String LOAD_ERROR = "Failed to load document [%s] for normalization";
+
+    private static final String SAVE_ERROR = "Failed to save document [%s] after normalization";
+
+    /**
+     * The name of the context property set while a normalized document is being saved.
+     */
+    static final String CONTEXT_SAVING = "urlnormalizer.saving";
+
     @Inject
     private Provider<XWikiContext> xWikiContextProvider;
 
@@ -65,6 +80,15 @@ public class DefaultURLNormalizationManager implements URLNormalizationManager
     @Inject
     private ContextualLocalizationManager localizationManager;
 
+    @Inject
+    private ParserRendererCache parserRendererCache;
+
+    @Inject
+    private URLNormalizerMetrics metrics;
+
+    @Inject
+    private URLRewriteRecorder recorder;
+
     @Inject
     private Logger logger;
 
@@ -74,12 +98,6 @@ public class DefaultURLNormalizationManager implements URLNormalizationManager
         return normalize(document, DEFAULT_NORMALIZERS);
     }
 
-    @Override
-    public boolean normalize(XWikiDocument document, List<String> normalizers) throws NormalizationException
-    {
-        return normalize(document, normalizers, false, false);
-    }
-
     @Override
     public boolean normalize(DocumentReference documentReference) throws NormalizationException
     {
@@ -99,72 +117,146 @@ public class DefaultURLNormalizationManager implements URLNormalizationManager
     {
         XWikiContext context = xWikiContextProvider.get();
 
+        XWikiDocument document;
         try {
-            XWikiDocument document = context.getWiki().getDocument(documentReference, context);
+            // Never modify the cached document
+            document = context.getWiki().getDocument(documentReference, context).clone();
+        } catch (XWikiException e) {
+            throw new NormalizationException(String.format(LOAD_ERROR, documentReference), e);
+        }
 
-            return normalize(document, normalizers, true, createNewVersion);
+        String version = document.getVersion();
+        if (!normalize(document, normalizers)) {
+            return false;
+        }
+
+        // Don't overwrite the modifications saved while the document was being normalized
+        try {
+            if (!Objects.equals(version, context.getWiki().getDocument(documentReference, context).getVersion())) {
+                throw new DocumentModifiedException(documentReference);
+            }
         } catch (XWikiException e) {
-            throw new NormalizationException(String.format("Failed to load document [%s] for normalization",
-                documentReference), e);
+            throw new NormalizationException(String.format(LOAD_ERROR, documentReference), e);
         }
+
+        saveDocument(document, createNewVersion, context);
+
+        return true;
     }
 
-    private boolean normalize(XWikiDocument document, List<String> normalizers, boolean save, boolean createNewVersion)
-        throws NormalizationException
+    @Override
+    public NormalizationReport normalize(Collection<DocumentReference> documentReferences, List<String> normalizers,
+        boolean createNewVersion)
     {
-        boolean modified = false;
+        NormalizationReport report = new NormalizationReport();
 
-        this.logger.debug("Normalizing local URLs for [{}]...", document.getDocumentReference());
-
-        // For performance persons, we check early and only perform processing if there's a parser and renderer for the
-        // syntax of the document that was modified as otherwise we won't be able to find links and normalize them.
-        if (componentManager.hasComponent(BlockRenderer.class, document.getSyntax().toIdString())
-            && componentManager.hasComponent(Parser.class, document.getSyntax().toIdString())) {
+        // Each document is loaded, normalized and saved before the next one to keep the time between the load and the
+        // save (in which a concurrent modification would prevent the save) short
+        for (DocumentReference documentReference : documentReferences) {
             try {
-                // Retrieve the parser and the renderer that should be used in order to normalize XProperty contents
-                // and Macro contents.
-                Parser parser = componentManager.getInstance(Parser.class, document.getSyntax().toIdString());
-                BlockRenderer blockRenderer = componentManager.getInstance(BlockRenderer.class,
-                    document.getSyntax().toIdString());
-
-                // If no normalizers are provided, fallback on the default
-                modified = applyNormalizers(document,
-                    (normalizers.isEmpty()) ? DEFAULT_NORMALIZERS : normalizers,
-                    parser, blockRenderer);
-            } catch (ComponentLookupException e) {
-                logger.warn(
-                    "Unable to load a parser or a renderer for the syntax [{}] of the document [{}]. Root cause : [{}]",
-                    document.getSyntax().toIdString(), document.getDocumentReference(),
-                    ExceptionUtils.getRootCauseMessage(e));
+                report.addResult(documentReference, normalize(documentReference, normalizers, createNewVersion));
+            } catch (NormalizationException e) {
+                report.addFailure(documentReference, e);
             }
-        } else {
-            throw new NormalizationException(
-                String.format("The syntax [%s] of the document [%s] cannot be parsed or rendered",
-                    document.getSyntax().toIdString(), document.getDocumentReference()));
         }
 
-        if (modified && save)
-        {
-            if (!createNewVersion) {
-                document.setMetaDataDirty(false);
-                document.setContentDirty(false);
-            }
+        return report;
+    }
 
-            XWikiContext context = xWikiContextProvider.get();
+    @Override
+    public NormalizationReport dryRun(Collection<DocumentReference> documentReferences, List<String> normalizers,
+        Consumer<URLRewrite> rewrites)
+    {
+        NormalizationReport report = new NormalizationReport();
+
+        XWikiContext context = xWikiContextProvider.get();
+        for (DocumentReference documentReference : documentReferences) {
+            this.recorder.start(documentReference, rewrites);
 
             try {
-                context.getWiki().saveDocument(document,
-                    localizationManager.getTranslationPlain(SAVE_COMMENT_KEY), context);
+                // Never modify the cached document
+                XWikiDocument document = context.getWiki().getDocument(documentReference, context).clone();
+
+                report.addResult(documentReference, normalize(document, normalizers));
             } catch (XWikiException e) {
-                throw new NormalizationException(
-                    String.format("Failed to save document [%s] after normalization",
-                        document.getDocumentReference()), e);
+                report.addFailure(documentReference,
+                    new NormalizationException(String.format(LOAD_ERROR, documentReference), e));
+            } catch (NormalizationException e) {
+                report.addFailure(documentReference, e);
+            } finally {
+                this.recorder.stop();
+            }
+        }
+
+        return report;
+    }
+
+    @Override
+    public boolean normalize(XWikiDocument document, List<String> normalizers) throws NormalizationException
+    {
+        boolean modified = false;
+
+        this.logger.debug("Normalizing local URLs for [{}]...", document.getDocumentReference());
+
+        // For performance reasons, we check early and only perform processing if there's a parser and renderer for the
+        // syntax of the document that was modified as otherwise we won't be able to find links and normalize them.
+        String syntaxId = document.getSyntax().toIdString();
+        try {
+            // Retrieve the parser and the renderer that should be used in order to normalize XProperty contents and
+            // Macro contents.
+            ParserRenderer parserRenderer = this.parserRendererCache.get(syntaxId);
+
+            if (parserRenderer == null) {
+                throw new NormalizationException(String.format(
+                    "The syntax [%s] of the document [%s] cannot be parsed or rendered", syntaxId,
+                    document.getDocumentReference()));
             }
+
+            // If no normalizers are provided, fallback on the default
+            modified = applyNormalizers(document, (normalizers.isEmpty()) ? DEFAULT_NORMALIZERS : normalizers,
+                parserRenderer.getParser(), parserRenderer.getBlockRenderer());
+        } catch (ComponentLookupException e) {
+            logger.warn(
+                "Unable to load a parser or a renderer for the syntax [{}] of the document [{}]. Root cause : [{}]",
+                syntaxId, document.getDocumentReference(), ExceptionUtils.getRootCauseMessage(e));
         }
 
+        this.metrics.documentProcessed(modified);
+
         return modified;
     }
 
+    private void saveDocument(XWikiDocument document, boolean createNewVersion, XWikiContext context)
+        throws NormalizationException
+    {
+        if (!createNewVersion) {
+            document.setMetaDataDirty(false);
+            document.setContentDirty(false);
+        }
+
+        Object saving = context.put(CONTEXT_SAVING, Boolean.TRUE);
+        try {
+            context.getWiki().saveDocument(document, localizationManager.getTranslationPlain(SAVE_COMMENT_KEY),
+                context);
+        } catch (XWikiException e) {
+            throw new NormalizationException(String.format(SAVE_ERROR, document.getDocumentReference()), e);
+        } finally {
+            if (saving == null) {
+                context.remove(CONTEXT_SAVING);
+            }
+        }
+    }
+
+    /**
+     * @param context the context passed to the save events
+     * @return true if the document being saved has just been normalized by this component (in the background, by a
+     *         normalization job or from a script)
+     */
+    static boolean isSaving(XWikiContext context)
+    {
+        return context != null && context.get(CONTEXT_SAVING) != null;
+    }
+
     private boolean applyNormalizers(XWikiDocument document, List<String> normalizers, Parser parser,
         BlockRenderer blockRenderer) throws NormalizationException
     {
@@ -176,7 +268,9 @@ public class DefaultURLNormalizationManager implements URLNormalizationManager
                     DocumentNormalizer normalizer = componentManager.getInstance(DocumentNormalizer.class,
                         normalizerHint);
 
+                    long start = System.nanoTime();
                     modified |= normalizer.normalize(document, parser, blockRenderer);
+                    this.metrics.normalizerApplied(normalizerHint, System.nanoTime() - start);
                 } catch (ComponentLookupException e) {
                     // This shouldn't happen as we are checking if the component instance exists before fetching it.
                     throw new NormalizationException(
@@ -0,0 +1,55 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Thrown when a document has been saved by someone else while it was being normalized, in which case the normalized
+ * copy is not saved to not overwrite the other modifications.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class DocumentModifiedException extends NormalizationException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final DocumentReference documentReference;
+
+    /**
+     * @param documentReference the reference of the document modified during its normalization
+     */
+    public DocumentModifiedException(DocumentReference documentReference)
+    {
+        super(String.format("The document [%s] has been modified during its normalization", documentReference));
+
+        this.documentReference = documentReference;
+    }
+
+    /**
+     * @return the reference of the document modified during its normalization
+     */
+    public DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+}
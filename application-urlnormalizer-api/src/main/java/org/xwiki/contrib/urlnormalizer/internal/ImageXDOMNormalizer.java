@@ -19,7 +19,9 @@
  */
 package org.xwiki.contrib.urlnormalizer.internal;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -62,11 +64,11 @@ public class ImageXDOMNormalizer extends AbstractResourceReferenceXDOMNormalizer
             }
 
             // Handle query string parameters
-            boolean shouldAbortNormalization = handleQueryStringParameters(imageBlock, newReference);
+            Map<String, String> newParameters = new LinkedHashMap<>(imageBlock.getParameters());
+            boolean shouldAbortNormalization = handleQueryStringParameters(newParameters, newReference);
 
             if (!shouldAbortNormalization) {
-                ImageBlock newImageBlock =
-                    new ImageBlock(newReference, false, imageBlock.getParameters());
+                ImageBlock newImageBlock = new ImageBlock(newReference, false, newParameters);
 
                 // Replace the previous ImageBlock in the XDOM
                 imageBlock.getParent().replaceChild(newImageBlock, imageBlock);
@@ -74,6 +76,8 @@ public class ImageXDOMNormalizer extends AbstractResourceReferenceXDOMNormalizer
                 // Update the list given in parameter
                 blocks.set(i, newImageBlock);
 
+                this.recorder.rewritten(originalReference, newReference);
+
                 normalized = true;
             }
 
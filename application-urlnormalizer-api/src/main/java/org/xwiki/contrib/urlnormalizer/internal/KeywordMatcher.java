@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Find if a text contains any of a set of keywords in a single pass over the text (Aho-Corasick automaton). The
+ * comparison is case insensitive.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class KeywordMatcher
+{
+    private static final class Node
+    {
+        private final Map<Character, Node> children = new TreeMap<>();
+
+        private char[] keys;
+
+        private Node[] nodes;
+
+        private Node failure;
+
+        private boolean output;
+
+        private Node get(char c)
+        {
+            int index = Arrays.binarySearch(this.keys, c);
+
+            return index >= 0 ? this.nodes[index] : null;
+        }
+
+        private void freeze()
+        {
+            this.keys = new char[this.children.size()];
+            this.nodes = new Node[this.children.size()];
+
+            int i = 0;
+            for (Map.Entry<Character, Node> entry : this.children.entrySet()) {
+                this.keys[i] = entry.getKey();
+                this.nodes[i] = entry.getValue();
+                ++i;
+            }
+        }
+    }
+
+    private final Node root = new Node();
+
+    private final boolean empty;
+
+    /**
+     * @param keywords the keywords to search
+     */
+    public KeywordMatcher(Collection<String> keywords)
+    {
+        boolean hasKeyword = false;
+
+        // Build the trie
+        for (String keyword : keywords) {
+            Node node = this.root;
+            for (int i = 0; i < keyword.length(); ++i) {
+                node = node.children.computeIfAbsent(toLowerCase(keyword.charAt(i)), k -> new Node());
+            }
+            node.output = true;
+            hasKeyword = true;
+        }
+
+        this.empty = !hasKeyword;
+
+        // Compute the failure links (breadth first so that the failure of a node is always computed before its
+        // children)
+        this.root.freeze();
+        this.root.failure = this.root;
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Node child : this.root.nodes) {
+            child.failure = this.root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.freeze();
+            node.output |= node.failure.output;
+
+            for (int i = 0; i < node.keys.length; ++i) {
+                Node child = node.nodes[i];
+                child.failure = next(node.failure, node.keys[i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static char toLowerCase(char c)
+    {
+        return c < 128 ? (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c) : Character.toLowerCase(c);
+    }
+
+    private Node next(Node from, char c)
+    {
+        Node node = from;
+        Node child = node.get(c);
+        while (child == null && node != this.root) {
+            node = node.failure;
+            child = node.get(c);
+        }
+
+        return child != null ? child : this.root;
+    }
+
+    /**
+     * @param text the text to search
+     * @return true if the text contains at least one of the keywords
+     */
+    public boolean find(CharSequence text)
+    {
+        if (this.empty) {
+            return false;
+        }
+
+        if (this.root.output) {
+            // The empty string is one of the keywords
+            return true;
+        }
+
+        Node node = this.root;
+        for (int i = 0; i < text.length(); ++i) {
+            node = next(node, toLowerCase(text.charAt(i)));
+            if (node.output) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -20,7 +20,9 @@
 package org.xwiki.contrib.urlnormalizer.internal;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -77,11 +79,11 @@ public class LinkXDOMNormalizer extends AbstractResourceReferenceXDOMNormalizer<
             }
 
             // Handle query string parameters
-            boolean shouldAbortNormalization = handleQueryStringParameters(linkBlock, newReference);
+            Map<String, String> newParameters = new LinkedHashMap<>(linkBlock.getParameters());
+            boolean shouldAbortNormalization = handleQueryStringParameters(newParameters, newReference);
 
             if (!shouldAbortNormalization) {
-                LinkBlock newLinkBlock =
-                    new LinkBlock(newBlockChildren, newReference, isFreeStanding, linkBlock.getParameters());
+                LinkBlock newLinkBlock = new LinkBlock(newBlockChildren, newReference, isFreeStanding, newParameters);
 
                 // Replace the previous LinkBlock in the XDOM
                 linkBlock.getParent().replaceChild(newLinkBlock, linkBlock);
@@ -89,6 +91,8 @@ public class LinkXDOMNormalizer extends AbstractResourceReferenceXDOMNormalizer<
                 // Update the list given in parameter
                 linkBlocks.set(i, newLinkBlock);
 
+                this.recorder.rewritten(originalReference, newReference);
+
                 normalized = true;
             }
 
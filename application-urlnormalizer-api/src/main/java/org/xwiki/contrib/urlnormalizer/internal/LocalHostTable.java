@@ -0,0 +1,218 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+/**
+ * The hosts and ports (wiki aliases and configured {@code xwiki.home}) of the local URLs, gathered once in an
+ * immutable table so that checking a URL only costs a lookup. The table is rebuilt when the wiki descriptors change.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = LocalHostTable.class)
+@Singleton
+public class LocalHostTable
+{
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configurationSource;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Hosts hosts;
+
+    private static final class Hosts
+    {
+        private final long version;
+
+        /**
+         * The expected port for each known host.
+         */
+        private final Map<String, Integer> ports;
+
+        private final Set<String> hosts;
+
+        private final String fingerprint;
+
+        private Hosts(long version, SortedMap<String, Integer> ports)
+        {
+            this.version = version;
+            // Hash based for the lookups
+            this.ports = Collections.unmodifiableMap(new HashMap<>(ports));
+            this.hosts = this.ports.keySet();
+            this.fingerprint = computeFingerprint(ports);
+        }
+    }
+
+    /**
+     * @param url the URL
+     * @return the port of the URL, or the default port of its protocol when it does not specify one
+     */
+    public static int getPort(URL url)
+    {
+        int port = url.getPort();
+
+        return port != -1 ? port : url.getDefaultPort();
+    }
+
+    private static int getPort(WikiDescriptor wikiDescriptor)
+    {
+        int port = wikiDescriptor.getPort();
+
+        if (port == -1) {
+            port = Boolean.TRUE.equals(wikiDescriptor.isSecure()) ? 443 : 80;
+        }
+
+        return port;
+    }
+
+    /**
+     * @param host the host of a URL
+     * @return the port of the local URLs with this host, null if the host is unknown
+     * @throws WikiManagerException when failing to gather the wiki descriptors
+     */
+    public Integer getPort(String host) throws WikiManagerException
+    {
+        return getTable().ports.get(host);
+    }
+
+    /**
+     * @return a hash of the known hosts and ports, which changes when the local URLs change
+     * @throws WikiManagerException when failing to gather the wiki descriptors
+     */
+    public String getFingerprint() throws WikiManagerException
+    {
+        return getTable().fingerprint;
+    }
+
+    /**
+     * @return the known hosts, the same instance is returned as long as the hosts are not invalidated
+     * @throws WikiManagerException when failing to gather the wiki descriptors
+     */
+    public Set<String> getHosts() throws WikiManagerException
+    {
+        return getTable().hosts;
+    }
+
+    /**
+     * Forget the known hosts and ports, they will be gathered again when needed.
+     */
+    public void invalidate()
+    {
+        this.version.incrementAndGet();
+    }
+
+    private Hosts getTable() throws WikiManagerException
+    {
+        Hosts table = this.hosts;
+        long currentVersion = this.version.get();
+
+        if (table == null || table.version != currentVersion) {
+            table = new Hosts(currentVersion, createPorts());
+            this.hosts = table;
+        }
+
+        return table;
+    }
+
+    private SortedMap<String, Integer> createPorts() throws WikiManagerException
+    {
+        // Sorted to get a stable fingerprint
+        SortedMap<String, Integer> ports = new TreeMap<>();
+
+        // The wiki descriptors
+        for (WikiDescriptor descriptor : this.wikiDescriptorManager.getAll()) {
+            int port = getPort(descriptor);
+            for (String alias : descriptor.getAliases()) {
+                if (StringUtils.isNotEmpty(alias)) {
+                    ports.putIfAbsent(alias, port);
+                }
+            }
+        }
+
+        // The configured "home URL", unless its host is already a wiki alias
+        String home = this.configurationSource.getProperty("xwiki.home");
+        if (StringUtils.isNotEmpty(home)) {
+            try {
+                URL homeURL = new URL(home);
+
+                ports.putIfAbsent(homeURL.getHost(), getPort(homeURL));
+            } catch (MalformedURLException e) {
+                this.logger.warn("Failed to parse the configured home URL [{}]. Root reason [{}]", home,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return ports;
+    }
+
+    private static String computeFingerprint(Map<String, Integer> ports)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        for (Map.Entry<String, Integer> entry : ports.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+}
@@ -21,17 +21,14 @@ package org.xwiki.contrib.urlnormalizer.internal;
 
 import java.net.URL;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.container.Container;
@@ -40,7 +37,12 @@ import org.xwiki.contrib.urlnormalizer.NormalizationException;
 import org.xwiki.contrib.urlnormalizer.ResourceReferenceNormalizer;
 import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
 import org.xwiki.contrib.urlnormalizer.URLValidator;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache.Normalization;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.DefaultURLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.TargetReferenceTemplate;
 import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerFilterMatcher;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerFilterMatcher.Match;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.rendering.listener.reference.ResourceReference;
@@ -87,54 +89,54 @@ public class LocalURLResourceReferenceNormalizer implements ResourceReferenceNor
     @Inject
     private WikiDescriptorManager wikiDescriptorManager;
 
+    @Inject
+    private ResourceReferenceNormalizationCache cache;
+
+    @Inject
+    private URLNormalizerMetrics metrics;
+
+    @Inject
+    private URLRewriteRecorder recorder;
+
     @Inject
     private Logger logger;
 
-    private ResourceReference filter(ResourceReference sourceReference) throws NormalizationException
+    private Match filter(ResourceReference sourceReference) throws NormalizationException
     {
-        List<URLNormalizerFilter> filters = this.store.getFilters(this.wikiDescriptorManager.getCurrentWikiReference());
-
-        // Try each configured filter
-        for (URLNormalizerFilter filter : filters) {
-            if (filter.getLinkType() == null || filter.getLinkType().equals(sourceReference.getType())) {
-                // Try to match the reference with the configured regex
-                Matcher matcher = filter.getLinkReference().matcher(sourceReference.getReference());
-
-                if (matcher.matches()) {
-                    if (filter.getTargetType() == null) {
-                        // Conversion is not enabled for this source reference, return it as is
-                        return sourceReference;
-                    }
-
-                    int groupCount = matcher.groupCount();
-                    Map<String, String> values = new HashMap<>(groupCount);
-                    for (int i = 0; i <= groupCount; ++i) {
-                        values.put(String.valueOf(i), matcher.group(i));
-                    }
-
-                    // Apply the replacement pattern using the matched regex groups as input
-                    String targetReference = new StringSubstitutor(k -> {
-                        String value = values.get(k);
-
-                        if (value == null) {
-                            value = matcher.group(k);
-                        }
-
-                        return value;
-                    }).replace(filter.getTargetReference());
-
-                    // Create a the target reference
-                    ResourceReference filteredReference =
-                        new ResourceReference(targetReference, filter.getTargetType());
-                    filteredReference.setParameters(sourceReference.getParameters());
-                    filteredReference.addBaseReferences(sourceReference.getBaseReferences());
-
-                    return filteredReference;
-                }
-            }
+        URLNormalizerFilterMatcher filterMatcher =
+            this.store.getFilterMatcher(this.wikiDescriptorManager.getCurrentWikiReference());
+
+        // Find the first configured filter matching the reference
+        Match match = filterMatcher.find(sourceReference.getType(), sourceReference.getReference());
+
+        if (match != null) {
+            this.metrics.filterHit(match.getFilter());
         }
 
-        return null;
+        return match;
+    }
+
+    private ResourceReference apply(Match match, ResourceReference sourceReference)
+    {
+        URLNormalizerFilter filter = match.getFilter();
+
+        if (filter.getTargetType() == null) {
+            // Conversion is not enabled for this source reference, return it as is
+            return sourceReference;
+        }
+
+        // Apply the replacement pattern using the matched regex groups as input
+        TargetReferenceTemplate targetTemplate = filter instanceof DefaultURLNormalizerFilter
+            ? ((DefaultURLNormalizerFilter) filter).getTargetTemplate()
+            : new TargetReferenceTemplate(filter.getTargetReference());
+        String targetReference = targetTemplate.render(match.getMatcher());
+
+        // Create a the target reference
+        ResourceReference filteredReference = new ResourceReference(targetReference, filter.getTargetType());
+        filteredReference.setParameters(sourceReference.getParameters());
+        filteredReference.addBaseReferences(sourceReference.getBaseReferences());
+
+        return filteredReference;
     }
 
     @Override
@@ -142,22 +144,50 @@ public class LocalURLResourceReferenceNormalizer implements ResourceReferenceNor
     {
         this.logger.debug("Trying to normalize [{}]", reference.getReference());
 
+        String wiki = this.wikiDescriptorManager.getCurrentWikiId();
+        String contextPath = getContextPath();
+
+        // Read the generation before the cache so that a normalization computed before an invalidation is not stored
+        long generation = this.cache.getGeneration();
+
+        // Check if the same reference was already normalized
+        Normalization normalization = this.cache.get(wiki, reference, contextPath);
+        this.metrics.referenceCacheAccessed(normalization != null);
+        if (normalization != null) {
+            this.recorder.setFilter(normalization.getFilter());
+
+            return normalization.apply(reference);
+        }
+
+        // Forget the filter which produced the previous reference
+        this.recorder.setFilter(null);
+
         // Try configured filters
+        boolean cacheable = true;
         try {
-            ResourceReference normalizedReference = filter(reference);
-            if (normalizedReference != null) {
+            Match match = filter(reference);
+            if (match != null) {
+                ResourceReference normalizedReference = apply(match, reference);
+                String filterPattern = match.getFilter().getLinkReference().pattern();
+                this.recorder.setFilter(filterPattern);
+                this.cache.set(wiki, reference, contextPath, generation, normalizedReference == reference
+                    ? Normalization.UNCHANGED : Normalization.filtered(normalizedReference, filterPattern));
+
                 return normalizedReference;
             }
         } catch (Exception e) {
             this.logger.error("Failed to filter the reference [{}]", reference, e);
+
+            // Don't remember the result of a failed filtering
+            cacheable = false;
         }
 
         // Try standard conversion of URL to wiki pages
         ResourceReference normalizedReference = reference;
 
         try {
-            if (reference.getType().equals(ResourceType.URL) && this.container.getRequest() instanceof ServletRequest) {
-                normalizedReference = normalizeURL(new URL(reference.getReference()), reference);
+            if (reference.getType().equals(ResourceType.URL) && contextPath != null) {
+                normalizedReference = normalizeURL(new URL(reference.getReference()), reference, contextPath);
             }
         } catch (Exception e) {
             // An error happened during normalization. Ideally we should log it as a warning. The problem is that
@@ -167,18 +197,32 @@ public class LocalURLResourceReferenceNormalizer implements ResourceReferenceNor
             this.logger.debug("Failed to normalize URL [{}] into a wiki link", reference.getReference(), e);
         }
 
+        if (cacheable) {
+            this.cache.set(wiki, reference, contextPath, generation,
+                normalizedReference == reference ? Normalization.UNCHANGED
+                    : Normalization.converted(normalizedReference));
+        }
+
         return normalizedReference;
     }
 
-    private ResourceReference normalizeURL(URL referenceURL, ResourceReference reference) throws Exception
+    private String getContextPath()
+    {
+        if (this.container.getRequest() instanceof ServletRequest) {
+            return ((ServletRequest) this.container.getRequest()).getHttpServletRequest().getContextPath();
+        }
+
+        return null;
+    }
+
+    private ResourceReference normalizeURL(URL referenceURL, ResourceReference reference, String contextPath)
+        throws Exception
     {
         // Ignore URLs with a reference since they are not supported right now
         // FIXME: remove when https://jira.xwiki.org/browse/URLNORMALZ-11 is fixed
         ResourceReference normalizedReference = reference;
         if (StringUtils.isEmpty(referenceURL.getRef())) {
-            ServletRequest servletRequest = (ServletRequest) this.container.getRequest();
-            ExtendedURL extendedURL =
-                new ExtendedURL(referenceURL, servletRequest.getHttpServletRequest().getContextPath());
+            ExtendedURL extendedURL = new ExtendedURL(referenceURL, contextPath);
             if (this.localURLValidator.validate(extendedURL)) {
                 normalizedReference = resolveReference(extendedURL, reference);
             }
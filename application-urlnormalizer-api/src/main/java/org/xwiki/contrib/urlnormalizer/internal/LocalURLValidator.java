@@ -19,28 +19,24 @@
  */
 package org.xwiki.contrib.urlnormalizer.internal;
 
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.contrib.urlnormalizer.URLValidator;
 import org.xwiki.url.ExtendedURL;
 import org.xwiki.url.URLConfiguration;
-import org.xwiki.wiki.descriptor.WikiDescriptor;
-import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 import org.xwiki.wiki.manager.WikiManagerException;
 
 /**
  * Validates if an {@link ExtendedURL} points to a local URL or not.
+ * <p>
+ * The known hosts and ports (wiki aliases and configured {@code xwiki.home}) are looked up in the
+ * {@link LocalHostTable}, so validating a URL only costs a lookup.
  *
  * @version $Id:$
  */
@@ -48,72 +44,21 @@ import org.xwiki.wiki.manager.WikiManagerException;
 @Singleton
 public class LocalURLValidator implements URLValidator<ExtendedURL>
 {
-    private static final Map<String, Integer> PORTS = new HashMap<>();
-
-    static {
-        PORTS.put("http", 80);
-        PORTS.put("https", 443);
-    }
-
     @Inject
     private Logger logger;
 
     @Inject
-    private WikiDescriptorManager wikiDescriptorManager;
+    private LocalHostTable hostTable;
 
     @Inject
     private URLConfiguration urlConfiguration;
 
-    @Inject
-    @Named("xwikicfg")
-    private ConfigurationSource configurationSource;
-
-    private int getPort(URL url)
+    private boolean isKnownDomainAndPort(ExtendedURL extendedURL) throws WikiManagerException
     {
-        int port = url.getPort();
-
-        if (port == -1) {
-            port = PORTS.getOrDefault(url.getProtocol().toLowerCase(), -1);
-        }
-
-        return port;
-    }
-
-    private int getPort(WikiDescriptor wikiDescriptor)
-    {
-        int port = wikiDescriptor.getPort();
-
-        if (port == -1) {
-            port = Boolean.TRUE.equals(wikiDescriptor.isSecure()) ? 443 : 80;
-        }
-
-        return port;
-    }
-
-    private boolean isKnownDomainAndPort(ExtendedURL extendedURL) throws WikiManagerException, MalformedURLException
-    {
-        // Check the descriptor
-        WikiDescriptor wikiDescriptor = this.wikiDescriptorManager.getByAlias(extendedURL.getWrappedURL().getHost());
-        if (wikiDescriptor != null) {
-            return getPort(wikiDescriptor) == getPort(extendedURL.getWrappedURL());
-        }
-
-        // Check if the URL matches the configured "home URL"
-        return isConfiguredHome(extendedURL);
-    }
-
-    private boolean isConfiguredHome(ExtendedURL extendedURL) throws MalformedURLException
-    {
-        String home = this.configurationSource.getProperty("xwiki.home");
-
-        if (home != null) {
-            URL homeURL = new URL(home);
-
-            return homeURL.getHost().equals(extendedURL.getWrappedURL().getHost())
-                && getPort(homeURL) == getPort(extendedURL.getWrappedURL());
-        }
+        URL url = extendedURL.getWrappedURL();
+        Integer port = this.hostTable.getPort(url.getHost());
 
-        return false;
+        return port != null && port == LocalHostTable.getPort(url);
     }
 
     @Override
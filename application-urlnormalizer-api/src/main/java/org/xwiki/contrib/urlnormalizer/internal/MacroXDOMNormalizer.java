@@ -50,7 +50,7 @@ import org.xwiki.rendering.syntax.Syntax;
 @Component
 @Named("macro")
 @Singleton
-public class MacroXDOMNormalizer implements XDOMNormalizer
+public class MacroXDOMNormalizer implements XDOMBlockNormalizer
 {
     @Inject
     private Logger logger;
@@ -80,56 +80,60 @@ public class MacroXDOMNormalizer implements XDOMNormalizer
     @Override
     public boolean normalize(XDOM xdom, Parser parser, BlockRenderer blockRenderer)
     {
+        boolean modified = false;
+
         if (parser != null) {
             List<MacroBlock> macroBlocks =
                 xdom.getBlocks(new MarkupContainingMacroBlockMatcher(this.macroManager, getSyntax(xdom, parser)),
                     Block.Axes.DESCENDANT_OR_SELF);
 
-            if (!macroBlocks.isEmpty()) {
-                return normalize(macroBlocks, parser, blockRenderer);
+            for (MacroBlock macroBlock : macroBlocks) {
+                modified |= normalize(macroBlock, parser, blockRenderer) != macroBlock;
             }
         }
 
-        return false;
+        return modified;
+    }
+
+    @Override
+    public Block normalize(Block block, XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+    {
+        if (parser != null && block instanceof MacroBlock
+            && new MarkupContainingMacroBlockMatcher(this.macroManager, getSyntax(xdom, parser)).match(block)) {
+            return normalize((MacroBlock) block, parser, blockRenderer);
+        }
+
+        return block;
     }
 
-    private boolean normalize(List<MacroBlock> macroBlocks, Parser parser, BlockRenderer blockRenderer)
+    private Block normalize(MacroBlock macroBlock, Parser parser, BlockRenderer blockRenderer)
     {
-        boolean modifiedLinks = false;
-
-        for (int i = 0; i < macroBlocks.size(); i++) {
-            MacroBlock macroBlock = macroBlocks.get(i);
-            String content = macroBlock.getContent();
-            try {
-                XDOM xdom = parser.parse(new StringReader(content));
-
-                boolean modified = this.linkXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-                modified |= this.imageXDOMNormalizer.normalize(xdom, parser, blockRenderer);
-                if (modified) {
-                    WikiPrinter wikiPrinter = new DefaultWikiPrinter();
-                    blockRenderer.render(xdom, wikiPrinter);
-
-                    String normalizedContent = wikiPrinter.toString();
-
-                    // Create a new MacroBlock with the normalized content
-                    MacroBlock newMacroBlock = new MacroBlock(macroBlock.getId(), macroBlock.getParameters(),
-                        normalizedContent, macroBlock.isInline());
-
-                    // Replace the MacroBlock in the XDOM
-                    macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
-
-                    // Update the list given in parameter
-                    macroBlocks.set(i, newMacroBlock);
-
-                    modifiedLinks = true;
-                }
-            } catch (ParseException e) {
-                // The parser for the syntax of the document may not fit the syntax used in a Macro.
-                // Since this shouldn't happen we need to log an error. It means there's an important problem
-                this.logger.error("Failed to normalize URLs in content of Macro [{}]", macroBlock.getId(), e);
+        String content = macroBlock.getContent();
+        try {
+            XDOM xdom = parser.parse(new StringReader(content));
+
+            XDOMNormalizer normalizer = new CompositeXDOMNormalizer(this.linkXDOMNormalizer, this.imageXDOMNormalizer);
+            if (normalizer.normalize(xdom, parser, blockRenderer)) {
+                WikiPrinter wikiPrinter = new DefaultWikiPrinter();
+                blockRenderer.render(xdom, wikiPrinter);
+
+                String normalizedContent = wikiPrinter.toString();
+
+                // Create a new MacroBlock with the normalized content
+                MacroBlock newMacroBlock = new MacroBlock(macroBlock.getId(), macroBlock.getParameters(),
+                    normalizedContent, macroBlock.isInline());
+
+                // Replace the MacroBlock in the XDOM
+                macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
+
+                return newMacroBlock;
             }
+        } catch (ParseException e) {
+            // The parser for the syntax of the document may not fit the syntax used in a Macro.
+            // Since this shouldn't happen we need to log an error. It means there's an important problem
+            this.logger.error("Failed to normalize URLs in content of Macro [{}]", macroBlock.getId(), e);
         }
 
-        return modifiedLinks;
+        return macroBlock;
     }
 }
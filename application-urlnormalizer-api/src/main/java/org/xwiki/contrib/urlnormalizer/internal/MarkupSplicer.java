@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+
+/**
+ * Rewrite only the markup of the blocks replaced during the normalization in the source content, instead of rendering
+ * the whole XDOM. The blocks don't provide their position in the source so the markup of each replaced block is
+ * searched in the content, in the order of the blocks, and the result is parsed again to make sure it matches the
+ * normalized XDOM. The original markup is rendered from the replaced block, which is not modified by the normalizers.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class MarkupSplicer
+{
+    private static final class Replacement
+    {
+        private final String originalMarkup;
+
+        private final Block block;
+
+        Replacement(String originalMarkup, Block block)
+        {
+            this.originalMarkup = originalMarkup;
+            this.block = block;
+        }
+    }
+
+    private final BlockRenderer blockRenderer;
+
+    private final List<Replacement> replacements = new ArrayList<>();
+
+    private final Set<Block> blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param blockRenderer the renderer of the syntax of the content
+     */
+    public MarkupSplicer(BlockRenderer blockRenderer)
+    {
+        this.blockRenderer = blockRenderer;
+    }
+
+    /**
+     * Remember that a block was replaced. Must be called before the children of the new block are normalized.
+     *
+     * @param originalBlock the block which was replaced
+     * @param block the new block
+     */
+    public void replaced(Block originalBlock, Block block)
+    {
+        this.replacements.add(new Replacement(render(originalBlock), block));
+        this.blocks.add(block);
+    }
+
+    /**
+     * @param content the content from which the XDOM was parsed
+     * @param xdom the normalized XDOM
+     * @param parser the parser of the syntax of the content
+     * @return the content with the markup of the replaced blocks updated, or null if it's not possible to produce a
+     *         content matching the normalized XDOM this way
+     */
+    public String splice(String content, XDOM xdom, Parser parser)
+    {
+        if (content == null || this.replacements.isEmpty()) {
+            return null;
+        }
+
+        // The markup of a block located in a replaced block is rewritten with its ancestor
+        List<Replacement> splicedReplacements = new ArrayList<>(this.replacements.size());
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        for (Replacement replacement : this.replacements) {
+            if (!isInReplacedBlock(replacement.block)) {
+                if (replacement.originalMarkup.isEmpty()) {
+                    return null;
+                }
+
+                splicedReplacements.add(replacement);
+                expectedCounts.merge(replacement.originalMarkup, 1, Integer::sum);
+            }
+        }
+
+        // The same markup could also be located in a part of the content which is not parsed as a block (verbatim,
+        // escaped, macro content, etc.) so it's only safe to rewrite it when each occurrence is a replaced block
+        for (Map.Entry<String, Integer> expectedCount : expectedCounts.entrySet()) {
+            if (StringUtils.countMatches(content, expectedCount.getKey()) != expectedCount.getValue()) {
+                return null;
+            }
+        }
+
+        StringBuilder splicedContent = new StringBuilder(content.length());
+        int index = 0;
+        for (Replacement replacement : splicedReplacements) {
+            int markupIndex = content.indexOf(replacement.originalMarkup, index);
+            if (markupIndex < 0) {
+                return null;
+            }
+
+            splicedContent.append(content, index, markupIndex);
+            splicedContent.append(render(replacement.block));
+            index = markupIndex + replacement.originalMarkup.length();
+        }
+        splicedContent.append(content, index, content.length());
+
+        String result = splicedContent.toString();
+
+        // The markup found for a block could still be another text (e.g. in a verbatim block, when the markup of the
+        // block is written differently) or be rendered differently in its context so make sure the result is right
+        try {
+            if (!parser.parse(new StringReader(result)).getChildren().equals(xdom.getChildren())) {
+                return null;
+            }
+        } catch (ParseException e) {
+            return null;
+        }
+
+        return result;
+    }
+
+    private boolean isInReplacedBlock(Block block)
+    {
+        for (Block parent = block.getParent(); parent != null; parent = parent.getParent()) {
+            if (this.blocks.contains(parent)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String render(Block block)
+    {
+        WikiPrinter printer = new DefaultWikiPrinter();
+        this.blockRenderer.render(block, printer);
+
+        return printer.toString();
+    }
+}
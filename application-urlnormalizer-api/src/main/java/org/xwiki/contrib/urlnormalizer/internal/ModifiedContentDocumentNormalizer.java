@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Objects;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Normalizer for the document content which only looks at the content if it was modified since the original
+ * document. A modified content is normalized as a whole: the unchanged parts are not guaranteed to be normalized
+ * already (the configuration may have changed since they were saved) and the blocks cannot be mapped back to their
+ * position in the source, so limiting the normalization to the modified parts would neither give the result of a full
+ * normalization nor avoid parsing and walking the whole content.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@Named(ModifiedContentDocumentNormalizer.HINT)
+@Singleton
+public class ModifiedContentDocumentNormalizer extends ContentDocumentNormalizer
+{
+    /**
+     * The hint of the component.
+     */
+    public static final String HINT = "content/modified";
+
+    @Override
+    public boolean normalize(XWikiDocument document, Parser parser, BlockRenderer blockRenderer)
+        throws NormalizationException
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        // Don't parse the content when only the metadata, objects or attachments were modified
+        if (originalDocument != null && !originalDocument.isNew()
+            && Objects.equals(originalDocument.getSyntax(), document.getSyntax())
+            && StringUtils.equals(originalDocument.getContent(), document.getContent())) {
+            return false;
+        }
+
+        return super.normalize(document, parser, blockRenderer);
+    }
+}
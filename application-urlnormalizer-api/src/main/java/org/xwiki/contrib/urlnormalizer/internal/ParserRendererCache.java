@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+/**
+ * Remember the parser and the renderer of each syntax to avoid looking them up for each normalized document. Only
+ * singleton components are reused, the others are looked up again for each call.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = ParserRendererCache.class)
+@Singleton
+public class ParserRendererCache
+{
+    /**
+     * The parser and the renderer of a syntax.
+     */
+    public static final class ParserRenderer
+    {
+        private final Parser parser;
+
+        private final BlockRenderer blockRenderer;
+
+        ParserRenderer(Parser parser, BlockRenderer blockRenderer)
+        {
+            this.parser = parser;
+            this.blockRenderer = blockRenderer;
+        }
+
+        /**
+         * @return the parser of the syntax
+         */
+        public Parser getParser()
+        {
+            return this.parser;
+        }
+
+        /**
+         * @return the renderer of the syntax
+         */
+        public BlockRenderer getBlockRenderer()
+        {
+            return this.blockRenderer;
+        }
+    }
+
+    /**
+     * What is known about a syntax for a given generation of the cache.
+     */
+    private static final class Entry
+    {
+        private final long generation;
+
+        private final boolean supported;
+
+        /**
+         * The parser and renderer to reuse, null when they have to be looked up for each call (i.e. they are not
+         * singletons).
+         */
+        private final ParserRenderer parserRenderer;
+
+        Entry(long generation, boolean supported, ParserRenderer parserRenderer)
+        {
+            this.generation = generation;
+            this.supported = supported;
+            this.parserRenderer = parserRenderer;
+        }
+    }
+
+    @Inject
+    private ComponentManager componentManager;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each invalidation so that an entry computed concurrently with an invalidation is ignored.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param syntaxId the identifier of the syntax
+     * @return the parser and the renderer of the syntax, null if the syntax cannot be both parsed and rendered
+     * @throws ComponentLookupException when failing to lookup the parser or the renderer
+     */
+    public ParserRenderer get(String syntaxId) throws ComponentLookupException
+    {
+        // Read the generation before the entry so that an entry older than the last invalidation is never used
+        long currentGeneration = this.generation.get();
+        Entry entry = this.entries.get(syntaxId);
+
+        if (entry == null || entry.generation != currentGeneration) {
+            entry = load(syntaxId, currentGeneration);
+
+            this.entries.put(syntaxId, entry);
+        }
+
+        if (!entry.supported) {
+            return null;
+        }
+
+        if (entry.parserRenderer != null) {
+            return entry.parserRenderer;
+        }
+
+        return new ParserRenderer(this.componentManager.getInstance(Parser.class, syntaxId),
+            this.componentManager.getInstance(BlockRenderer.class, syntaxId));
+    }
+
+    private Entry load(String syntaxId, long entryGeneration) throws ComponentLookupException
+    {
+        ComponentDescriptor<Parser> parserDescriptor =
+            this.componentManager.getComponentDescriptor(Parser.class, syntaxId);
+        ComponentDescriptor<BlockRenderer> rendererDescriptor =
+            this.componentManager.getComponentDescriptor(BlockRenderer.class, syntaxId);
+
+        if (parserDescriptor == null || rendererDescriptor == null) {
+            return new Entry(entryGeneration, false, null);
+        }
+
+        // Only singletons can be shared, other components are expected to get a new instance for each lookup
+        if (isSingleton(parserDescriptor) && isSingleton(rendererDescriptor)) {
+            return new Entry(entryGeneration, true,
+                new ParserRenderer(this.componentManager.getInstance(Parser.class, syntaxId),
+                    this.componentManager.getInstance(BlockRenderer.class, syntaxId)));
+        }
+
+        return new Entry(entryGeneration, true, null);
+    }
+
+    private boolean isSingleton(ComponentDescriptor<?> descriptor)
+    {
+        return descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON;
+    }
+
+    /**
+     * Forget all the parsers and renderers.
+     */
+    public void invalidate()
+    {
+        this.generation.incrementAndGet();
+        this.entries.clear();
+    }
+}
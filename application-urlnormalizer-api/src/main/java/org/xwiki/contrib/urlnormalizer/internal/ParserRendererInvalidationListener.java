@@ -0,0 +1,68 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+/**
+ * Listener in charge of invalidating the cached parsers and renderers when one is registered or unregistered.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@Named(ParserRendererInvalidationListener.NAME)
+@Singleton
+public class ParserRendererInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.contrib.urlnormalizer.internal.ParserRendererInvalidationListener";
+
+    @Inject
+    private ParserRendererCache cache;
+
+    /**
+     * Default constructor.
+     */
+    public ParserRendererInvalidationListener()
+    {
+        super(NAME, new ComponentDescriptorAddedEvent(Parser.class), new ComponentDescriptorRemovedEvent(Parser.class),
+            new ComponentDescriptorAddedEvent(BlockRenderer.class),
+            new ComponentDescriptorRemovedEvent(BlockRenderer.class));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.cache.invalidate();
+    }
+}
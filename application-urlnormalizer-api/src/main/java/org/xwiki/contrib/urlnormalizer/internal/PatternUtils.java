@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.regex.Pattern;
+
+/**
+ * Helpers to analyze the regular expressions of the filters.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public final class PatternUtils
+{
+    private static final String SPECIAL_CHARACTERS = "[](){}.*+?^$|";
+
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    private PatternUtils()
+    {
+        // Utility class
+    }
+
+    /**
+     * Extract the literal text which starts any string matched by the passed pattern.
+     * 
+     * @param pattern the pattern
+     * @return the literal prefix of the pattern, empty if none could be found
+     */
+    public static String getLiteralPrefix(Pattern pattern)
+    {
+        String regex = pattern.pattern();
+
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            return regex;
+        }
+
+        // Whitespaces and comments are not literals in this mode and a top level alternation means there is no
+        // common prefix
+        if ((pattern.flags() & Pattern.COMMENTS) != 0 || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // Escaped special character
+                    prefix.append(regex.charAt(i + 1));
+                    i += 2;
+                } else {
+                    // Character class (\d, \s, etc.), back reference or quoting
+                    break;
+                }
+            } else if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+                // The last literal is optional when followed by a quantifier allowing zero occurrence
+                if (prefix.length() > 0 && OPTIONAL_QUANTIFIERS.indexOf(c) >= 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            } else {
+                prefix.append(c);
+                ++i;
+            }
+        }
+
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex)
+    {
+        int depth = 0;
+        boolean inClass = false;
+
+        for (int i = 0; i < regex.length(); ++i) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                // Skip the escaped character
+                ++i;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+/**
+ * Remember the result of the normalization of resource references, so that the same URL found many times is only
+ * normalized once. A normalization computed before an invalidation is never stored: the caller passes the generation
+ * of the cache it read before computing it.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = ResourceReferenceNormalizationCache.class)
+@Singleton
+public class ResourceReferenceNormalizationCache implements Initializable, Disposable
+{
+    /**
+     * The result of the normalization of a resource reference.
+     */
+    public static final class Normalization
+    {
+        /**
+         * The normalization did not modify the reference.
+         */
+        public static final Normalization UNCHANGED = new Normalization(null, null, null, false, null);
+
+        private final String reference;
+
+        private final ResourceType type;
+
+        private final Map<String, String> parameters;
+
+        private final boolean inheritSource;
+
+        private final String filter;
+
+        private Normalization(String reference, ResourceType type, Map<String, String> parameters,
+            boolean inheritSource, String filter)
+        {
+            this.reference = reference;
+            this.type = type;
+            this.parameters = parameters;
+            this.inheritSource = inheritSource;
+            this.filter = filter;
+        }
+
+        /**
+         * @param normalizedReference the reference produced by a filter
+         * @param filter the pattern of the filter which produced the reference
+         * @return the normalization, the parameters and base references are taken from the source reference
+         */
+        public static Normalization filtered(ResourceReference normalizedReference, String filter)
+        {
+            return new Normalization(normalizedReference.getReference(), normalizedReference.getType(), null, true,
+                filter);
+        }
+
+        /**
+         * @param normalizedReference the reference produced by the standard conversion
+         * @return the normalization
+         */
+        public static Normalization converted(ResourceReference normalizedReference)
+        {
+            return new Normalization(normalizedReference.getReference(), normalizedReference.getType(),
+                new HashMap<>(normalizedReference.getParameters()), false, null);
+        }
+
+        /**
+         * @return the pattern of the filter which produced the reference, null if it was not produced by a filter
+         */
+        public String getFilter()
+        {
+            return this.filter;
+        }
+
+        /**
+         * @param sourceReference the reference to normalize
+         * @return the normalized reference, the passed reference itself if the normalization does not modify it
+         */
+        public ResourceReference apply(ResourceReference sourceReference)
+        {
+            if (this.reference == null) {
+                return sourceReference;
+            }
+
+            // Always return a new instance since the caller is free to modify it
+            ResourceReference normalizedReference = new ResourceReference(this.reference, this.type);
+            if (this.inheritSource) {
+                normalizedReference.setParameters(sourceReference.getParameters());
+                normalizedReference.addBaseReferences(sourceReference.getBaseReferences());
+            } else {
+                normalizedReference.setParameters(this.parameters);
+            }
+
+            return normalizedReference;
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<Normalization> cache;
+
+    /**
+     * Incremented each time the cache is invalidated.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration("urlnormalizer.references", 10000));
+        } catch (Exception e) {
+            throw new InitializationException("Failed to create URL Normalizer references cache", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.cache.dispose();
+    }
+
+    private String getKey(String wiki, ResourceReference reference, String contextPath)
+    {
+        StringBuilder key = new StringBuilder();
+
+        // Prefix each element with its size to avoid any ambiguity
+        appendKeyElement(wiki, key);
+        appendKeyElement(reference.getType().getScheme(), key);
+        appendKeyElement(contextPath, key);
+        key.append(reference.getReference());
+
+        return key.toString();
+    }
+
+    private void appendKeyElement(String element, StringBuilder key)
+    {
+        if (element != null) {
+            key.append(element.length());
+            key.append(':');
+            key.append(element);
+        } else {
+            key.append('-');
+        }
+    }
+
+    /**
+     * @return the current generation of the cache, to read before computing a normalization to pass to
+     *         {@link #set(String, ResourceReference, String, long, Normalization)}
+     */
+    public long getGeneration()
+    {
+        return this.generation.get();
+    }
+
+    /**
+     * @param wiki the wiki where the reference is normalized
+     * @param reference the reference to normalize
+     * @param contextPath the context path of the current request or null if there is no request
+     * @return the known normalization of the reference or null if it's not known
+     */
+    public Normalization get(String wiki, ResourceReference reference, String contextPath)
+    {
+        return this.cache.get(getKey(wiki, reference, contextPath));
+    }
+
+    /**
+     * @param wiki the wiki where the reference is normalized
+     * @param reference the normalized reference
+     * @param contextPath the context path of the current request or null if there is no request
+     * @param generation the generation of the cache (see {@link #getGeneration()}) read before the normalization was
+     *            computed
+     * @param normalization the result of the normalization
+     */
+    public void set(String wiki, ResourceReference reference, String contextPath, long generation,
+        Normalization normalization)
+    {
+        // The normalization may have been computed from the configuration which was just invalidated
+        if (generation == this.generation.get()) {
+            String key = getKey(wiki, reference, contextPath);
+
+            this.cache.set(key, normalization);
+
+            // The cache may have been invalidated while the normalization was stored
+            if (generation != this.generation.get()) {
+                this.cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Forget all the normalizations. Filters are inherited from the main wiki and wiki descriptors impact all wikis so
+     * there is no point in being more precise.
+     */
+    public void invalidate()
+    {
+        this.generation.incrementAndGet();
+        this.cache.removeAll();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Cheap scan of the raw content to find out if it can contain a reference to normalize before parsing it. The content
+ * is searched for the known local hosts (see {@link LocalHostTable}) and the literal prefix of the configured filters.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = URLCandidateScanner.class)
+@Singleton
+public class URLCandidateScanner
+{
+    /**
+     * The wiki syntax escape character, which can hide a keyword in the raw content.
+     */
+    private static final char ESCAPE = '~';
+
+    @Inject
+    private URLNormalizerConfigurationStore store;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private LocalHostTable hostTable;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, WikiMatcher> matchers = new ConcurrentHashMap<>();
+
+    private static final class WikiMatcher
+    {
+        private final List<URLNormalizerFilter> filters;
+
+        private final Set<String> hosts;
+
+        /**
+         * Null when some filter does not have any literal prefix (every content is a candidate).
+         */
+        private final KeywordMatcher matcher;
+
+        private WikiMatcher(List<URLNormalizerFilter> filters, Set<String> hosts, KeywordMatcher matcher)
+        {
+            this.filters = filters;
+            this.hosts = hosts;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * @param content the raw content to scan
+     * @return true if the content may contain a reference to normalize in the current wiki, false if it's sure it
+     *         does not
+     */
+    public boolean mayContainCandidate(String content)
+    {
+        if (StringUtils.isEmpty(content)) {
+            return false;
+        }
+
+        // Escaped content cannot be trusted
+        if (content.indexOf(ESCAPE) >= 0) {
+            return true;
+        }
+
+        try {
+            KeywordMatcher matcher = getMatcher(this.wikiDescriptorManager.getCurrentWikiReference());
+
+            return matcher == null || matcher.find(content);
+        } catch (Exception e) {
+            this.logger.warn("Failed to scan the content for URLs to normalize: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return true;
+        }
+    }
+
+    private KeywordMatcher getMatcher(WikiReference wiki) throws Exception
+    {
+        List<URLNormalizerFilter> filters = this.store.getFilters(wiki);
+        Set<String> hosts = this.hostTable.getHosts();
+
+        WikiMatcher wikiMatcher = this.matchers.get(wiki.getName());
+
+        // The store and the host table return new collections each time they are reloaded
+        if (wikiMatcher == null || wikiMatcher.filters != filters || wikiMatcher.hosts != hosts) {
+            wikiMatcher = new WikiMatcher(filters, hosts, createMatcher(filters, hosts));
+            this.matchers.put(wiki.getName(), wikiMatcher);
+        }
+
+        return wikiMatcher.matcher;
+    }
+
+    private KeywordMatcher createMatcher(List<URLNormalizerFilter> filters, Set<String> hosts)
+    {
+        Set<String> keywords = new HashSet<>();
+
+        for (URLNormalizerFilter filter : filters) {
+            // Filters disabling the conversion never modify anything
+            if (filter != null && filter.getTargetType() != null) {
+                String prefix = PatternUtils.getLiteralPrefix(filter.getLinkReference());
+
+                if (prefix.isEmpty()) {
+                    return null;
+                }
+
+                keywords.add(prefix);
+            }
+        }
+
+        keywords.addAll(hosts);
+
+        return new KeywordMatcher(keywords);
+    }
+}
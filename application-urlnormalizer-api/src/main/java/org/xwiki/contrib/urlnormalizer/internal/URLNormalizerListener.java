@@ -28,15 +28,20 @@ import javax.inject.Singleton;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentCreatingEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.bridge.event.DocumentUpdatingEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.urlnormalizer.NormalizationException;
 import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
 import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
@@ -64,23 +69,49 @@ public class URLNormalizerListener extends AbstractEventListener
     @Inject
     private Provider<URLNormalizerConfigurationStore> configurationProvider;
 
+    @Inject
+    private Provider<AsynchronousURLNormalizer> asynchronousNormalizerProvider;
+
+    @Inject
+    private RemoteObservationManagerContext remoteContext;
+
     /**
      * Builds a new {@link URLNormalizerListener}.
      */
     public URLNormalizerListener()
     {
-        super(NAME, new DocumentCreatingEvent(), new DocumentUpdatingEvent());
+        super(NAME, new DocumentCreatingEvent(), new DocumentUpdatingEvent(), new DocumentCreatedEvent(),
+            new DocumentUpdatedEvent());
     }
 
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        // Only the member of the cluster which saved the document normalizes it, and the saves of the documents which
+        // were just normalized (in the background or by a normalization job) don't need a new normalization
+        if (this.remoteContext.isRemoteState() || DefaultURLNormalizationManager.isSaving((XWikiContext) data)) {
+            return;
+        }
+
         XWikiDocument document = (XWikiDocument) source;
 
         // Check if normalization is enabled
         try {
-            if (this.configurationProvider.get().isEnabled(document.getDocumentReference().getWikiReference())) {
-                normalize(document);
+            URLNormalizerConfigurationStore configuration = this.configurationProvider.get();
+            WikiReference wiki = document.getDocumentReference().getWikiReference();
+
+            if (configuration.isEnabled(wiki)) {
+                boolean asynchronous = configuration.isAsynchronous(wiki);
+
+                if (event instanceof DocumentCreatedEvent || event instanceof DocumentUpdatedEvent) {
+                    if (asynchronous) {
+                        // Only normalize the document once it's actually saved
+                        this.asynchronousNormalizerProvider.get()
+                            .normalize(document.getDocumentReferenceWithLocale());
+                    }
+                } else if (!asynchronous) {
+                    normalize(document);
+                }
             }
         } catch (NormalizationException e) {
             this.logger.error("Failed to load the configuration", e);
@@ -98,7 +129,7 @@ public class URLNormalizerListener extends AbstractEventListener
 
         try {
             this.urlNormalizationManagerProvider.get().normalize(document,
-                Arrays.asList(ContentDocumentNormalizer.HINT, ModifiedObjectDocumentNormalizer.HINT));
+                Arrays.asList(ModifiedContentDocumentNormalizer.HINT, ModifiedObjectDocumentNormalizer.HINT));
         } catch (NormalizationException e) {
             this.logger.warn("Unable to normalize URLs for document [{}]. Root error [{}]",
                 document.getDocumentReference(), ExceptionUtils.getRootCauseMessage(e));
@@ -0,0 +1,317 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Collect counters and timings about the URL normalization. The metrics are cheap to record (no lock is involved) so
+ * they are always enabled.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = URLNormalizerMetrics.class)
+@Singleton
+public class URLNormalizerMetrics implements URLNormalizerMetricsMBean, Initializable, Disposable
+{
+    /**
+     * The name under which the metrics are registered in the MBean server.
+     */
+    public static final String MBEAN_NAME = "type=URLNormalizer";
+
+    /**
+     * A number of events and the total time they took.
+     */
+    private static final class Timer
+    {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder time = new LongAdder();
+
+        void record(long nanos)
+        {
+            this.count.increment();
+            this.time.add(nanos);
+        }
+
+        long getCount()
+        {
+            return this.count.sum();
+        }
+
+        long getTime()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.time.sum());
+        }
+
+        void reset()
+        {
+            this.count.reset();
+            this.time.reset();
+        }
+    }
+
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    private final LongAdder documentsProcessed = new LongAdder();
+
+    private final LongAdder documentsModified = new LongAdder();
+
+    private final Timer parse = new Timer();
+
+    private final Timer normalize = new Timer();
+
+    private final Timer render = new Timer();
+
+    private final ConcurrentMap<String, Timer> normalizers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> filterHits = new ConcurrentHashMap<>();
+
+    private final LongAdder referenceCacheHits = new LongAdder();
+
+    private final LongAdder referenceCacheMisses = new LongAdder();
+
+    private final LongAdder queueDepth = new LongAdder();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.jmxRegistration.registerMBean(this, MBEAN_NAME);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.jmxRegistration.unregisterMBean(MBEAN_NAME);
+    }
+
+    /**
+     * @param modified true if the document was modified by the normalization
+     */
+    public void documentProcessed(boolean modified)
+    {
+        this.documentsProcessed.increment();
+        if (modified) {
+            this.documentsModified.increment();
+        }
+    }
+
+    /**
+     * @param nanos the time it took to parse a content, in nanoseconds
+     */
+    public void parsed(long nanos)
+    {
+        this.parse.record(nanos);
+    }
+
+    /**
+     * @param nanos the time it took to normalize a XDOM, in nanoseconds
+     */
+    public void normalized(long nanos)
+    {
+        this.normalize.record(nanos);
+    }
+
+    /**
+     * @param nanos the time it took to render a normalized XDOM, in nanoseconds
+     */
+    public void rendered(long nanos)
+    {
+        this.render.record(nanos);
+    }
+
+    /**
+     * @param hint the hint of the document normalizer
+     * @param nanos the time it took to apply the document normalizer, in nanoseconds
+     */
+    public void normalizerApplied(String hint, long nanos)
+    {
+        this.normalizers.computeIfAbsent(hint, k -> new Timer()).record(nanos);
+    }
+
+    /**
+     * @param filter the filter which matched a reference
+     */
+    public void filterHit(URLNormalizerFilter filter)
+    {
+        this.filterHits.computeIfAbsent(filter.getLinkReference().pattern(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param hit true if the normalization of a reference was found in the cache
+     */
+    public void referenceCacheAccessed(boolean hit)
+    {
+        if (hit) {
+            this.referenceCacheHits.increment();
+        } else {
+            this.referenceCacheMisses.increment();
+        }
+    }
+
+    /**
+     * A document was added to the background normalization queue.
+     */
+    public void queued()
+    {
+        this.queueDepth.increment();
+    }
+
+    /**
+     * A document was removed from the background normalization queue.
+     */
+    public void dequeued()
+    {
+        this.queueDepth.decrement();
+    }
+
+    @Override
+    public long getDocumentsProcessed()
+    {
+        return this.documentsProcessed.sum();
+    }
+
+    @Override
+    public long getDocumentsModified()
+    {
+        return this.documentsModified.sum();
+    }
+
+    @Override
+    public long getParseCount()
+    {
+        return this.parse.getCount();
+    }
+
+    @Override
+    public long getParseTime()
+    {
+        return this.parse.getTime();
+    }
+
+    @Override
+    public long getNormalizeCount()
+    {
+        return this.normalize.getCount();
+    }
+
+    @Override
+    public long getNormalizeTime()
+    {
+        return this.normalize.getTime();
+    }
+
+    @Override
+    public long getRenderCount()
+    {
+        return this.render.getCount();
+    }
+
+    @Override
+    public long getRenderTime()
+    {
+        return this.render.getTime();
+    }
+
+    @Override
+    public Map<String, Long> getNormalizerCounts()
+    {
+        return toMap(this.normalizers, Timer::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getNormalizerTimes()
+    {
+        return toMap(this.normalizers, Timer::getTime);
+    }
+
+    @Override
+    public Map<String, Long> getFilterHits()
+    {
+        return toMap(this.filterHits, LongAdder::sum);
+    }
+
+    private <T> Map<String, Long> toMap(Map<String, T> map, ToLongFunction<T> value)
+    {
+        Map<String, Long> result = new TreeMap<>();
+        map.forEach((key, metric) -> result.put(key, value.applyAsLong(metric)));
+
+        return result;
+    }
+
+    @Override
+    public long getReferenceCacheHits()
+    {
+        return this.referenceCacheHits.sum();
+    }
+
+    @Override
+    public long getReferenceCacheMisses()
+    {
+        return this.referenceCacheMisses.sum();
+    }
+
+    @Override
+    public double getReferenceCacheHitRate()
+    {
+        long hits = getReferenceCacheHits();
+        long total = hits + getReferenceCacheMisses();
+
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    @Override
+    public long getQueueDepth()
+    {
+        return this.queueDepth.sum();
+    }
+
+    @Override
+    public void reset()
+    {
+        this.documentsProcessed.reset();
+        this.documentsModified.reset();
+        this.parse.reset();
+        this.normalize.reset();
+        this.render.reset();
+        this.normalizers.clear();
+        this.filterHits.clear();
+        this.referenceCacheHits.reset();
+        this.referenceCacheMisses.reset();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Map;
+
+/**
+ * Read access to the URL normalization metrics, exposed through JMX and the script service.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public interface URLNormalizerMetricsMBean
+{
+    /**
+     * @return the number of documents which went through the normalization
+     */
+    long getDocumentsProcessed();
+
+    /**
+     * @return the number of documents modified by the normalization
+     */
+    long getDocumentsModified();
+
+    /**
+     * @return the number of parsed contents
+     */
+    long getParseCount();
+
+    /**
+     * @return the total time spent parsing contents, in milliseconds
+     */
+    long getParseTime();
+
+    /**
+     * @return the number of normalized XDOMs
+     */
+    long getNormalizeCount();
+
+    /**
+     * @return the total time spent normalizing XDOMs, in milliseconds
+     */
+    long getNormalizeTime();
+
+    /**
+     * @return the number of rendered XDOMs
+     */
+    long getRenderCount();
+
+    /**
+     * @return the total time spent rendering normalized XDOMs, in milliseconds
+     */
+    long getRenderTime();
+
+    /**
+     * @return the number of times each document normalizer was applied, indexed by normalizer hint
+     */
+    Map<String, Long> getNormalizerCounts();
+
+    /**
+     * @return the total time spent in each document normalizer in milliseconds, indexed by normalizer hint
+     */
+    Map<String, Long> getNormalizerTimes();
+
+    /**
+     * @return the number of references matched by each filter, indexed by filter link reference pattern (references
+     *         whose normalization is found in the cache are not matched again)
+     */
+    Map<String, Long> getFilterHits();
+
+    /**
+     * @return the number of references whose normalization was found in the cache
+     */
+    long getReferenceCacheHits();
+
+    /**
+     * @return the number of references whose normalization was not found in the cache
+     */
+    long getReferenceCacheMisses();
+
+    /**
+     * @return the ratio of references whose normalization was found in the cache, between 0 and 1
+     */
+    double getReferenceCacheHitRate();
+
+    /**
+     * @return the number of documents waiting to be normalized in the background
+     */
+    long getQueueDepth();
+
+    /**
+     * Reset all the metrics, except the queue depth which reflects the current state.
+     */
+    void reset();
+}
@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.function.Consumer;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+
+/**
+ * Collect the references rewritten by the normalization of a document in the current thread, to produce the manifest
+ * of a dry-run. The normalizers report what they do to this component, which does nothing unless a recording was
+ * started in the current thread.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component(roles = URLRewriteRecorder.class)
+@Singleton
+public class URLRewriteRecorder
+{
+    private static final class Recording
+    {
+        private final DocumentReference document;
+
+        private final Consumer<URLRewrite> consumer;
+
+        private EntityReference location;
+
+        private String filter;
+
+        Recording(DocumentReference document, Consumer<URLRewrite> consumer)
+        {
+            this.document = document;
+            this.consumer = consumer;
+            this.location = document;
+        }
+    }
+
+    private final ThreadLocal<Recording> recording = new ThreadLocal<>();
+
+    /**
+     * Start recording the rewrites of the current thread.
+     *
+     * @param document the document being normalized
+     * @param consumer called for each rewritten reference
+     */
+    public void start(DocumentReference document, Consumer<URLRewrite> consumer)
+    {
+        this.recording.set(new Recording(document, consumer));
+    }
+
+    /**
+     * Stop recording the rewrites of the current thread.
+     */
+    public void stop()
+    {
+        this.recording.remove();
+    }
+
+    /**
+     * @param location the part of the document being normalized: the document itself for its content or the
+     *            reference of an object property
+     */
+    public void setLocation(EntityReference location)
+    {
+        Recording currentRecording = this.recording.get();
+        if (currentRecording != null) {
+            currentRecording.location = location != null ? location : currentRecording.document;
+        }
+    }
+
+    /**
+     * @param filter the filter which produced the last normalized reference, null if it was produced by the standard
+     *            conversion
+     */
+    public void setFilter(String filter)
+    {
+        Recording currentRecording = this.recording.get();
+        if (currentRecording != null) {
+            currentRecording.filter = filter;
+        }
+    }
+
+    /**
+     * @param oldReference the reference before the normalization
+     * @param newReference the reference after the normalization
+     */
+    public void rewritten(ResourceReference oldReference, ResourceReference newReference)
+    {
+        Recording currentRecording = this.recording.get();
+        if (currentRecording != null) {
+            currentRecording.consumer.accept(new URLRewrite(currentRecording.document, currentRecording.location,
+                oldReference, newReference, currentRecording.filter));
+        }
+    }
+}
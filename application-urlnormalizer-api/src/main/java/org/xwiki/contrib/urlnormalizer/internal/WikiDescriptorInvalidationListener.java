@@ -0,0 +1,75 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+
+/**
+ * Listener in charge of invalidating what is computed from the wiki descriptors (aliases, ports, etc.).
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@Named(WikiDescriptorInvalidationListener.NAME)
+@Singleton
+public class WikiDescriptorInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.contrib.urlnormalizer.internal.WikiDescriptorInvalidationListener";
+
+    private static final RegexEventFilter DESCRIPTOR_REGEX_FILTER = new RegexEventFilter(".*:XWiki\\.XWikiServer.*");
+
+    @Inject
+    private LocalHostTable hostTable;
+
+    @Inject
+    private ResourceReferenceNormalizationCache referenceCache;
+
+    /**
+     * Default constructor.
+     */
+    public WikiDescriptorInvalidationListener()
+    {
+        super(NAME, new WikiCreatedEvent(), new WikiDeletedEvent(), new DocumentCreatedEvent(DESCRIPTOR_REGEX_FILTER),
+            new DocumentUpdatedEvent(DESCRIPTOR_REGEX_FILTER), new DocumentDeletedEvent(DESCRIPTOR_REGEX_FILTER));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.hostTable.invalidate();
+        this.referenceCache.invalidate();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+/**
+ * A {@link XDOMNormalizer} able to normalize a single block, so that several normalizers can share the same walk of
+ * the XDOM (see {@link CompositeXDOMNormalizer}).
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public interface XDOMBlockNormalizer extends XDOMNormalizer
+{
+    /**
+     * Normalize the passed block if it's supported by this normalizer.
+     *
+     * @param block the block to normalize
+     * @param xdom the XDOM containing the block
+     * @param parser the parser to use when we need to parse content written in wiki markup in some Blocks
+     * @param blockRenderer the renderer to use when we need to save the normalized content back into Blocks
+     * @return the block which replaced the passed one in the XDOM or the passed block itself if it was not modified
+     */
+    Block normalize(Block block, XDOM xdom, Parser parser, BlockRenderer blockRenderer);
+}
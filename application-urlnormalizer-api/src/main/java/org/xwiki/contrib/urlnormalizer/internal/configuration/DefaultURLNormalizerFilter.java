@@ -40,6 +40,8 @@ public class DefaultURLNormalizerFilter implements URLNormalizerFilter
 
     private final String targetReference;
 
+    private final TargetReferenceTemplate targetTemplate;
+
     /**
      * @param linkType the type of link to match
      * @param linkReference the pattern to produce to match the link
@@ -53,6 +55,7 @@ public class DefaultURLNormalizerFilter implements URLNormalizerFilter
         this.linkReference = linkReference;
         this.targetType = targetType;
         this.targetReference = targetReference;
+        this.targetTemplate = new TargetReferenceTemplate(targetReference);
     }
 
     @Override
@@ -78,4 +81,13 @@ public class DefaultURLNormalizerFilter implements URLNormalizerFilter
     {
         return this.targetReference;
     }
+
+    /**
+     * @return the precompiled target reference
+     * @since 1.9.1
+     */
+    public TargetReferenceTemplate getTargetTemplate()
+    {
+        return this.targetTemplate;
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.apache.commons.text.StringSubstitutor;
+
+/**
+ * The precompiled target reference of a filter. The template is parsed once into literal and variable segments and
+ * produces the same result as a {@link StringSubstitutor} resolving variables with the groups of the filter match.
+ * Templates using features which cannot be precompiled (nested variables, variables in default values) are delegated
+ * to {@link StringSubstitutor}.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class TargetReferenceTemplate
+{
+    private static final String PREFIX = "${";
+
+    private static final char SUFFIX = '}';
+
+    private static final char ESCAPE = '$';
+
+    private static final String DEFAULT_SEPARATOR = ":-";
+
+    private final String template;
+
+    /**
+     * The segments of the template or null if it could not be precompiled.
+     */
+    private final List<Segment> segments;
+
+    private static final class Segment
+    {
+        /**
+         * The literal text or, for a variable, the text to use when the variable cannot be resolved.
+         */
+        private final String text;
+
+        private final String name;
+
+        /**
+         * The index of the group corresponding to the variable or -1 if it's not a group index.
+         */
+        private final int index;
+
+        private final String defaultValue;
+
+        private Segment(String text)
+        {
+            this(text, null, null);
+        }
+
+        private Segment(String text, String name, String defaultValue)
+        {
+            this.text = text;
+            this.name = name;
+            this.index = name != null ? getIndex(name) : -1;
+            this.defaultValue = defaultValue;
+        }
+
+        private static int getIndex(String name)
+        {
+            // Only the canonical form of an integer is a group index
+            if (!name.isEmpty() && name.length() < 10 && (name.length() == 1 || name.charAt(0) != '0')) {
+                for (int i = 0; i < name.length(); ++i) {
+                    if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                        return -1;
+                    }
+                }
+
+                return Integer.parseInt(name);
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * @param template the target reference template
+     */
+    public TargetReferenceTemplate(String template)
+    {
+        this.template = template;
+        this.segments = template != null ? compile(template) : null;
+    }
+
+    private static List<Segment> compile(String template)
+    {
+        List<Segment> segments = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            if (template.charAt(i) == ESCAPE && template.startsWith(PREFIX, i + 1)) {
+                // Escaped variable
+                literal.append(PREFIX);
+                i += 1 + PREFIX.length();
+            } else if (template.startsWith(PREFIX, i)) {
+                int end = template.indexOf(SUFFIX, i + PREFIX.length());
+
+                if (end < 0) {
+                    // Not a variable
+                    literal.append(template, i, template.length());
+                    break;
+                }
+
+                String variable = template.substring(i + PREFIX.length(), end);
+
+                if (variable.contains(PREFIX)) {
+                    // Nested variables are not supported
+                    return null;
+                }
+
+                String name = variable;
+                String defaultValue = null;
+                int separator = variable.indexOf(DEFAULT_SEPARATOR);
+                if (separator >= 0) {
+                    name = variable.substring(0, separator);
+                    defaultValue = variable.substring(separator + DEFAULT_SEPARATOR.length());
+
+                    if (defaultValue.indexOf(ESCAPE) >= 0) {
+                        // The default value would be substituted too
+                        return null;
+                    }
+                }
+
+                if (literal.length() > 0) {
+                    segments.add(new Segment(literal.toString()));
+                    literal.setLength(0);
+                }
+                segments.add(new Segment(template.substring(i, end + 1), name, defaultValue));
+
+                i = end + 1;
+            } else {
+                literal.append(template.charAt(i));
+                ++i;
+            }
+        }
+
+        if (literal.length() > 0) {
+            segments.add(new Segment(literal.toString()));
+        }
+
+        return segments;
+    }
+
+    /**
+     * @return the template
+     */
+    public String getTemplate()
+    {
+        return this.template;
+    }
+
+    /**
+     * @param matcher the result of the match of the filter with the reference
+     * @return the target reference
+     */
+    public String render(Matcher matcher)
+    {
+        if (this.segments == null) {
+            return substitute(matcher);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Segment segment : this.segments) {
+            if (segment.name == null) {
+                builder.append(segment.text);
+            } else {
+                String value = getValue(segment, matcher);
+
+                if (value == null) {
+                    value = segment.defaultValue != null ? segment.defaultValue : segment.text;
+                } else if (value.indexOf(ESCAPE) >= 0) {
+                    // The value would be substituted too
+                    return substitute(matcher);
+                }
+
+                builder.append(value);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private String getValue(Segment segment, Matcher matcher)
+    {
+        String value = null;
+
+        if (segment.index >= 0 && segment.index <= matcher.groupCount()) {
+            value = matcher.group(segment.index);
+        }
+
+        if (value == null) {
+            value = matcher.group(segment.name);
+        }
+
+        return value;
+    }
+
+    private String substitute(Matcher matcher)
+    {
+        int groupCount = matcher.groupCount();
+        Map<String, String> values = new HashMap<>(groupCount);
+        for (int i = 0; i <= groupCount; ++i) {
+            values.put(String.valueOf(i), matcher.group(i));
+        }
+
+        return new StringSubstitutor(k -> {
+            String value = values.get(k);
+
+            if (value == null) {
+                value = matcher.group(k);
+            }
+
+            return value;
+        }).replace(this.template);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Sent when the configuration of a wiki changes, so that the other members of a cluster know they have to reload it.
+ * The event is serializable to be forwarded by the remote observation manager.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class URLNormalizerConfigurationChangedEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String wikiId;
+
+    private final long version;
+
+    /**
+     * Listen to any configuration change.
+     */
+    public URLNormalizerConfigurationChangedEvent()
+    {
+        this(null, 0);
+    }
+
+    /**
+     * @param wikiId the identifier of the wiki whose configuration changed
+     * @param version the new version of the configuration of the wiki
+     */
+    public URLNormalizerConfigurationChangedEvent(String wikiId, long version)
+    {
+        this.wikiId = wikiId;
+        this.version = version;
+    }
+
+    /**
+     * @return the identifier of the wiki whose configuration changed
+     */
+    public String getWikiId()
+    {
+        return this.wikiId;
+    }
+
+    /**
+     * @return the new version of the configuration of the wiki
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof URLNormalizerConfigurationChangedEvent;
+    }
+}
@@ -62,6 +62,14 @@ public class URLNormalizerConfigurationClassInitializer extends AbstractURLNorma
      */
     public static final String FIELD_ENABLED = "enabled";
 
+    /**
+     * The name of the property indicating if saved documents are normalized in the background instead of during the
+     * save.
+     * 
+     * @since 1.9.1
+     */
+    public static final String FIELD_ASYNCHRONOUS = "asynchronous";
+
     /**
      * Default constructor.
      */
@@ -74,5 +82,6 @@ public class URLNormalizerConfigurationClassInitializer extends AbstractURLNorma
     protected void createClass(BaseClass xclass)
     {
         xclass.addBooleanField(FIELD_ENABLED, "Enabled", "select");
+        xclass.addBooleanField(FIELD_ASYNCHRONOUS, "Asynchronous", "select");
     }
 }
@@ -28,9 +28,11 @@ import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.event.filter.RegexEventFilter;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 
@@ -60,6 +62,12 @@ public class URLNormalizerConfigurationInvalidationListener extends AbstractEven
     @Inject
     private URLNormalizerConfigurationStore store;
 
+    @Inject
+    private ResourceReferenceNormalizationCache referenceCache;
+
+    @Inject
+    private RemoteObservationManagerContext remoteContext;
+
     /**
      * Default constructor.
      */
@@ -72,12 +80,22 @@ public class URLNormalizerConfigurationInvalidationListener extends AbstractEven
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        String wikiId;
         if (event instanceof WikiDeletedEvent) {
-            this.store.invalidate(((WikiDeletedEvent) event).getWikiId());
+            wikiId = ((WikiDeletedEvent) event).getWikiId();
         } else {
-            XWikiDocument document = (XWikiDocument) source;
+            wikiId = ((XWikiDocument) source).getDocumentReference().getWikiReference().getName();
+        }
 
-            this.store.invalidate(document.getDocumentReference().getWikiReference().getName());
+        if (this.remoteContext.isRemoteState()) {
+            // The new version of the configuration is received through URLNormalizerConfigurationChangedEvent but it
+            // may arrive before the document cache is updated, so the configuration loaded in between is dropped too
+            this.store.invalidateRemote(wikiId);
+        } else {
+            this.store.invalidate(wikiId);
         }
+
+        // The normalization of references depends on the filters
+        this.referenceCache.invalidate();
     }
 }
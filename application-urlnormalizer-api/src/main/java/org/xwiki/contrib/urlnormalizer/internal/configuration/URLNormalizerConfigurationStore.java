@@ -19,12 +19,22 @@
  */
 package org.xwiki.contrib.urlnormalizer.internal.configuration;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
@@ -38,6 +48,7 @@ import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.contrib.urlnormalizer.NormalizationException;
 import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
 import org.xwiki.model.EntityType;
@@ -45,6 +56,7 @@ import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.listener.reference.ResourceType;
 
 import com.xpn.xwiki.XWikiContext;
@@ -67,6 +79,26 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
      */
     public static final String CONFIGURATION_NAME = "Configuration";
 
+    /**
+     * The name of the {@code xwiki.properties} property indicating the maximum number of wikis whose configuration is
+     * kept in memory.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_CACHE_CAPACITY = "urlnormalizer.configuration.cacheCapacity";
+
+    /**
+     * The default maximum number of wikis whose configuration is kept in memory.
+     * 
+     * @since 1.9.1
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 100;
+
+    /**
+     * The value of a configuration property which is not set in the wiki.
+     */
+    private static final int UNSET = -1;
+
     /**
      * The local reference of the page containing the wiki configuration of the normalizer.
      */
@@ -80,38 +112,125 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
     @Inject
     private CacheManager cacheManager;
 
+    /**
+     * Used to tell the other members of the cluster about the configuration changes (lazily loaded to not create a
+     * dependency cycle with the listeners).
+     */
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
     @Inject
     private Logger logger;
 
-    private Cache<CacheEntry> cache;
+    /**
+     * The maximum number of wikis whose configuration is cached.
+     */
+    private int cacheCapacity;
+
+    /**
+     * The configuration applied in each wiki, combining the wiki own configuration and the main wiki one.
+     */
+    private Cache<ConfigurationSnapshot> cache;
+
+    /**
+     * The configuration stored in each wiki, kept when the main wiki configuration changes.
+     */
+    private Cache<LocalConfiguration> localCache;
+
+    /**
+     * The configurations being loaded, shared by all the threads asking for the configuration of the same wiki.
+     */
+    private final ConcurrentMap<String, CompletableFuture<ConfigurationSnapshot>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time a configuration is invalidated, to not cache a configuration loaded before the
+     * invalidation.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
 
-    private class CacheEntry
+    /**
+     * The latest known version of the configuration of each wiki, in the whole cluster. The versions are logical
+     * counters (incremented by each change, and raised to the version of the changes received from the other members)
+     * so that they don't depend on the clocks of the members.
+     */
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * The configuration stored in the configuration page of a wiki, without what it inherits from the main wiki.
+     */
+    private static final class LocalConfiguration
     {
+        private final int enabled;
+
+        private final int asynchronous;
+
+        private final List<URLNormalizerFilter> filters;
+
+        LocalConfiguration(int enabled, int asynchronous, List<URLNormalizerFilter> filters)
+        {
+            this.enabled = enabled;
+            this.asynchronous = asynchronous;
+            this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        }
+    }
+
+    /**
+     * The configuration of a wiki, as loaded at a given time. Snapshots are never modified, a new one is created and
+     * cached when the configuration changes.
+     */
+    private static final class ConfigurationSnapshot
+    {
+        private final long version;
+
         private final boolean enabled;
 
-        private final List<URLNormalizerFilter> writeFilters;
+        private final boolean asynchronous;
+
+        private final List<URLNormalizerFilter> filters;
+
+        private final URLNormalizerFilterMatcher filterMatcher;
 
-        private final List<URLNormalizerFilter> readFilters;
+        private final String fingerprint;
 
-        CacheEntry(boolean enabled, List<URLNormalizerFilter> filters)
+        ConfigurationSnapshot(long version, boolean enabled, boolean asynchronous, List<URLNormalizerFilter> filters)
         {
+            this.version = version;
             this.enabled = enabled;
-            this.writeFilters = filters;
-            this.readFilters = Collections.unmodifiableList(this.writeFilters);
+            this.asynchronous = asynchronous;
+            this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+            this.filterMatcher = new URLNormalizerFilterMatcher(this.filters);
+            this.fingerprint = computeFingerprint(this.filters);
         }
     }
 
     @Override
     public void initialize() throws InitializationException
     {
+        this.cacheCapacity = this.configuration.getProperty(PROPERTY_CACHE_CAPACITY, DEFAULT_CACHE_CAPACITY);
+
         try {
-            this.cache =
-                this.cacheManager.createNewCache(new LRUCacheConfiguration("urlnormalizer.configuration", 100));
+            this.cache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration("urlnormalizer.configuration", this.cacheCapacity));
+            this.localCache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration("urlnormalizer.configuration.local", this.cacheCapacity));
         } catch (Exception e) {
             throw new InitializationException("Failed to create URL Normalizer Configuration cache", e);
         }
     }
 
+    /**
+     * @return the maximum number of wikis whose configuration is kept in memory, see {@link #PROPERTY_CACHE_CAPACITY}
+     * @since 1.9.1
+     */
+    public int getCacheCapacity()
+    {
+        return this.cacheCapacity;
+    }
+
     /**
      * @param wiki the wiki for which to get the configuration
      * @return true if the normalization is globally enabled
@@ -122,6 +241,17 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
         return getConfiguration(wiki).enabled;
     }
 
+    /**
+     * @param wiki the wiki for which to get the configuration
+     * @return true if saved documents should be normalized in the background instead of during the save
+     * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
+     */
+    public boolean isAsynchronous(WikiReference wiki) throws NormalizationException
+    {
+        return getConfiguration(wiki).asynchronous;
+    }
+
     /**
      * @param wiki the wiki for which to get the configuration
      * @return the filters
@@ -129,75 +259,216 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
      */
     public List<URLNormalizerFilter> getFilters(WikiReference wiki) throws NormalizationException
     {
-        return getConfiguration(wiki).readFilters;
+        return getConfiguration(wiki).filters;
     }
 
     /**
-     * @param wiki the reference of the wiki
-     * @return the configuration for the passed wiki
+     * @param wiki the wiki for which to get the configuration
+     * @return the matcher to use to find the filter to apply to a reference
      * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
      */
-    private CacheEntry getConfiguration(WikiReference wiki) throws NormalizationException
+    public URLNormalizerFilterMatcher getFilterMatcher(WikiReference wiki) throws NormalizationException
     {
-        CacheEntry entry = this.cache.get(wiki.getName());
+        return getConfiguration(wiki).filterMatcher;
+    }
 
-        if (entry == null) {
-            try {
-                entry = loadConfiguration(wiki);
+    /**
+     * @param wiki the wiki for which to get the configuration
+     * @return a hash of the filters applied in the passed wiki (including the ones inherited from the main wiki), which
+     *         changes as soon as one of them is modified
+     * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
+     */
+    public String getFingerprint(WikiReference wiki) throws NormalizationException
+    {
+        return getConfiguration(wiki).fingerprint;
+    }
+
+    /**
+     * @param filters the filters to hash
+     * @return the hash of the filters, in the order in which they are applied
+     */
+    static String computeFingerprint(List<URLNormalizerFilter> filters)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
 
-                this.cache.set(wiki.getName(), entry);
-            } catch (Exception e) {
-                throw new NormalizationException(
-                    "Failed to load the normalization configuration for wiki [" + wiki.getName() + "]", e);
+        for (URLNormalizerFilter filter : filters) {
+            if (filter != null) {
+                updateDigest(digest, filter.getLinkType() != null ? filter.getLinkType().getScheme() : null);
+                updateDigest(digest, filter.getLinkReference().pattern());
+                updateDigest(digest, String.valueOf(filter.getLinkReference().flags()));
+                updateDigest(digest, filter.getTargetType() != null ? filter.getTargetType().getScheme() : null);
+                updateDigest(digest, filter.getTargetReference());
             }
         }
 
-        return entry;
+        return Base64.getEncoder().encodeToString(digest.digest());
     }
 
-    private CacheEntry loadConfiguration(WikiReference wiki) throws XWikiException, NormalizationException
+    private static void updateDigest(MessageDigest digest, String value)
     {
-        XWikiContext xcontext = this.xcontextProvider.get();
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // Separate the values so that moving characters from one to the other changes the hash
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @param wiki the wiki for which to get the configuration
+     * @return the version of the configuration of the passed wiki currently applied by this member of the cluster,
+     *         which changes each time the configuration page of the wiki is modified (0 when it was not modified since
+     *         the start)
+     * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
+     */
+    public long getVersion(WikiReference wiki) throws NormalizationException
+    {
+        return getConfiguration(wiki).version;
+    }
 
-        // Load current wiki filters
-        CacheEntry configuration = loadConfiguration(wiki, xcontext);
+    /**
+     * @param wiki the reference of the wiki
+     * @return the configuration for the passed wiki
+     * @throws NormalizationException when failing to load the configuration
+     */
+    private ConfigurationSnapshot getConfiguration(WikiReference wiki) throws NormalizationException
+    {
+        ConfigurationSnapshot snapshot = this.cache.get(wiki.getName());
 
-        // Load main wiki filters if not already in main wiki
-        if (!xcontext.isMainWiki(wiki.getName())) {
-            CacheEntry mainConfiguration = getConfiguration(new WikiReference(xcontext.getMainXWiki()));
-            configuration.writeFilters.addAll(mainConfiguration.writeFilters);
+        if (snapshot == null) {
+            snapshot = loadConfigurationOnce(wiki);
         }
 
-        return configuration;
+        return snapshot;
+    }
+
+    /**
+     * Make sure the configuration of a wiki is loaded only once when several threads need it at the same time: the
+     * first thread loads it, and the others wait for the result.
+     */
+    private ConfigurationSnapshot loadConfigurationOnce(WikiReference wiki) throws NormalizationException
+    {
+        CompletableFuture<ConfigurationSnapshot> future = new CompletableFuture<>();
+        CompletableFuture<ConfigurationSnapshot> currentFuture = this.loading.putIfAbsent(wiki.getName(), future);
+
+        if (currentFuture != null) {
+            return waitConfiguration(wiki, currentFuture);
+        }
+
+        try {
+            long invalidation = this.invalidations.get();
+            long version = this.versions.getOrDefault(wiki.getName(), 0L);
+
+            ConfigurationSnapshot snapshot = loadConfiguration(wiki, version, invalidation);
+
+            // Don't cache a configuration which was modified while being loaded
+            if (invalidation == this.invalidations.get()) {
+                this.cache.set(wiki.getName(), snapshot);
+            }
+
+            future.complete(snapshot);
+
+            return snapshot;
+        } catch (Exception e) {
+            NormalizationException exception = new NormalizationException(
+                "Failed to load the normalization configuration for wiki [" + wiki.getName() + "]", e);
+
+            future.completeExceptionally(exception);
+
+            throw exception;
+        } finally {
+            this.loading.remove(wiki.getName(), future);
+        }
+    }
+
+    private ConfigurationSnapshot waitConfiguration(WikiReference wiki,
+        CompletableFuture<ConfigurationSnapshot> future) throws NormalizationException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new NormalizationException(
+                "Interrupted while waiting for the normalization configuration of wiki [" + wiki.getName() + "]", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NormalizationException) {
+                throw (NormalizationException) e.getCause();
+            }
+
+            throw new NormalizationException(
+                "Failed to load the normalization configuration for wiki [" + wiki.getName() + "]", e.getCause());
+        }
     }
 
-    private CacheEntry loadConfiguration(WikiReference wikiReference, XWikiContext xcontext)
+    private ConfigurationSnapshot loadConfiguration(WikiReference wikiReference, long version, long invalidation)
         throws XWikiException, NormalizationException
     {
-        XWikiDocument filtersDocument =
-            xcontext.getWiki().getDocument(new DocumentReference(CONFIGURATION_REFERENCE, wikiReference), xcontext);
+        XWikiContext xcontext = this.xcontextProvider.get();
 
-        // Enabled/disabled
+        LocalConfiguration localConfiguration = this.localCache.get(wikiReference.getName());
+        if (localConfiguration == null) {
+            localConfiguration = loadLocalConfiguration(wikiReference, xcontext);
 
-        BaseObject xobject = filtersDocument.getXObject(URLNormalizerConfigurationClassInitializer.CLASS_REFERENCE);
+            // Don't cache a configuration which was modified while being loaded
+            if (invalidation == this.invalidations.get()) {
+                this.localCache.set(wikiReference.getName(), localConfiguration);
+            }
+        }
 
-        // Resolve the default value (enabled for main wiki and whatever is the main wiki value otherwise)
-        int defaultValue;
+        // Enabled/disabled (enabled for main wiki and whatever is the main wiki value otherwise)
+        // Asynchronous (disabled for main wiki and whatever is the main wiki value otherwise)
+        // Filters (the current wiki ones first, then the main wiki ones if not already in main wiki)
+
+        boolean enabled;
+        boolean asynchronous;
+        List<URLNormalizerFilter> filters;
         if (xcontext.isMainWiki(wikiReference.getName())) {
-            defaultValue = 1;
+            enabled = true;
+            asynchronous = false;
+            filters = localConfiguration.filters;
         } else {
-            defaultValue = isEnabled(new WikiReference(xcontext.getMainXWiki())) ? 1 : 0;
+            ConfigurationSnapshot mainConfiguration = getConfiguration(new WikiReference(xcontext.getMainXWiki()));
+            enabled = mainConfiguration.enabled;
+            asynchronous = mainConfiguration.asynchronous;
+            filters = new ArrayList<>(localConfiguration.filters.size() + mainConfiguration.filters.size());
+            filters.addAll(localConfiguration.filters);
+            filters.addAll(mainConfiguration.filters);
+        }
+
+        // Values stored in the wiki
+        if (localConfiguration.enabled != UNSET) {
+            enabled = localConfiguration.enabled != 0;
+        }
+        if (localConfiguration.asynchronous != UNSET) {
+            asynchronous = localConfiguration.asynchronous != 0;
         }
 
-        // Get the value stored in the wiki
-        int enabledValue = xobject != null
-            ? xobject.getIntValue(URLNormalizerConfigurationClassInitializer.FIELD_ENABLED, defaultValue)
-            : defaultValue;
+        return new ConfigurationSnapshot(version, enabled, asynchronous, filters);
+    }
+
+    private LocalConfiguration loadLocalConfiguration(WikiReference wikiReference, XWikiContext xcontext)
+        throws XWikiException
+    {
+        XWikiDocument filtersDocument =
+            xcontext.getWiki().getDocument(new DocumentReference(CONFIGURATION_REFERENCE, wikiReference), xcontext);
 
-        // Convert the value into a boolean
-        boolean enabled = enabledValue != 0;
+        BaseObject xobject = filtersDocument.getXObject(URLNormalizerConfigurationClassInitializer.CLASS_REFERENCE);
 
-        // Filters
+        int enabled = UNSET;
+        int asynchronous = UNSET;
+        if (xobject != null) {
+            enabled = xobject.getIntValue(URLNormalizerConfigurationClassInitializer.FIELD_ENABLED, UNSET);
+            asynchronous = xobject.getIntValue(URLNormalizerConfigurationClassInitializer.FIELD_ASYNCHRONOUS, UNSET);
+        }
 
         List<BaseObject> filterObjects =
             filtersDocument.getXObjects(URLNormalizerFilterClassInitializer.CLASS_REFERENCE);
@@ -214,7 +485,7 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
             }
         }
 
-        return new CacheEntry(enabled, filters);
+        return new LocalConfiguration(enabled, asynchronous, filters);
     }
 
     private URLNormalizerFilter loadFilter(BaseObject filterObject)
@@ -243,18 +514,69 @@ public class URLNormalizerConfigurationStore implements Initializable, Disposabl
     public void dispose()
     {
         this.cache.dispose();
+        this.localCache.dispose();
     }
 
     /**
-     * Invalidate cached configuration.
+     * Invalidate cached configuration after a modification made by this member of the cluster. The configuration of
+     * the other wikis is kept when the main wiki configuration changes, only the way they inherit it is recomputed.
+     * The other members of the cluster are notified with a {@link URLNormalizerConfigurationChangedEvent}.
      * 
      * @param wikiId the wiki for which to invalidate the cached filters
      */
     public void invalidate(String wikiId)
     {
+        long version = this.versions.merge(wikiId, 1L, Long::sum);
+
+        removeCached(wikiId);
+
+        this.observationManagerProvider.get().notify(new URLNormalizerConfigurationChangedEvent(wikiId, version),
+            null);
+    }
+
+    /**
+     * Take into account a modification made by another member of the cluster: the cached configuration is dropped,
+     * and reloaded the next time it's needed. The known version is raised to the passed one, but the configuration is
+     * dropped even when the passed version is not greater (e.g. when the other member was restarted and counts its
+     * changes from the beginning again) so that no change is lost.
+     * 
+     * @param wikiId the wiki whose configuration changed
+     * @param version the version of the configuration of the wiki in the other member of the cluster
+     * @since 1.9.1
+     */
+    public void invalidateRemote(String wikiId, long version)
+    {
+        this.versions.merge(wikiId, version, Math::max);
+
+        removeCached(wikiId);
+    }
+
+    /**
+     * Drop the cached configuration after a modification made by another member of the cluster, without notifying the
+     * other members. Called when the document events forwarded by the other member are received, i.e. once the
+     * configuration page has been updated in the document cache, so that a configuration reloaded too early (when the
+     * {@link URLNormalizerConfigurationChangedEvent} arrives first) doesn't remain cached.
+     * 
+     * @param wikiId the wiki whose configuration changed
+     * @since 1.9.1
+     */
+    public void invalidateRemote(String wikiId)
+    {
+        removeCached(wikiId);
+    }
+
+    private void removeCached(String wikiId)
+    {
+        this.invalidations.incrementAndGet();
+
+        this.localCache.remove(wikiId);
+
+        // The configurations being loaded are not cached anymore but the next readers should not wait for them
         if (this.xcontextProvider.get().isMainWiki(wikiId)) {
+            this.loading.clear();
             this.cache.removeAll();
         } else {
+            this.loading.remove(wikiId);
             this.cache.remove(wikiId);
         }
     }
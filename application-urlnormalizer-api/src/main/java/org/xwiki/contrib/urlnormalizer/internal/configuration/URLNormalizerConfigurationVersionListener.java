@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+/**
+ * Listener in charge of invalidating the configuration cache when the configuration is modified by another member of
+ * the cluster.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@Named(URLNormalizerConfigurationVersionListener.NAME)
+@Singleton
+public class URLNormalizerConfigurationVersionListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME =
+        "org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationVersionListener";
+
+    @Inject
+    private URLNormalizerConfigurationStore store;
+
+    @Inject
+    private ResourceReferenceNormalizationCache referenceCache;
+
+    @Inject
+    private RemoteObservationManagerContext remoteContext;
+
+    /**
+     * Default constructor.
+     */
+    public URLNormalizerConfigurationVersionListener()
+    {
+        super(NAME, new URLNormalizerConfigurationChangedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // The local changes are already taken into account by the store sending the event
+        if (this.remoteContext.isRemoteState()) {
+            URLNormalizerConfigurationChangedEvent changedEvent = (URLNormalizerConfigurationChangedEvent) event;
+
+            this.store.invalidateRemote(changedEvent.getWikiId(), changedEvent.getVersion());
+
+            // The normalization of references depends on the filters
+            this.referenceCache.invalidate();
+        }
+    }
+}
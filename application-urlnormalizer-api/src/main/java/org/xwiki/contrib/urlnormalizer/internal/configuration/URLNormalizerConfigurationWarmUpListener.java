@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+/**
+ * Listener in charge of loading (and compiling) the configuration of all the wikis in the background once the
+ * application is ready, so that the first save in each wiki does not have to. Disabled by default, it's enabled with
+ * the {@value #PROPERTY_WARMUP} property in {@code xwiki.properties}. The warm-up stops once the configuration cache is
+ * full, since loading more wikis would only evict the ones already loaded.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@Named(URLNormalizerConfigurationWarmUpListener.NAME)
+@Singleton
+public class URLNormalizerConfigurationWarmUpListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME =
+        "org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationWarmUpListener";
+
+    /**
+     * The name of the {@code xwiki.properties} property indicating whether the configuration of all the wikis should
+     * be loaded at startup.
+     */
+    public static final String PROPERTY_WARMUP = "urlnormalizer.configuration.warmUp";
+
+    @Inject
+    private URLNormalizerConfigurationStore store;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Default constructor.
+     */
+    public URLNormalizerConfigurationWarmUpListener()
+    {
+        super(NAME, new ApplicationReadyEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.configuration.getProperty(PROPERTY_WARMUP, false)) {
+            Thread thread = new BasicThreadFactory.Builder().namingPattern("URL Normalizer configuration warm-up")
+                .daemon(true).priority(Thread.MIN_PRIORITY).build().newThread(this::run);
+            thread.start();
+        }
+    }
+
+    private void run()
+    {
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+
+            warmUp();
+        } catch (Exception e) {
+            this.logger.error("Failed to warm up the URL normalizer configuration", e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    /**
+     * Load the configuration of all the wikis, or of as many as the cache can hold (the main wiki configuration,
+     * inherited by the others, is loaded only once).
+     * 
+     * @throws Exception when failing to get the list of wikis
+     */
+    void warmUp() throws Exception
+    {
+        long start = System.nanoTime();
+
+        Collection<String> wikis = this.wikiDescriptorManager.getAllIds();
+        int capacity = this.store.getCacheCapacity();
+
+        int loaded = 0;
+        for (String wiki : wikis) {
+            if (loaded >= capacity) {
+                this.logger.warn("Stopped the URL normalizer configuration warm-up after [{}] wikis (out of [{}]) to"
+                    + " not evict them from the cache. Increase [{}] in xwiki.properties to load all of them.", loaded,
+                    wikis.size(), URLNormalizerConfigurationStore.PROPERTY_CACHE_CAPACITY);
+
+                break;
+            }
+
+            try {
+                this.store.getFilterMatcher(new WikiReference(wiki));
+
+                ++loaded;
+            } catch (NormalizationException e) {
+                this.logger.warn("Failed to warm up the URL normalizer configuration of wiki [{}]: {}", wiki,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        this.logger.info("Loaded the URL normalizer configuration of [{}] wikis (out of [{}]) in [{}] ms.", loaded,
+            wikis.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.PatternUtils;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+/**
+ * Find the first filter matching a reference without trying all the filters. The filters are indexed by link type and
+ * by the literal prefix of their pattern so that only the filters which can possibly match a reference are tried, in
+ * their configuration order.
+ * 
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class URLNormalizerFilterMatcher
+{
+    /**
+     * Flags which prevent from comparing the literal prefix of the pattern with a simple string comparison.
+     */
+    private static final int INEXACT_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.CANON_EQ;
+
+    private final URLNormalizerFilter[] filters;
+
+    /**
+     * Index of the filters matching any link type.
+     */
+    private final Node anyType = new Node();
+
+    private final Map<ResourceType, Node> types = new HashMap<>();
+
+    /**
+     * A match between a filter and a reference.
+     */
+    public static final class Match
+    {
+        private final URLNormalizerFilter filter;
+
+        private final Matcher matcher;
+
+        private Match(URLNormalizerFilter filter, Matcher matcher)
+        {
+            this.filter = filter;
+            this.matcher = matcher;
+        }
+
+        /**
+         * @return the filter matching the reference
+         */
+        public URLNormalizerFilter getFilter()
+        {
+            return this.filter;
+        }
+
+        /**
+         * @return the result of the match of the filter pattern with the reference
+         */
+        public Matcher getMatcher()
+        {
+            return this.matcher;
+        }
+    }
+
+    private static final class Node
+    {
+        private final Map<Character, Node> children = new HashMap<>();
+
+        private final BitSet filters = new BitSet();
+    }
+
+    /**
+     * @param filters the filters, in the order in which they should be tried
+     */
+    public URLNormalizerFilterMatcher(List<URLNormalizerFilter> filters)
+    {
+        this.filters = filters.toArray(new URLNormalizerFilter[0]);
+
+        for (int i = 0; i < this.filters.length; ++i) {
+            URLNormalizerFilter filter = this.filters[i];
+
+            if (filter != null) {
+                Node node = filter.getLinkType() != null
+                    ? this.types.computeIfAbsent(filter.getLinkType(), k -> new Node()) : this.anyType;
+
+                String prefix = (filter.getLinkReference().flags() & INEXACT_FLAGS) == 0
+                    ? PatternUtils.getLiteralPrefix(filter.getLinkReference()) : "";
+                for (int j = 0; j < prefix.length(); ++j) {
+                    node = node.children.computeIfAbsent(prefix.charAt(j), k -> new Node());
+                }
+
+                node.filters.set(i);
+            }
+        }
+    }
+
+    private void collect(Node root, String reference, BitSet candidates)
+    {
+        Node node = root;
+        for (int i = 0; node != null; ++i) {
+            candidates.or(node.filters);
+
+            node = i < reference.length() ? node.children.get(reference.charAt(i)) : null;
+        }
+    }
+
+    /**
+     * @param type the type of the reference
+     * @param reference the reference
+     * @return the first filter matching the reference or null if none match
+     */
+    public Match find(ResourceType type, String reference)
+    {
+        // Gather the filters which may match
+        BitSet candidates = new BitSet(this.filters.length);
+        collect(this.anyType, reference, candidates);
+        Node typeRoot = this.types.get(type);
+        if (typeRoot != null) {
+            collect(typeRoot, reference, candidates);
+        }
+
+        // Try them in the configuration order
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            URLNormalizerFilter filter = this.filters[i];
+            Matcher matcher = filter.getLinkReference().matcher(reference);
+
+            if (matcher.matches()) {
+                return new Match(filter, matcher);
+            }
+        }
+
+        return null;
+    }
+}
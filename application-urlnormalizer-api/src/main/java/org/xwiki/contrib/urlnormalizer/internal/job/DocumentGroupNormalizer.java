@@ -0,0 +1,264 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.xwiki.contrib.urlnormalizer.NormalizationReport;
+import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeDocumentResult.Outcome;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Normalize the documents enumerated by the normalization jobs, in groups whose modifications are saved together.
+ * The normalization of a group can be executed by any thread, as long as it has its own {@link XWikiContext}.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+class DocumentGroupNormalizer
+{
+    private final DocumentReferenceResolver<String> resolver;
+
+    private final AuthorizationManager authorizationManager;
+
+    private final URLNormalizationManager urlNormalizationManager;
+
+    private final boolean createNewVersion;
+
+    private final int groupSize;
+
+    private final Consumer<URLRewrite> manifest;
+
+    private final Map<WikiReference, NormalizeJobIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * @param resolver the resolver used to resolve the enumerated documents
+     * @param authorizationManager the component used to check the rights of the job author and user
+     * @param urlNormalizationManager the component used to normalize the documents
+     * @param createNewVersion whether a new version of the documents should be created
+     * @param groupSize the number of documents handed at once to a worker thread
+     * @param manifest called for each reference which would be rewritten when the documents should not be saved (i.e.
+     *            dry-run), null otherwise
+     */
+    DocumentGroupNormalizer(DocumentReferenceResolver<String> resolver, AuthorizationManager authorizationManager,
+        URLNormalizationManager urlNormalizationManager, boolean createNewVersion, int groupSize,
+        Consumer<URLRewrite> manifest)
+    {
+        this.resolver = resolver;
+        this.authorizationManager = authorizationManager;
+        this.urlNormalizationManager = urlNormalizationManager;
+        this.createNewVersion = createNewVersion;
+        this.groupSize = Math.max(groupSize, 1);
+        this.manifest = manifest;
+    }
+
+    /**
+     * @param wiki the wiki
+     * @param index the index used to skip the documents of the passed wiki which did not change since their last
+     *            normalization, and updated with the result of the normalization of the others
+     */
+    void setIndex(WikiReference wiki, NormalizeJobIndex index)
+    {
+        this.indexes.put(wiki, index);
+    }
+
+    /**
+     * @param page a page of documents (serialized local references) returned by a {@link DocumentPager}
+     * @return the groups of documents to hand to the worker threads, as big as the requested group size
+     */
+    List<List<String>> split(List<String> page)
+    {
+        List<List<String>> groups = new ArrayList<>();
+        for (int index = 0; index < page.size(); index += this.groupSize) {
+            groups.add(page.subList(index, Math.min(index + this.groupSize, page.size())));
+        }
+
+        return groups;
+    }
+
+    /**
+     * @param documents the documents (serialized local references) to normalize together
+     * @param wiki the wiki containing the documents
+     * @param xcontext the context of the current thread
+     * @return the result of the normalization of each document, in the same order
+     */
+    List<NormalizeDocumentResult> normalize(List<String> documents, WikiReference wiki, XWikiContext xcontext)
+    {
+        NormalizeDocumentResult[] results = new NormalizeDocumentResult[documents.size()];
+        NormalizeJobIndex jobIndex = this.indexes.get(wiki);
+        String[] contentHashes = new String[documents.size()];
+
+        List<DocumentReference> allowedDocuments = new ArrayList<>(documents.size());
+        for (int index = 0; index < results.length; ++index) {
+            String document = documents.get(index);
+            DocumentReference documentReference = this.resolver.resolve(document, wiki);
+
+            if (jobIndex != null) {
+                jobIndex.visit(document);
+            }
+
+            // Make sure the current author and user are allowed to modify the document
+            if (!this.authorizationManager.hasAccess(Right.EDIT, xcontext.getAuthorReference(), documentReference)) {
+                results[index] = new NormalizeDocumentResult(document, documentReference, Outcome.AUTHOR_DENIED, null);
+            } else if (!this.authorizationManager.hasAccess(Right.EDIT, xcontext.getUserReference(),
+                documentReference)) {
+                results[index] = new NormalizeDocumentResult(document, documentReference, Outcome.USER_DENIED, null);
+            } else {
+                if (jobIndex != null) {
+                    contentHashes[index] = hash(documentReference, xcontext);
+                }
+
+                if (contentHashes[index] != null && jobIndex.isUnchanged(document, contentHashes[index])) {
+                    results[index] = new NormalizeDocumentResult(document, documentReference, Outcome.SKIPPED, null);
+                } else {
+                    allowedDocuments.add(documentReference);
+                }
+            }
+        }
+
+        // Normalize the allowed documents
+        NormalizationReport report;
+        if (this.manifest != null) {
+            report = this.urlNormalizationManager.dryRun(allowedDocuments, Collections.emptyList(), this.manifest);
+        } else {
+            report = this.urlNormalizationManager.normalize(allowedDocuments, Collections.emptyList(),
+                this.createNewVersion);
+        }
+
+        int allowedIndex = 0;
+        for (int index = 0; index < results.length; ++index) {
+            if (results[index] == null) {
+                DocumentReference documentReference = allowedDocuments.get(allowedIndex++);
+                results[index] = new NormalizeDocumentResult(documents.get(index), documentReference,
+                    toOutcome(report.getStatus(documentReference)), report.getError(documentReference));
+            }
+        }
+
+        if (jobIndex != null) {
+            updateIndex(jobIndex, results, contentHashes, xcontext);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void updateIndex(NormalizeJobIndex jobIndex, NormalizeDocumentResult[] results, String[] contentHashes,
+        XWikiContext xcontext)
+    {
+        for (int i = 0; i < results.length; ++i) {
+            NormalizeDocumentResult result = results[i];
+
+            // Denied documents are not indexed and skipped documents are already
+            if (result.getOutcome() == Outcome.NORMALIZED || result.getOutcome() == Outcome.UNCHANGED
+                || result.getOutcome() == Outcome.FAILED) {
+                // Index the saved content of the normalized documents
+                String contentHash = result.getOutcome() == Outcome.NORMALIZED
+                    ? hash(result.getDocumentReference(), xcontext) : contentHashes[i];
+
+                if (contentHash != null) {
+                    jobIndex.put(result.getDocument(), contentHash, result.getOutcome());
+                } else {
+                    jobIndex.remove(result.getDocument());
+                }
+            }
+        }
+    }
+
+    private String hash(DocumentReference documentReference, XWikiContext xcontext)
+    {
+        try {
+            return NormalizeJobIndex.hash(xcontext.getWiki().getDocument(documentReference, xcontext));
+        } catch (XWikiException e) {
+            // The document will be normalized (and will most probably fail to load again)
+            return null;
+        }
+    }
+
+    private Outcome toOutcome(NormalizationReport.Status status)
+    {
+        Outcome outcome;
+        if (status == NormalizationReport.Status.MODIFIED) {
+            outcome = Outcome.NORMALIZED;
+        } else if (status == NormalizationReport.Status.UNCHANGED) {
+            outcome = Outcome.UNCHANGED;
+        } else {
+            outcome = Outcome.FAILED;
+        }
+
+        return outcome;
+    }
+
+    /**
+     * @param result the result of the normalization of a document
+     * @param xcontext the context of the job
+     * @param logger the logger of the job
+     */
+    void log(NormalizeDocumentResult result, XWikiContext xcontext, Logger logger)
+    {
+        DocumentReference documentReference = result.getDocumentReference();
+
+        switch (result.getOutcome()) {
+            case AUTHOR_DENIED:
+                logger.error("The author [{}] doesn't have the right to normalize the document [{}].",
+                    xcontext.getAuthorReference(), documentReference);
+                break;
+
+            case USER_DENIED:
+                logger.error("The user [{}] doesn't have the right to normalize the document [{}].",
+                    xcontext.getUserReference(), documentReference);
+                break;
+
+            case NORMALIZED:
+                if (this.manifest != null) {
+                    logger.info("The document [{}] would be normalized.", documentReference);
+                } else {
+                    logger.info("The document [{}] has been normalized.", documentReference);
+                }
+                break;
+
+            case UNCHANGED:
+                logger.info("There is nothing to normalize in document [{}].", documentReference);
+                break;
+
+            case SKIPPED:
+                logger.info("The document [{}] did not change since its last normalization.", documentReference);
+                break;
+
+            default:
+                logger.error("Failed to normalize document [{}].", documentReference, result.getError());
+                break;
+        }
+    }
+}
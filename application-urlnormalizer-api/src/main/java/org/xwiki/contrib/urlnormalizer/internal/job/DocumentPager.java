@@ -0,0 +1,239 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Enumerate the documents of a wiki page by page, using the last returned document as lower bound of the next page
+ * (keyset pagination) so that the cost of a page does not depend on its position and only one page is kept in memory.
+ * The enumeration can be restricted to a space (and its sub-spaces), to the documents matching a query fragment or to
+ * an explicit list of documents.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class DocumentPager
+{
+    private static final String PARAMETER_LAST = "lastDocument";
+
+    private static final String PARAMETER_SPACE = "space";
+
+    private static final String PARAMETER_SPACEPREFIX = "spacePrefix";
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private final QueryManager queryManager;
+
+    private final WikiReference wiki;
+
+    private final int pageSize;
+
+    private final List<String> documents;
+
+    private int position;
+
+    private String space;
+
+    private String where;
+
+    private String language = Query.HQL;
+
+    private String lastDocument;
+
+    private boolean done;
+
+    /**
+     * @param queryManager the component used to execute the queries
+     * @param wiki the wiki containing the documents to enumerate
+     * @param pageSize the maximum number of documents to return for each page
+     * @param lastDocument the document after which to start the enumeration, null to start from the first document
+     */
+    public DocumentPager(QueryManager queryManager, WikiReference wiki, int pageSize, String lastDocument)
+    {
+        this.queryManager = queryManager;
+        this.wiki = wiki;
+        this.pageSize = pageSize;
+        this.documents = null;
+        this.lastDocument = lastDocument != null ? lastDocument : "";
+    }
+
+    /**
+     * Enumerate an explicit list of documents, without querying the database.
+     *
+     * @param documents the serialized local references of the documents to enumerate
+     * @param pageSize the maximum number of documents to return for each page
+     * @param lastDocument the document after which to start the enumeration, null to start from the first document
+     */
+    public DocumentPager(Collection<String> documents, int pageSize, String lastDocument)
+    {
+        this.queryManager = null;
+        this.wiki = null;
+        this.pageSize = pageSize;
+        // Sorted to support resuming the enumeration after the last handled document
+        this.documents = new ArrayList<>(new TreeSet<>(documents));
+        this.lastDocument = lastDocument != null ? lastDocument : "";
+
+        // Skip the documents already handled
+        while (this.position < this.documents.size()
+            && this.documents.get(this.position).compareTo(this.lastDocument) <= 0) {
+            ++this.position;
+        }
+    }
+
+    /**
+     * @param space the space (including its sub-spaces) to which the enumeration should be restricted, null for the
+     *            whole wiki
+     * @param localSerializer the serializer used to get the local reference of the space
+     * @throws IllegalArgumentException when the space is not located in the enumerated wiki
+     */
+    public void setSpace(SpaceReference space, EntityReferenceSerializer<String> localSerializer)
+    {
+        if (space != null && !space.getWikiReference().equals(this.wiki)) {
+            throw new IllegalArgumentException(
+                String.format("The space [%s] is not located in the wiki [%s].", space, this.wiki));
+        }
+
+        this.space = space != null ? localSerializer.serialize(space) : null;
+    }
+
+    /**
+     * @param where a condition on the documents (designated by the {@code doc} alias) to which the enumeration should
+     *            be restricted, null for no restriction
+     * @param language the language of the condition, {@link Query#HQL} or {@link Query#XWQL}
+     */
+    public void setWhere(String where, String language)
+    {
+        this.where = where;
+        this.language = language;
+    }
+
+    private String createStatement(String select)
+    {
+        StringBuilder statement = new StringBuilder(select);
+
+        // The document entity is not named the same way in both languages
+        statement.append(Query.XWQL.equals(this.language) ? " from Document doc" : " from XWikiDocument doc");
+        statement.append(" where doc.fullName > :").append(PARAMETER_LAST);
+
+        if (this.space != null) {
+            statement.append(" and (doc.space = :").append(PARAMETER_SPACE);
+            statement.append(" or doc.space like :").append(PARAMETER_SPACEPREFIX);
+            statement.append(" escape '").append(LIKE_ESCAPE).append("')");
+        }
+
+        if (this.where != null) {
+            statement.append(" and (").append(this.where).append(')');
+        }
+
+        return statement.toString();
+    }
+
+    private Query createQuery(String select, String orderBy) throws QueryException
+    {
+        Query query = this.queryManager.createQuery(createStatement(select) + orderBy, this.language)
+            .setWiki(this.wiki.getName()).bindValue(PARAMETER_LAST, this.lastDocument);
+
+        if (this.space != null) {
+            query.bindValue(PARAMETER_SPACE, this.space);
+            query.bindValue(PARAMETER_SPACEPREFIX, escapeLike(this.space) + ".%");
+        }
+
+        return query;
+    }
+
+    private String escapeLike(String value)
+    {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * @return the number of documents remaining to enumerate
+     * @throws QueryException when failing to count the documents
+     */
+    public long count() throws QueryException
+    {
+        if (this.documents != null) {
+            return (long) this.documents.size() - this.position;
+        }
+
+        List<Long> result = createQuery("select count(distinct doc.fullName)", "").<Long>execute();
+
+        return result.isEmpty() ? 0 : result.get(0);
+    }
+
+    /**
+     * @return the next page of documents (serialized local references), or an empty list when all the documents have
+     *         been returned
+     * @throws QueryException when failing to get the next page
+     */
+    public List<String> next() throws QueryException
+    {
+        if (this.done) {
+            return Collections.emptyList();
+        }
+
+        List<String> page;
+        if (this.documents != null) {
+            page = nextListPage();
+        } else {
+            page = createQuery("select distinct doc.fullName", " order by doc.fullName").setLimit(this.pageSize)
+                .<String>execute();
+        }
+
+        if (page.size() < this.pageSize) {
+            this.done = true;
+        }
+        if (!page.isEmpty()) {
+            this.lastDocument = page.get(page.size() - 1);
+        }
+
+        return page;
+    }
+
+    private List<String> nextListPage()
+    {
+        int end = Math.min(this.position + this.pageSize, this.documents.size());
+        List<String> page = new ArrayList<>(this.documents.subList(this.position, end));
+        this.position = end;
+
+        return page;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The result of the normalization of a single document by {@link NormalizeJob}. Results are produced by the threads
+ * actually normalizing the documents and reported (progress and log) by the job thread.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+class NormalizeDocumentResult
+{
+    /**
+     * The possible outcomes of the normalization of a document.
+     *
+     * @version $Id$
+     */
+    enum Outcome
+    {
+        /**
+         * The document has been modified and saved.
+         */
+        NORMALIZED,
+
+        /**
+         * There was nothing to normalize in the document.
+         */
+        UNCHANGED,
+
+        /**
+         * The document did not change since its last normalization (nor the configuration).
+         * 
+         * @see NormalizeJobIndex
+         */
+        SKIPPED,
+
+        /**
+         * The current author is not allowed to modify the document.
+         */
+        AUTHOR_DENIED,
+
+        /**
+         * The current user is not allowed to modify the document.
+         */
+        USER_DENIED,
+
+        /**
+         * The normalization failed.
+         */
+        FAILED
+    }
+
+    private final String document;
+
+    private final DocumentReference documentReference;
+
+    private final Outcome outcome;
+
+    private final Exception error;
+
+    /**
+     * @param document the serialized reference of the document, as returned by the query
+     * @param documentReference the reference of the document
+     * @param outcome the outcome of the normalization
+     * @param error the error which made the normalization fail, if any
+     */
+    NormalizeDocumentResult(String document, DocumentReference documentReference, Outcome outcome, Exception error)
+    {
+        this.document = document;
+        this.documentReference = documentReference;
+        this.outcome = outcome;
+        this.error = error;
+    }
+
+    /**
+     * @return the serialized reference of the document, as returned by the query
+     */
+    String getDocument()
+    {
+        return this.document;
+    }
+
+    /**
+     * @return the reference of the document
+     */
+    DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+
+    /**
+     * @return the outcome of the normalization
+     */
+    Outcome getOutcome()
+    {
+        return this.outcome;
+    }
+
+    /**
+     * @return the error which made the normalization fail, if any
+     */
+    Exception getError()
+    {
+        return this.error;
+    }
+}
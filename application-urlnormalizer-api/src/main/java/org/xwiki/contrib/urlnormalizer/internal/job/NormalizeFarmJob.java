@@ -0,0 +1,402 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.internal.LocalHostTable;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.environment.Environment;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.Job;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+
+/**
+ * Apply the normalization on all the documents of several wikis (all the wikis of the farm by default). The groups of
+ * documents of all the wikis are distributed between a single pool of workers, taking turns between the wikis and
+ * limiting the number of groups of the same wiki normalized at the same time.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@Component
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+@Named(NormalizeFarmJob.JOBTYPE)
+public class NormalizeFarmJob extends AbstractJob<NormalizeFarmJobRequest, NormalizeFarmJobStatus>
+{
+    /**
+     * The id of the job.
+     */
+    public static final String JOBTYPE = "urlnormalizer/farm";
+
+    /**
+     * The documents of a wiki remaining to normalize.
+     */
+    private static final class WikiDocuments
+    {
+        private final WikiReference wiki;
+
+        private final DocumentPager pager;
+
+        private final Deque<List<String>> groups = new ArrayDeque<>();
+
+        private NormalizeJobIndex index;
+
+        private int running;
+
+        private boolean completed;
+
+        WikiDocuments(WikiReference wiki, DocumentPager pager)
+        {
+            this.wiki = wiki;
+            this.pager = pager;
+        }
+    }
+
+    /**
+     * The results of the normalization of a group of documents.
+     */
+    private static final class GroupResults
+    {
+        private final WikiDocuments wikiDocuments;
+
+        private final List<NormalizeDocumentResult> results;
+
+        GroupResults(WikiDocuments wikiDocuments, List<NormalizeDocumentResult> results)
+        {
+            this.wikiDocuments = wikiDocuments;
+            this.results = results;
+        }
+    }
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    private JobProgressManager progress;
+
+    @Inject
+    private AuthorizationManager authorizationManager;
+
+    @Inject
+    private URLNormalizationManager urlNormalizationManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private URLNormalizerConfigurationStore configurationStore;
+
+    @Inject
+    private LocalHostTable hostTable;
+
+    private DocumentGroupNormalizer groupNormalizer;
+
+    @Override
+    protected NormalizeFarmJobRequest castRequest(Request request)
+    {
+        NormalizeFarmJobRequest normalizeRequest;
+        if (request instanceof NormalizeFarmJobRequest) {
+            normalizeRequest = (NormalizeFarmJobRequest) request;
+        } else {
+            normalizeRequest = new NormalizeFarmJobRequest(request);
+        }
+
+        return normalizeRequest;
+    }
+
+    @Override
+    protected NormalizeFarmJobStatus createNewStatus(NormalizeFarmJobRequest request)
+    {
+        Job currentJob = this.jobContext.getCurrentJob();
+        JobStatus currentJobStatus = currentJob != null ? currentJob.getStatus() : null;
+
+        return new NormalizeFarmJobStatus(request, currentJobStatus, this.observationManager, this.loggerManager);
+    }
+
+    @Override
+    public String getType()
+    {
+        return JOBTYPE;
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        List<WikiReference> wikis = getRequest().getWikis();
+        if (wikis == null) {
+            wikis = new ArrayList<>();
+            for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+                wikis.add(new WikiReference(wikiId));
+            }
+        }
+
+        this.groupNormalizer = new DocumentGroupNormalizer(this.resolver, this.authorizationManager,
+            this.urlNormalizationManager, getRequest().isCreateNewVersion(), getRequest().getGroupSize(), null);
+
+        // Count all the documents first to report the progress of the whole farm
+        Deque<WikiDocuments> remainingWikis = new ArrayDeque<>(wikis.size());
+        long count = 0;
+        for (WikiReference wiki : wikis) {
+            DocumentPager pager = new DocumentPager(this.queryManager, wiki, getRequest().getBatchSize(), null);
+            long wikiCount = pager.count();
+
+            this.logger.info("Found [{}] documents in wiki [{}].", wikiCount, wiki.getName());
+
+            WikiDocuments wikiDocuments = new WikiDocuments(wiki, pager);
+            if (getRequest().isIncremental()) {
+                wikiDocuments.index = loadIndex(wiki);
+                this.groupNormalizer.setIndex(wiki, wikiDocuments.index);
+            }
+
+            remainingWikis.add(wikiDocuments);
+            count += wikiCount;
+        }
+        getStatus().setWikis(wikis.size());
+
+        // The progress API counts the steps with an int
+        this.progress.pushLevelProgress((int) Math.min(count, Integer.MAX_VALUE), this);
+
+        List<WikiDocuments> allWikis = new ArrayList<>(remainingWikis);
+        try {
+            normalize(remainingWikis, this.xcontextProvider.get());
+        } finally {
+            this.progress.popLevelProgress(this);
+
+            // Keep what was indexed for the wikis interrupted by a failure or a cancellation
+            for (WikiDocuments wikiDocuments : allWikis) {
+                if (!wikiDocuments.completed) {
+                    saveIndex(wikiDocuments.index);
+                }
+            }
+        }
+
+        this.logger.info("[{}] documents normalized, [{}] skipped and [{}] failures in [{}] wikis.",
+            getStatus().getNormalized(), getStatus().getSkipped(), getStatus().getFailed(),
+            getStatus().getCompletedWikis());
+    }
+
+    private NormalizeJobIndex loadIndex(WikiReference wiki) throws NormalizationException
+    {
+        // The normalization of the local URLs also depends on the wiki aliases, ports and xwiki.home
+        String fingerprint;
+        try {
+            fingerprint = this.configurationStore.getFingerprint(wiki) + ':' + this.hostTable.getFingerprint();
+        } catch (WikiManagerException e) {
+            throw new NormalizationException("Failed to gather the local hosts", e);
+        }
+
+        NormalizeJobIndex wikiIndex = new NormalizeJobIndex(this.environment, wiki, fingerprint);
+
+        try {
+            wikiIndex.load();
+        } catch (IOException e) {
+            this.logger.warn("Failed to load the normalization index [{}], all the documents will be normalized.",
+                wikiIndex.getFile(), e);
+        }
+
+        return wikiIndex;
+    }
+
+    /**
+     * Distribute the groups of documents between the workers. The next group is taken from the next wiki (in turn)
+     * which didn't reach its concurrency limit, and the job waits for a group to be normalized when the pool is busy or
+     * when all the wikis reached their limit. The progress and the log are only manipulated from the job thread (both
+     * are bound to it), as the workers report their results.
+     */
+    private void normalize(Deque<WikiDocuments> remainingWikis, XWikiContext xcontext)
+        throws InterruptedException, ExecutionException, QueryException
+    {
+        int threads = NormalizeJob.getWorkerCount(getRequest().getThreads());
+        int wikiThreads = Math.max(getRequest().getWikiThreads(), 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> newWorker(runnable, xcontext));
+        CompletionService<GroupResults> completion = new ExecutorCompletionService<>(executor);
+
+        try {
+            int running = 0;
+            while (!remainingWikis.isEmpty() || running > 0) {
+                WikiDocuments wikiDocuments = running < threads ? nextWiki(remainingWikis, wikiThreads) : null;
+
+                if (wikiDocuments != null) {
+                    List<String> group = nextGroup(wikiDocuments);
+
+                    if (group != null) {
+                        completion.submit(() -> new GroupResults(wikiDocuments, normalize(group, wikiDocuments.wiki)));
+                        ++wikiDocuments.running;
+                        ++running;
+                    } else {
+                        // All the documents of the wiki have been enumerated
+                        remainingWikis.remove(wikiDocuments);
+                        if (wikiDocuments.running == 0) {
+                            wikiCompleted(wikiDocuments);
+                        }
+                    }
+                } else {
+                    GroupResults groupResults = completion.take().get();
+                    --running;
+
+                    report(groupResults, xcontext);
+
+                    if (--groupResults.wikiDocuments.running == 0
+                        && !remainingWikis.contains(groupResults.wikiDocuments)) {
+                        wikiCompleted(groupResults.wikiDocuments);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private WikiDocuments nextWiki(Deque<WikiDocuments> remainingWikis, int wikiThreads)
+    {
+        // Take turns between the wikis
+        for (int i = 0; i < remainingWikis.size(); ++i) {
+            WikiDocuments wikiDocuments = remainingWikis.pollFirst();
+            remainingWikis.addLast(wikiDocuments);
+
+            if (wikiDocuments.running < wikiThreads) {
+                return wikiDocuments;
+            }
+        }
+
+        return null;
+    }
+
+    private List<String> nextGroup(WikiDocuments wikiDocuments) throws QueryException
+    {
+        if (wikiDocuments.groups.isEmpty()) {
+            wikiDocuments.groups.addAll(this.groupNormalizer.split(wikiDocuments.pager.next()));
+        }
+
+        return wikiDocuments.groups.pollFirst();
+    }
+
+    private List<NormalizeDocumentResult> normalize(List<String> group, WikiReference wiki)
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+
+        // The workers are shared by all the wikis
+        String currentWiki = xcontext.getWikiId();
+        xcontext.setWikiId(wiki.getName());
+
+        try {
+            return this.groupNormalizer.normalize(group, wiki, xcontext);
+        } finally {
+            xcontext.setWikiId(currentWiki);
+        }
+    }
+
+    private Thread newWorker(Runnable runnable, XWikiContext xcontext)
+    {
+        Thread thread = new Thread(new AbstractXWikiRunnable(XWikiContext.EXECUTIONCONTEXT_KEY, xcontext.clone())
+        {
+            @Override
+            protected void runInternal()
+            {
+                runnable.run();
+            }
+        });
+        thread.setName("URL Normalizer farm worker");
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    private void report(GroupResults groupResults, XWikiContext xcontext)
+    {
+        for (NormalizeDocumentResult result : groupResults.results) {
+            this.progress.startStep(result.getDocument());
+
+            try {
+                this.groupNormalizer.log(result, xcontext, this.logger);
+                getStatus().documentHandled(result.getOutcome());
+            } finally {
+                this.progress.endStep(result.getDocument());
+            }
+        }
+    }
+
+    private void saveIndex(NormalizeJobIndex wikiIndex)
+    {
+        if (wikiIndex != null) {
+            try {
+                wikiIndex.save();
+            } catch (IOException e) {
+                this.logger.error("Failed to save the normalization index [{}].", wikiIndex.getFile(), e);
+            }
+        }
+    }
+
+    private void wikiCompleted(WikiDocuments wikiDocuments)
+    {
+        wikiDocuments.completed = true;
+
+        if (wikiDocuments.index != null) {
+            // All the documents of the wiki were enumerated so the ones which were not have been deleted
+            wikiDocuments.index.prune();
+            saveIndex(wikiDocuments.index);
+        }
+
+        getStatus().wikiCompleted();
+
+        this.logger.info("All the documents of wiki [{}] have been handled.", wikiDocuments.wiki.getName());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.job.AbstractRequest;
+import org.xwiki.job.Request;
+import org.xwiki.model.reference.WikiReference;
+
+/**
+ * Request to use with {@link NormalizeFarmJob}.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class NormalizeFarmJobRequest extends AbstractRequest
+{
+    /**
+     * The identifier of the job.
+     */
+    public static final List<String> JOBID = Arrays.asList(NormalizeFarmJob.JOBTYPE);
+
+    /**
+     * The name of the property containing the wikis to normalize.
+     */
+    public static final String PROPERTY_WIKIS = "wikis";
+
+    /**
+     * The name of the property containing the maximum number of groups of documents of the same wiki normalized at the
+     * same time.
+     */
+    public static final String PROPERTY_WIKITHREADS = "wikiThreads";
+
+    /**
+     * The default maximum number of groups of documents of the same wiki normalized at the same time.
+     */
+    public static final int DEFAULT_WIKITHREADS = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param createNewVersion whether a new version of the document should be created
+     */
+    public NormalizeFarmJobRequest(boolean createNewVersion)
+    {
+        setId(JOBID);
+
+        setProperty(NormalizeJobRequest.PROPERTY_CREATENEWVERSION, createNewVersion);
+    }
+
+    /**
+     * @param request the request to copy
+     */
+    public NormalizeFarmJobRequest(Request request)
+    {
+        super(request);
+    }
+
+    /**
+     * @return the wikis to normalize, null for all the wikis of the farm
+     */
+    public List<WikiReference> getWikis()
+    {
+        return getProperty(PROPERTY_WIKIS);
+    }
+
+    /**
+     * @param wikis the wikis to normalize, null for all the wikis of the farm
+     */
+    public void setWikis(List<WikiReference> wikis)
+    {
+        setProperty(PROPERTY_WIKIS, wikis);
+    }
+
+    /**
+     * @return whether a new version of the document should be created
+     */
+    public boolean isCreateNewVersion()
+    {
+        return getProperty(NormalizeJobRequest.PROPERTY_CREATENEWVERSION, true);
+    }
+
+    /**
+     * @return the size of the worker pool shared by all the wikis, one thread per available processor by default (and
+     *         at most)
+     */
+    public int getThreads()
+    {
+        return getProperty(NormalizeJobRequest.PROPERTY_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads the size of the worker pool shared by all the wikis
+     */
+    public void setThreads(int threads)
+    {
+        setProperty(NormalizeJobRequest.PROPERTY_THREADS, threads);
+    }
+
+    /**
+     * @return the maximum number of groups of documents of the same wiki normalized at the same time, so that a big
+     *         wiki cannot monopolize the workers (and its database)
+     */
+    public int getWikiThreads()
+    {
+        return getProperty(PROPERTY_WIKITHREADS, DEFAULT_WIKITHREADS);
+    }
+
+    /**
+     * @param wikiThreads the maximum number of groups of documents of the same wiki normalized at the same time
+     */
+    public void setWikiThreads(int wikiThreads)
+    {
+        setProperty(PROPERTY_WIKITHREADS, wikiThreads);
+    }
+
+    /**
+     * @return the number of documents to get from the database at once
+     */
+    public int getBatchSize()
+    {
+        return getProperty(NormalizeJobRequest.PROPERTY_BATCHSIZE, NormalizeJobRequest.DEFAULT_BATCHSIZE);
+    }
+
+    /**
+     * @param batchSize the number of documents to get from the database at once
+     */
+    public void setBatchSize(int batchSize)
+    {
+        setProperty(NormalizeJobRequest.PROPERTY_BATCHSIZE, batchSize);
+    }
+
+    /**
+     * @return the number of documents handed at once to a worker thread (each document is still normalized and saved
+     *         on its own)
+     */
+    public int getGroupSize()
+    {
+        return getProperty(NormalizeJobRequest.PROPERTY_GROUPSIZE, NormalizeJobRequest.DEFAULT_GROUPSIZE);
+    }
+
+    /**
+     * @param groupSize the number of documents handed at once to a worker thread
+     */
+    public void setGroupSize(int groupSize)
+    {
+        setProperty(NormalizeJobRequest.PROPERTY_GROUPSIZE, groupSize);
+    }
+
+    /**
+     * @return true if the documents whose content, filter configuration and local hosts (wiki aliases, ports and
+     *         {@code xwiki.home}) did not change since their last normalization should be skipped, false (the default)
+     *         to normalize all the documents
+     */
+    public boolean isIncremental()
+    {
+        return getProperty(NormalizeJobRequest.PROPERTY_INCREMENTAL, false);
+    }
+
+    /**
+     * @param incremental true if the documents whose content, filter configuration and local hosts did not change
+     *            since their last normalization should be skipped, false to normalize all the documents again
+     */
+    public void setIncremental(boolean incremental)
+    {
+        setProperty(NormalizeJobRequest.PROPERTY_INCREMENTAL, incremental);
+    }
+}
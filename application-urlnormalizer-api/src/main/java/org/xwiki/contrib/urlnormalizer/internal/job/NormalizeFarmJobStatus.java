@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * The status of a {@link NormalizeFarmJob}, aggregating the progress of all the normalized wikis.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class NormalizeFarmJobStatus extends DefaultJobStatus<NormalizeFarmJobRequest>
+{
+    private final AtomicLong wikis = new AtomicLong();
+
+    private final AtomicLong completedWikis = new AtomicLong();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong normalized = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param request the request provided when started the job
+     * @param parentJobStatus the status of the parent job (i.e. the status of the job that started this one); pass
+     *            {@code null} if this job hasn't been started by another job (i.e. if this is not a sub-job)
+     * @param observationManager the observation manager component
+     * @param loggerManager the logger manager component
+     */
+    public NormalizeFarmJobStatus(NormalizeFarmJobRequest request, JobStatus parentJobStatus,
+        ObservationManager observationManager, LoggerManager loggerManager)
+    {
+        super(NormalizeFarmJob.JOBTYPE, request, parentJobStatus, observationManager, loggerManager);
+    }
+
+    /**
+     * @return the number of wikis to normalize
+     */
+    public long getWikis()
+    {
+        return this.wikis.get();
+    }
+
+    /**
+     * @param wikis the number of wikis to normalize
+     */
+    void setWikis(long wikis)
+    {
+        this.wikis.set(wikis);
+    }
+
+    /**
+     * @return the number of wikis whose documents have all been handled
+     */
+    public long getCompletedWikis()
+    {
+        return this.completedWikis.get();
+    }
+
+    /**
+     * @return the number of documents handled in all the wikis
+     */
+    public long getProcessed()
+    {
+        return this.processed.get();
+    }
+
+    /**
+     * @return the number of documents modified in all the wikis
+     */
+    public long getNormalized()
+    {
+        return this.normalized.get();
+    }
+
+    /**
+     * @return the number of documents which could not be normalized in all the wikis
+     */
+    public long getFailed()
+    {
+        return this.failed.get();
+    }
+
+    /**
+     * @return the number of documents skipped because they did not change since their last normalization
+     */
+    public long getSkipped()
+    {
+        return this.skipped.get();
+    }
+
+    void wikiCompleted()
+    {
+        this.completedWikis.incrementAndGet();
+    }
+
+    void documentHandled(NormalizeDocumentResult.Outcome outcome)
+    {
+        this.processed.incrementAndGet();
+
+        if (outcome == NormalizeDocumentResult.Outcome.NORMALIZED) {
+            this.normalized.incrementAndGet();
+        } else if (outcome == NormalizeDocumentResult.Outcome.SKIPPED) {
+            this.skipped.incrementAndGet();
+        } else if (outcome != NormalizeDocumentResult.Outcome.UNCHANGED) {
+            this.failed.incrementAndGet();
+        }
+    }
+}
@@ -19,8 +19,21 @@
  */
 package org.xwiki.contrib.urlnormalizer.internal.job;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,17 +44,26 @@ import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.contrib.urlnormalizer.NormalizationException;
 import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.internal.LocalHostTable;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeDocumentResult.Outcome;
+import org.xwiki.environment.Environment;
 import org.xwiki.job.AbstractJob;
+import org.xwiki.job.Job;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryManager;
 import org.xwiki.security.authorization.AuthorizationManager;
-import org.xwiki.security.authorization.Right;
+import org.xwiki.wiki.manager.WikiManagerException;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
 
 /**
  * Apply the normalization on all existing documents.
@@ -52,7 +74,7 @@ import com.xpn.xwiki.XWikiContext;
 @Component
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 @Named(NormalizeJob.JOBTYPE)
-public class NormalizeJob extends AbstractJob<NormalizeJobRequest, JobStatus>
+public class NormalizeJob extends AbstractJob<NormalizeJobRequest, NormalizeJobStatus>
 {
     /**
      * The id of the job.
@@ -77,6 +99,54 @@ public class NormalizeJob extends AbstractJob<NormalizeJobRequest, JobStatus>
     @Inject
     private Provider<XWikiContext> xcontextProvider;
 
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private URLNormalizerConfigurationStore configurationStore;
+
+    @Inject
+    private LocalHostTable hostTable;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    /**
+     * The documents being normalized, in the order in which they were returned by the query.
+     */
+    private final Deque<String> pendingDocuments = new ArrayDeque<>();
+
+    /**
+     * The documents already handled but still preceded by a pending document.
+     */
+    private final Set<String> handledDocuments = new HashSet<>();
+
+    private String lastDocument;
+
+    private long processed;
+
+    private long normalized;
+
+    private long failed;
+
+    private long skipped;
+
+    /**
+     * The references which would be rewritten, only for a dry-run.
+     */
+    private RewriteManifest manifest;
+
+    /**
+     * The documents which did not change since their last normalization, only for an incremental run.
+     */
+    private NormalizeJobIndex index;
+
+    private DocumentGroupNormalizer groupNormalizer;
+
     @Override
     protected NormalizeJobRequest castRequest(Request request)
     {
@@ -90,6 +160,15 @@ public class NormalizeJob extends AbstractJob<NormalizeJobRequest, JobStatus>
         return normalizeRequest;
     }
 
+    @Override
+    protected NormalizeJobStatus createNewStatus(NormalizeJobRequest request)
+    {
+        Job currentJob = this.jobContext.getCurrentJob();
+        JobStatus currentJobStatus = currentJob != null ? currentJob.getStatus() : null;
+
+        return new NormalizeJobStatus(request, currentJobStatus, this.observationManager, this.loggerManager);
+    }
+
     @Override
     public String getType()
     {
@@ -99,59 +178,269 @@ public class NormalizeJob extends AbstractJob<NormalizeJobRequest, JobStatus>
     @Override
     protected void runInternal() throws Exception
     {
-        List<String> documents = this.queryManager.getNamedQuery("getAllDocuments").execute();
+        NormalizeJobCheckpoint checkpoint = getRequest().getCheckpoint();
+        if (checkpoint != null) {
+            this.lastDocument = checkpoint.getLastDocument();
+            this.processed = checkpoint.getProcessed();
+            this.normalized = checkpoint.getNormalized();
+            this.failed = checkpoint.getFailed();
+            this.skipped = checkpoint.getSkipped();
+
+            this.logger.info("Resuming the normalization after document [{}] ([{}] documents already handled).",
+                this.lastDocument, this.processed);
+        }
+
+        DocumentPager documents = createPager();
+
+        long count = documents.count();
 
         XWikiContext xcontext = this.xcontextProvider.get();
 
         if (getRequest().isVerbose()) {
-            this.logger.info("Found [{}] documents.", documents.size());
+            this.logger.info("Found [{}] documents.", count);
         }
 
-        this.progress.pushLevelProgress(documents.size(), this);
+        if (getRequest().isDryRun()) {
+            this.manifest = new RewriteManifest(getManifestFile(), this.serializer);
+            getStatus().setManifest(this.manifest.getFile());
 
-        try {
-            for (String document : documents) {
-                this.progress.startStep(document);
+            this.logger.info("Writing the references which would be rewritten to [{}].", this.manifest.getFile());
+        }
 
-                try {
-                    normalize(this.resolver.resolve(document, getRequest().getWikiReference()), xcontext);
-                } finally {
-                    this.progress.endStep(document);
-                }
+        this.groupNormalizer = new DocumentGroupNormalizer(this.resolver, this.authorizationManager,
+            this.urlNormalizationManager, getRequest().isCreateNewVersion(), getRequest().getGroupSize(),
+            this.manifest);
+
+        if (getRequest().isIncremental() && !getRequest().isDryRun()) {
+            this.index = loadIndex(getRequest().getWikiReference());
+            this.groupNormalizer.setIndex(getRequest().getWikiReference(), this.index);
+        }
+
+        // The progress API counts the steps with an int
+        this.progress.pushLevelProgress((int) Math.min(count, Integer.MAX_VALUE), this);
+
+        try {
+            int threads = getWorkerCount(getRequest().getThreads());
+            if (threads > 1) {
+                normalizeParallel(documents, threads, xcontext);
+            } else {
+                normalizeSequential(documents, xcontext);
             }
+
+            getStatus().setCompleted(true);
         } finally {
             this.progress.popLevelProgress(this);
+
+            // The final status is stored when the job ends
+            getStatus().setCheckpoint(createCheckpoint());
+
+            if (this.manifest != null) {
+                this.manifest.close();
+
+                this.logger.info("[{}] references would be rewritten.", this.manifest.getCount());
+            }
+
+            if (this.index != null) {
+                // Forget the deleted documents, when all the documents of the wiki were enumerated by this run
+                if (getStatus().isCompleted() && checkpoint == null && !getRequest().isScoped()) {
+                    this.index.prune();
+                }
+
+                saveIndex(this.index);
+
+                this.logger.info("[{}] documents skipped because they did not change since their last normalization.",
+                    this.skipped);
+            }
+        }
+    }
+
+    private NormalizeJobIndex loadIndex(WikiReference wiki) throws NormalizationException
+    {
+        // The normalization of the local URLs also depends on the wiki aliases, ports and xwiki.home
+        String fingerprint;
+        try {
+            fingerprint = this.configurationStore.getFingerprint(wiki) + ':' + this.hostTable.getFingerprint();
+        } catch (WikiManagerException e) {
+            throw new NormalizationException("Failed to gather the local hosts", e);
+        }
+
+        NormalizeJobIndex wikiIndex = new NormalizeJobIndex(this.environment, wiki, fingerprint);
+
+        try {
+            wikiIndex.load();
+        } catch (IOException e) {
+            this.logger.warn("Failed to load the normalization index [{}], all the documents will be normalized.",
+                wikiIndex.getFile(), e);
+        }
+
+        return wikiIndex;
+    }
+
+    private void saveIndex(NormalizeJobIndex wikiIndex)
+    {
+        try {
+            wikiIndex.save();
+        } catch (IOException e) {
+            this.logger.error("Failed to save the normalization index [{}].", wikiIndex.getFile(), e);
         }
     }
 
-    private void normalize(DocumentReference documentReference, XWikiContext xcontext)
+    private DocumentPager createPager()
     {
-        // Make sure the current author is allowed to modify the document
-        if (!this.authorizationManager.hasAccess(Right.EDIT, xcontext.getAuthorReference(), documentReference)) {
-            this.logger.error("The author [{}] doesn't have the right to normalize the document [{}].",
-                xcontext.getAuthorReference(), documentReference);
+        NormalizeJobRequest request = getRequest();
 
-            return;
+        DocumentPager pager;
+        if (request.getDocuments() != null) {
+            List<String> documents = new ArrayList<>(request.getDocuments().size());
+            for (DocumentReference document : request.getDocuments()) {
+                if (document.getWikiReference().equals(request.getWikiReference())) {
+                    documents.add(this.localSerializer.serialize(document));
+                } else {
+                    this.logger.warn("Skipping the document [{}] which is not located in the normalized wiki.",
+                        document);
+                }
+            }
+
+            pager = new DocumentPager(documents, request.getBatchSize(), this.lastDocument);
+        } else {
+            pager = new DocumentPager(this.queryManager, request.getWikiReference(), request.getBatchSize(),
+                this.lastDocument);
+
+            pager.setSpace(request.getSpace(), this.localSerializer);
+            if (request.getWhere() != null) {
+                pager.setWhere(request.getWhere(), request.getWhereLanguage());
+            }
         }
 
-        // Make sure the current user is allowed to modify the document
-        if (!this.authorizationManager.hasAccess(Right.EDIT, xcontext.getUserReference(), documentReference)) {
-            this.logger.error("The user [{}] doesn't have the right to normalize the document [{}].",
-                xcontext.getAuthorReference(), documentReference);
+        return pager;
+    }
+
+    private File getManifestFile()
+    {
+        File directory = new File(this.environment.getPermanentDirectory(),
+            String.format("urlnormalizer/jobs/%s", getRequest().getWikiReference().getName()));
+
+        return new File(directory, String.format("dryrun-%s.tsv", new SimpleDateFormat("yyyyMMdd-HHmmss").format(
+            new Date())));
+    }
+
+    private void normalizeSequential(DocumentPager documents, XWikiContext xcontext) throws QueryException
+    {
+        for (List<String> page = documents.next(); !page.isEmpty(); page = documents.next()) {
+            for (List<String> group : this.groupNormalizer.split(page)) {
+                this.pendingDocuments.addAll(group);
 
-            return;
+                this.groupNormalizer.normalize(group, getRequest().getWikiReference(), xcontext)
+                    .forEach(result -> report(result, xcontext));
+            }
         }
+    }
+
+    /**
+     * @param threads the requested number of threads
+     * @return the number of worker threads to use, at least 1 and at most one per available processor since more
+     *         threads would only compete for the processors (and the database connections)
+     */
+    static int getWorkerCount(int threads)
+    {
+        return Math.min(Math.max(threads, 1), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Distribute the groups of documents between a pool of worker threads, each one with its own clone of the job
+     * {@link XWikiContext}. The progress and the log are only manipulated from the job thread (both are bound to it),
+     * as the workers report their results.
+     */
+    private void normalizeParallel(DocumentPager documents, int threads, XWikiContext xcontext)
+        throws InterruptedException, ExecutionException, QueryException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> newWorker(runnable, xcontext));
+        CompletionService<List<NormalizeDocumentResult>> completion = new ExecutorCompletionService<>(executor);
 
-        // Normalize the document
         try {
-            if (this.urlNormalizationManager.normalize(documentReference, Collections.emptyList(),
-                getRequest().isCreateNewVersion())) {
-                this.logger.info("The document [{}] has been normalized.", documentReference);
-            } else {
-                this.logger.info("There is nothing to normalize in document [{}].", documentReference);
+            // Don't queue more documents than the workers can handle in a short time to keep the reported progress
+            // close to reality
+            int maxPending = threads * 2;
+            int pending = 0;
+            for (List<String> page = documents.next(); !page.isEmpty(); page = documents.next()) {
+                for (List<String> group : this.groupNormalizer.split(page)) {
+                    if (pending == maxPending) {
+                        completion.take().get().forEach(result -> report(result, xcontext));
+                        --pending;
+                    }
+
+                    this.pendingDocuments.addAll(group);
+                    completion.submit(() -> this.groupNormalizer.normalize(group, getRequest().getWikiReference(),
+                        this.xcontextProvider.get()));
+                    ++pending;
+                }
+            }
+
+            for (; pending > 0; --pending) {
+                completion.take().get().forEach(result -> report(result, xcontext));
             }
-        } catch (NormalizationException e) {
-            this.logger.error("Failed to normalize document [{}].", documentReference, e);
+        } finally {
+            executor.shutdownNow();
         }
     }
+
+    private Thread newWorker(Runnable runnable, XWikiContext xcontext)
+    {
+        Thread thread = new Thread(new AbstractXWikiRunnable(XWikiContext.EXECUTIONCONTEXT_KEY, xcontext.clone())
+        {
+            @Override
+            protected void runInternal()
+            {
+                runnable.run();
+            }
+        });
+        thread.setName("URL Normalizer worker for wiki [" + getRequest().getWikiReference().getName() + "]");
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    private void report(NormalizeDocumentResult result, XWikiContext xcontext)
+    {
+        this.progress.startStep(result.getDocument());
+
+        try {
+            handle(result, xcontext);
+        } finally {
+            this.progress.endStep(result.getDocument());
+        }
+    }
+
+    private void handle(NormalizeDocumentResult result, XWikiContext xcontext)
+    {
+        this.groupNormalizer.log(result, xcontext, this.logger);
+
+        ++this.processed;
+        if (result.getOutcome() == Outcome.NORMALIZED) {
+            ++this.normalized;
+        } else if (result.getOutcome() == Outcome.SKIPPED) {
+            ++this.skipped;
+        } else if (result.getOutcome() != Outcome.UNCHANGED) {
+            ++this.failed;
+        }
+
+        // The checkpoint can only move forward when all the previous documents have been handled
+        this.handledDocuments.add(result.getDocument());
+        while (!this.pendingDocuments.isEmpty() && this.handledDocuments.remove(this.pendingDocuments.peekFirst())) {
+            this.lastDocument = this.pendingDocuments.pollFirst();
+        }
+
+        int checkpointInterval = getRequest().getCheckpointInterval();
+        if (checkpointInterval > 0 && this.processed % checkpointInterval == 0) {
+            getStatus().setCheckpoint(createCheckpoint());
+
+            this.store.store(getStatus());
+        }
+    }
+
+    private NormalizeJobCheckpoint createCheckpoint()
+    {
+        return new NormalizeJobCheckpoint(this.lastDocument, this.processed, this.normalized, this.failed,
+            this.skipped);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.Serializable;
+
+/**
+ * The state of a {@link NormalizeJob} from which a new job can restart: all the documents up to (and including)
+ * {@link #getLastDocument()} have been handled.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class NormalizeJobCheckpoint implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String lastDocument;
+
+    private final long processed;
+
+    private final long normalized;
+
+    private final long failed;
+
+    /**
+     * Not present in the checkpoints stored by older versions, which are read with 0.
+     */
+    private final long skipped;
+
+    /**
+     * @param lastDocument the last handled document (serialized local reference)
+     * @param processed the number of handled documents
+     * @param normalized the number of documents which have been modified
+     * @param failed the number of documents which could not be normalized
+     * @param skipped the number of documents skipped because they did not change since their last normalization
+     */
+    public NormalizeJobCheckpoint(String lastDocument, long processed, long normalized, long failed, long skipped)
+    {
+        this.lastDocument = lastDocument;
+        this.processed = processed;
+        this.normalized = normalized;
+        this.failed = failed;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return the last handled document (serialized local reference)
+     */
+    public String getLastDocument()
+    {
+        return this.lastDocument;
+    }
+
+    /**
+     * @return the number of handled documents
+     */
+    public long getProcessed()
+    {
+        return this.processed;
+    }
+
+    /**
+     * @return the number of documents which have been modified
+     */
+    public long getNormalized()
+    {
+        return this.normalized;
+    }
+
+    /**
+     * @return the number of documents which could not be normalized
+     */
+    public long getFailed()
+    {
+        return this.failed;
+    }
+
+    /**
+     * @return the number of documents skipped because they did not change since their last normalization
+     */
+    public long getSkipped()
+    {
+        return this.skipped;
+    }
+}
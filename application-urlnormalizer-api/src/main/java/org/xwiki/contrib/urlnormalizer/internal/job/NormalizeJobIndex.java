@@ -0,0 +1,278 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeDocumentResult.Outcome;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.LargeStringProperty;
+
+/**
+ * Remember, for each document of a wiki, the hash of its content and of the configuration (filters and local hosts) at
+ * the time of its last normalization, as well as the outcome of this normalization. A document whose content and
+ * configuration did not change since it was successfully normalized can be skipped by the next run of
+ * {@link NormalizeJob}.
+ * <p>
+ * The index is stored in a tab separated file with one line per document: content hash, configuration hash, outcome
+ * and document (serialized local reference, last to not have to escape it). The documents can be indexed by several
+ * threads at the same time.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+class NormalizeJobIndex
+{
+    private static final char SEPARATOR = '\t';
+
+    private static final class Entry
+    {
+        private final String contentHash;
+
+        private final String configurationHash;
+
+        private final Outcome outcome;
+
+        Entry(String contentHash, String configurationHash, Outcome outcome)
+        {
+            this.contentHash = contentHash;
+            this.configurationHash = configurationHash;
+            this.outcome = outcome;
+        }
+    }
+
+    private final File file;
+
+    private final String configurationHash;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param file the file where the index is stored
+     * @param configurationHash the hash of the current configuration of the wiki
+     */
+    NormalizeJobIndex(File file, String configurationHash)
+    {
+        this.file = file;
+        this.configurationHash = configurationHash;
+    }
+
+    /**
+     * @param environment the environment providing the permanent directory where the index is stored
+     * @param wiki the indexed wiki
+     * @param configurationHash the hash of the current configuration of the wiki
+     */
+    NormalizeJobIndex(Environment environment, WikiReference wiki, String configurationHash)
+    {
+        this(new File(environment.getPermanentDirectory(),
+            String.format("urlnormalizer/jobs/%s/index.tsv", wiki.getName())), configurationHash);
+    }
+
+    /**
+     * @return the file where the index is stored
+     */
+    File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * @return the number of indexed documents
+     */
+    int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Load the index stored by the previous run, if any.
+     * 
+     * @throws IOException when failing to read the file
+     */
+    void load() throws IOException
+    {
+        if (this.file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] values = line.split(String.valueOf(SEPARATOR), 4);
+                    // Ignore the lines which were not written by this version of the index
+                    if (values.length == 4) {
+                        Outcome outcome = toOutcome(values[2]);
+                        if (outcome != null) {
+                            this.entries.put(values[3], new Entry(values[0], values[1], outcome));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Outcome toOutcome(String value)
+    {
+        try {
+            return Outcome.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the index to its file. The new index replaces the previous one only once completely written.
+     * 
+     * @throws IOException when failing to write the file
+     */
+    void save() throws IOException
+    {
+        this.file.getParentFile().mkdirs();
+
+        File temporaryFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                writer.append(entry.getValue().contentHash).append(SEPARATOR);
+                writer.append(entry.getValue().configurationHash).append(SEPARATOR);
+                writer.append(entry.getValue().outcome.name()).append(SEPARATOR);
+                writer.append(entry.getKey()).append('\n');
+            }
+        }
+
+        Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param document the document (serialized local reference)
+     * @param contentHash the hash of the current content of the document
+     * @return true if the document was successfully normalized with the same content and the same configuration
+     */
+    boolean isUnchanged(String document, String contentHash)
+    {
+        Entry entry = this.entries.get(document);
+
+        return entry != null && (entry.outcome == Outcome.NORMALIZED || entry.outcome == Outcome.UNCHANGED)
+            && entry.contentHash.equals(contentHash) && entry.configurationHash.equals(this.configurationHash);
+    }
+
+    /**
+     * @param document the document (serialized local reference)
+     * @param contentHash the hash of the content of the document after its normalization
+     * @param outcome the outcome of the normalization
+     */
+    void put(String document, String contentHash, Outcome outcome)
+    {
+        this.entries.put(document, new Entry(contentHash, this.configurationHash, outcome));
+    }
+
+    /**
+     * @param document the document (serialized local reference)
+     */
+    void remove(String document)
+    {
+        this.entries.remove(document);
+    }
+
+    /**
+     * @param document the document (serialized local reference) enumerated by the current run
+     */
+    void visit(String document)
+    {
+        this.visited.add(document);
+    }
+
+    /**
+     * Forget the documents which were not enumerated by the current run (most probably because they were deleted).
+     * Should only be called when the run enumerated all the documents of the wiki.
+     *
+     * @return the number of forgotten documents
+     */
+    int prune()
+    {
+        int size = this.entries.size();
+
+        this.entries.keySet().retainAll(this.visited);
+
+        return size - this.entries.size();
+    }
+
+    /**
+     * @param document the document to hash
+     * @return the hash of everything the normalizers may modify in the document: its syntax, its content and its
+     *         large string properties
+     */
+    static String hash(XWikiDocument document)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        update(digest, document.getSyntax() != null ? document.getSyntax().toIdString() : null);
+        update(digest, document.getContent());
+
+        for (Map.Entry<DocumentReference, List<BaseObject>> objects : document.getXObjects().entrySet()) {
+            for (BaseObject xobject : objects.getValue()) {
+                if (xobject != null) {
+                    update(digest, objects.getKey().toString());
+                    update(digest, String.valueOf(xobject.getNumber()));
+
+                    for (Object field : xobject.getFieldList()) {
+                        if (field instanceof LargeStringProperty) {
+                            update(digest, ((BaseProperty<?>) field).getName());
+                            update(digest, (String) ((BaseProperty<?>) field).getValue());
+                        }
+                    }
+                }
+            }
+        }
+
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // Separate the values so that moving characters from one to the other changes the hash
+        digest.update((byte) 0);
+    }
+}
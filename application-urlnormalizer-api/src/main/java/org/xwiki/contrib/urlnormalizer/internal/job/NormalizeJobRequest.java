@@ -24,7 +24,10 @@ import java.util.List;
 
 import org.xwiki.job.AbstractRequest;
 import org.xwiki.job.Request;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
 
 /**
  * Request to use with {@link NormalizeJob}.
@@ -44,6 +47,106 @@ public class NormalizeJobRequest extends AbstractRequest
      */
     public static final String PROPERTY_CREATENEWVERSION = "createNewVersion";
 
+    /**
+     * The name of the property containing the number of threads to use to normalize the documents.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_THREADS = "threads";
+
+    /**
+     * The name of the property containing the number of documents to get from the database at once.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_BATCHSIZE = "batchSize";
+
+    /**
+     * The default number of documents to get from the database at once.
+     * 
+     * @since 1.9.1
+     */
+    public static final int DEFAULT_BATCHSIZE = 100;
+
+    /**
+     * The name of the property containing the number of documents handed at once to a worker thread.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_GROUPSIZE = "groupSize";
+
+    /**
+     * The default number of documents handed at once to a worker thread.
+     * 
+     * @since 1.9.1
+     */
+    public static final int DEFAULT_GROUPSIZE = 20;
+
+    /**
+     * The name of the property indicating whether the documents should only be analyzed, without being saved.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_DRYRUN = "dryRun";
+
+    /**
+     * The name of the property indicating whether the documents which did not change since their last normalization
+     * should be skipped.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_INCREMENTAL = "incremental";
+
+    /**
+     * The name of the property containing the space (including its sub-spaces) to which the normalization is
+     * restricted.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_SPACE = "space";
+
+    /**
+     * The name of the property containing the explicit list of documents to normalize.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_DOCUMENTS = "documents";
+
+    /**
+     * The name of the property containing the condition on the documents to which the normalization is restricted.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_WHERE = "where";
+
+    /**
+     * The name of the property containing the language of the condition on the documents.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_WHERELANGUAGE = "whereLanguage";
+
+    /**
+     * The name of the property containing the checkpoint from which to resume the normalization.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_CHECKPOINT = "checkpoint";
+
+    /**
+     * The name of the property containing the number of handled documents between two stored checkpoints.
+     * 
+     * @since 1.9.1
+     */
+    public static final String PROPERTY_CHECKPOINTINTERVAL = "checkpointInterval";
+
+    /**
+     * The default number of handled documents between two stored checkpoints.
+     * 
+     * @since 1.9.1
+     */
+    public static final int DEFAULT_CHECKPOINTINTERVAL = 1000;
+
     private static final long serialVersionUID = 1L;
 
     /**
@@ -75,6 +178,18 @@ public class NormalizeJobRequest extends AbstractRequest
         return Arrays.asList(NormalizeJob.JOBTYPE, wiki.getName());
     }
 
+    /**
+     * @param wiki the wiki to normalize
+     * @param dryRun true for the id of the dry-run job, which is kept apart so that it doesn't replace the status (and
+     *            the checkpoint) of the last real normalization
+     * @return the Job id corresponding to the passed wiki identifier
+     * @since 1.9.1
+     */
+    public static List<String> toJobId(WikiReference wiki, boolean dryRun)
+    {
+        return dryRun ? Arrays.asList(NormalizeJob.JOBTYPE, wiki.getName(), PROPERTY_DRYRUN) : toJobId(wiki);
+    }
+
     /**
      * @return the the wiki to normalize
      */
@@ -90,4 +205,219 @@ public class NormalizeJobRequest extends AbstractRequest
     {
         return getProperty(PROPERTY_CREATENEWVERSION, true);
     }
+
+    /**
+     * @return the number of threads to use to normalize the documents, 1 means that the documents are normalized one
+     *         by one in the job thread. The default is 1, except for a dry-run which uses one thread per available
+     *         processor since it doesn't write anything. The job never uses more than one thread per available
+     *         processor.
+     * @since 1.9.1
+     */
+    public int getThreads()
+    {
+        return getProperty(PROPERTY_THREADS, isDryRun() ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    /**
+     * @param threads the number of threads to use to normalize the documents
+     * @since 1.9.1
+     */
+    public void setThreads(int threads)
+    {
+        setProperty(PROPERTY_THREADS, threads);
+    }
+
+    /**
+     * @return the number of documents to get from the database at once
+     * @since 1.9.1
+     */
+    public int getBatchSize()
+    {
+        return getProperty(PROPERTY_BATCHSIZE, DEFAULT_BATCHSIZE);
+    }
+
+    /**
+     * @param batchSize the number of documents to get from the database at once
+     * @since 1.9.1
+     */
+    public void setBatchSize(int batchSize)
+    {
+        setProperty(PROPERTY_BATCHSIZE, batchSize);
+    }
+
+    /**
+     * @return the number of documents handed at once to a worker thread (each document is still normalized and saved
+     *         on its own)
+     * @since 1.9.1
+     */
+    public int getGroupSize()
+    {
+        return getProperty(PROPERTY_GROUPSIZE, DEFAULT_GROUPSIZE);
+    }
+
+    /**
+     * @param groupSize the number of documents handed at once to a worker thread
+     * @since 1.9.1
+     */
+    public void setGroupSize(int groupSize)
+    {
+        setProperty(PROPERTY_GROUPSIZE, groupSize);
+    }
+
+    /**
+     * @return true if the documents should only be analyzed, without being saved, the references which would be
+     *         rewritten being written to a manifest file
+     * @since 1.9.1
+     */
+    public boolean isDryRun()
+    {
+        return getProperty(PROPERTY_DRYRUN, false);
+    }
+
+    /**
+     * @param dryRun true if the documents should only be analyzed, without being saved. The id of the request is
+     *            updated accordingly, see {@link #toJobId(WikiReference, boolean)}.
+     * @since 1.9.1
+     */
+    public void setDryRun(boolean dryRun)
+    {
+        setProperty(PROPERTY_DRYRUN, dryRun);
+
+        setId(toJobId(getWikiReference(), dryRun));
+    }
+
+    /**
+     * @return true if the documents whose content, filter configuration and local hosts (wiki aliases, ports and
+     *         {@code xwiki.home}) did not change since their last normalization should be skipped, false (the default)
+     *         to normalize all the documents (ignored for a dry-run)
+     * @since 1.9.1
+     */
+    public boolean isIncremental()
+    {
+        return getProperty(PROPERTY_INCREMENTAL, false);
+    }
+
+    /**
+     * @param incremental true if the documents whose content, filter configuration and local hosts did not change
+     *            since their last normalization should be skipped, false to normalize all the documents again
+     * @since 1.9.1
+     */
+    public void setIncremental(boolean incremental)
+    {
+        setProperty(PROPERTY_INCREMENTAL, incremental);
+    }
+
+    /**
+     * @return the space (including its sub-spaces) to which the normalization is restricted, null for the whole wiki
+     * @since 1.9.1
+     */
+    public SpaceReference getSpace()
+    {
+        return getProperty(PROPERTY_SPACE);
+    }
+
+    /**
+     * @param space the space (including its sub-spaces) to which the normalization is restricted, it must be located
+     *            in the normalized wiki
+     * @since 1.9.1
+     */
+    public void setSpace(SpaceReference space)
+    {
+        setProperty(PROPERTY_SPACE, space);
+    }
+
+    /**
+     * @return the explicit list of documents to normalize, null to enumerate the documents of the wiki
+     * @since 1.9.1
+     */
+    public List<DocumentReference> getDocuments()
+    {
+        return getProperty(PROPERTY_DOCUMENTS);
+    }
+
+    /**
+     * @param documents the explicit list of documents to normalize, they must be located in the normalized wiki. The
+     *            other restrictions (space, condition) are ignored when a list is provided.
+     * @since 1.9.1
+     */
+    public void setDocuments(List<DocumentReference> documents)
+    {
+        setProperty(PROPERTY_DOCUMENTS, documents);
+    }
+
+    /**
+     * @return the condition on the documents (designated by the {@code doc} alias) to which the normalization is
+     *         restricted, null for no restriction
+     * @since 1.9.1
+     */
+    public String getWhere()
+    {
+        return getProperty(PROPERTY_WHERE);
+    }
+
+    /**
+     * @return the language of the condition on the documents, {@link Query#HQL} (the default) or {@link Query#XWQL}
+     * @since 1.9.1
+     */
+    public String getWhereLanguage()
+    {
+        return getProperty(PROPERTY_WHERELANGUAGE, Query.HQL);
+    }
+
+    /**
+     * @param where the condition on the documents (designated by the {@code doc} alias) to which the normalization is
+     *            restricted, for example {@code doc.date > '2020-01-01'}
+     * @param language the language of the condition, {@link Query#HQL} or {@link Query#XWQL}
+     * @since 1.9.1
+     */
+    public void setWhere(String where, String language)
+    {
+        setProperty(PROPERTY_WHERE, where);
+        setProperty(PROPERTY_WHERELANGUAGE, language);
+    }
+
+    /**
+     * @return true if the normalization is restricted to a subset of the documents of the wiki
+     * @since 1.9.1
+     */
+    public boolean isScoped()
+    {
+        return getSpace() != null || getDocuments() != null || getWhere() != null;
+    }
+
+    /**
+     * @return the checkpoint from which to resume the normalization, null to start from the first document
+     * @since 1.9.1
+     */
+    public NormalizeJobCheckpoint getCheckpoint()
+    {
+        return getProperty(PROPERTY_CHECKPOINT);
+    }
+
+    /**
+     * @param checkpoint the checkpoint from which to resume the normalization
+     * @since 1.9.1
+     */
+    public void setCheckpoint(NormalizeJobCheckpoint checkpoint)
+    {
+        setProperty(PROPERTY_CHECKPOINT, checkpoint);
+    }
+
+    /**
+     * @return the number of handled documents between two stored checkpoints
+     * @since 1.9.1
+     */
+    public int getCheckpointInterval()
+    {
+        return getProperty(PROPERTY_CHECKPOINTINTERVAL, DEFAULT_CHECKPOINTINTERVAL);
+    }
+
+    /**
+     * @param checkpointInterval the number of handled documents between two stored checkpoints
+     * @since 1.9.1
+     */
+    public void setCheckpointInterval(int checkpointInterval)
+    {
+        setProperty(PROPERTY_CHECKPOINTINTERVAL, checkpointInterval);
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.File;
+
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * The status of a {@link NormalizeJob}, including the checkpoint from which an interrupted job can be resumed.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class NormalizeJobStatus extends DefaultJobStatus<NormalizeJobRequest>
+{
+    private volatile NormalizeJobCheckpoint checkpoint;
+
+    private volatile boolean completed;
+
+    private volatile File manifest;
+
+    /**
+     * @param request the request provided when started the job
+     * @param parentJobStatus the status of the parent job (i.e. the status of the job that started this one); pass
+     *            {@code null} if this job hasn't been started by another job (i.e. if this is not a sub-job)
+     * @param observationManager the observation manager component
+     * @param loggerManager the logger manager component
+     */
+    public NormalizeJobStatus(NormalizeJobRequest request, JobStatus parentJobStatus,
+        ObservationManager observationManager, LoggerManager loggerManager)
+    {
+        super(NormalizeJob.JOBTYPE, request, parentJobStatus, observationManager, loggerManager);
+
+        this.checkpoint = request.getCheckpoint();
+    }
+
+    /**
+     * @return the last checkpoint of the job, null if no document has been handled yet
+     */
+    public NormalizeJobCheckpoint getCheckpoint()
+    {
+        return this.checkpoint;
+    }
+
+    /**
+     * @param checkpoint the last checkpoint of the job
+     */
+    public void setCheckpoint(NormalizeJobCheckpoint checkpoint)
+    {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return true if all the documents have been handled
+     */
+    public boolean isCompleted()
+    {
+        return this.completed;
+    }
+
+    /**
+     * @param completed true if all the documents have been handled
+     */
+    public void setCompleted(boolean completed)
+    {
+        this.completed = completed;
+    }
+
+    /**
+     * @return the file listing the references which would be rewritten, null if the job is not a dry-run
+     */
+    public File getManifest()
+    {
+        return this.manifest;
+    }
+
+    /**
+     * @param manifest the file listing the references which would be rewritten
+     */
+    public void setManifest(File manifest)
+    {
+        this.manifest = manifest;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+
+/**
+ * Write the references rewritten by a dry-run of {@link NormalizeJob} to a file, one tab separated line per rewrite:
+ * document, location (the document itself for its content or an object property), old reference, new reference and
+ * pattern of the filter which produced the new reference ({@code -} for the standard conversion of local URLs). The
+ * rewrites can be reported by several threads at the same time.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class RewriteManifest implements Consumer<URLRewrite>, Closeable
+{
+    private static final char SEPARATOR = '\t';
+
+    private static final String NO_FILTER = "-";
+
+    private final File file;
+
+    private final EntityReferenceSerializer<String> serializer;
+
+    private final Writer writer;
+
+    private long count;
+
+    /**
+     * @param file the file where to write the manifest
+     * @param serializer the serializer used to write the document references and the locations
+     * @throws IOException when failing to create the file
+     */
+    public RewriteManifest(File file, EntityReferenceSerializer<String> serializer) throws IOException
+    {
+        this.file = file;
+        this.serializer = serializer;
+
+        file.getParentFile().mkdirs();
+        this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        this.writer.write("# document\tlocation\told reference\tnew reference\tfilter\n");
+    }
+
+    @Override
+    public synchronized void accept(URLRewrite rewrite)
+    {
+        StringBuilder line = new StringBuilder();
+        appendValue(this.serializer.serialize(rewrite.getDocument()), line);
+        line.append(SEPARATOR);
+        appendValue(this.serializer.serialize(rewrite.getLocation()), line);
+        line.append(SEPARATOR);
+        appendValue(serialize(rewrite.getOldReference()), line);
+        line.append(SEPARATOR);
+        appendValue(serialize(rewrite.getNewReference()), line);
+        line.append(SEPARATOR);
+        appendValue(rewrite.getFilter() != null ? rewrite.getFilter() : NO_FILTER, line);
+        line.append('\n');
+
+        try {
+            this.writer.write(line.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the manifest [" + this.file + "]", e);
+        }
+
+        ++this.count;
+    }
+
+    private String serialize(ResourceReference reference)
+    {
+        return reference.getType().getScheme() + ':' + reference.getReference();
+    }
+
+    private void appendValue(String value, StringBuilder line)
+    {
+        // Escape the characters used to separate the values and the lines
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                line.append("\\\\");
+            } else if (c == SEPARATOR) {
+                line.append("\\t");
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c == '\r') {
+                line.append("\\r");
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return the file where the manifest is written
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * @return the number of rewrites written so far
+     */
+    public synchronized long getCount()
+    {
+        return this.count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.writer.close();
+    }
+}
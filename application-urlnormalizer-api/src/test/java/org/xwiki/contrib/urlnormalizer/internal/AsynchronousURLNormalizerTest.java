@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AsynchronousURLNormalizer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class AsynchronousURLNormalizerTest
+{
+    private static final DocumentReference DOCUMENT1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private static final DocumentReference DOCUMENT2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private static final long TIMEOUT = 10000;
+
+    @MockComponent
+    private URLNormalizationManager manager;
+
+    @MockComponent
+    private URLNormalizerMetrics metrics;
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @InjectMockComponents
+    private AsynchronousURLNormalizer normalizer;
+
+    private XWikiContext xcontext;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.xcontext = mock(XWikiContext.class);
+        when(this.xcontextProvider.get()).thenReturn(this.xcontext);
+    }
+
+    @Test
+    void normalizeInTheBackground() throws Exception
+    {
+        CountDownLatch normalized = new CountDownLatch(1);
+        when(this.manager.normalize(DOCUMENT1, Collections.emptyList(), false)).thenAnswer(invocation -> {
+            normalized.countDown();
+
+            return true;
+        });
+
+        this.normalizer.normalize(DOCUMENT1);
+
+        assertTrue(normalized.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        verify(this.xcontext).setWikiId("wiki");
+        verify(this.metrics).queued();
+        verify(this.metrics, timeout(TIMEOUT)).dequeued();
+    }
+
+    @Test
+    void coalesceRepeatedSaves() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.manager.normalize(DOCUMENT1, Collections.emptyList(), false)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+
+            return true;
+        });
+
+        this.normalizer.normalize(DOCUMENT1);
+
+        try {
+            assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // Save the second document several times while the first one is being normalized
+            this.normalizer.normalize(DOCUMENT2);
+            this.normalizer.normalize(DOCUMENT2);
+            this.normalizer.normalize(DOCUMENT2);
+        } finally {
+            release.countDown();
+        }
+
+        // The first document being normalized already, a new save needs a new normalization
+        this.normalizer.normalize(DOCUMENT1);
+
+        verify(this.manager, timeout(TIMEOUT).times(2)).normalize(DOCUMENT1, Collections.emptyList(), false);
+        verify(this.manager, times(1)).normalize(DOCUMENT2, Collections.emptyList(), false);
+    }
+
+    @Test
+    void requeueModifiedDocument() throws Exception
+    {
+        when(this.manager.normalize(DOCUMENT1, Collections.emptyList(), false))
+            .thenThrow(new DocumentModifiedException(DOCUMENT1)).thenReturn(true);
+
+        this.normalizer.normalize(DOCUMENT1);
+
+        // The document saved during its normalization is normalized again
+        verify(this.manager, timeout(TIMEOUT).times(2)).normalize(DOCUMENT1, Collections.emptyList(), false);
+        verify(this.metrics, times(2)).queued();
+    }
+}
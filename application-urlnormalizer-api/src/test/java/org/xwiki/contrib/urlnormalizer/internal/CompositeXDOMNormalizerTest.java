@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.BoldBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link CompositeXDOMNormalizer}.
+ *
+ * @version $Id$
+ */
+class CompositeXDOMNormalizerTest
+{
+    /**
+     * Replace the words matching the source with a bold block containing the target word.
+     */
+    private static class WordXDOMNormalizer implements XDOMBlockNormalizer
+    {
+        private final String source;
+
+        private final String target;
+
+        private final List<Block> visited = new ArrayList<>();
+
+        WordXDOMNormalizer(String source, String target)
+        {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public boolean normalize(XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Block normalize(Block block, XDOM xdom, Parser parser, BlockRenderer blockRenderer)
+        {
+            this.visited.add(block);
+
+            if (block instanceof WordBlock && ((WordBlock) block).getWord().equals(this.source)) {
+                Block newBlock = new BoldBlock(Collections.singletonList(new WordBlock(this.target)));
+                block.getParent().replaceChild(newBlock, block);
+
+                return newBlock;
+            }
+
+            return block;
+        }
+    }
+
+    @Test
+    void normalize()
+    {
+        XDOM xdom = new XDOM(Collections.singletonList(new ParagraphBlock(
+            Arrays.asList(new WordBlock("a"), new WordBlock("c"), bold(new WordBlock("a"))))));
+
+        WordXDOMNormalizer normalizer1 = new WordXDOMNormalizer("a", "b");
+        WordXDOMNormalizer normalizer2 = new WordXDOMNormalizer("b", "c");
+        XDOMNormalizer xdomNormalizer = mock(XDOMNormalizer.class);
+
+        assertTrue(new CompositeXDOMNormalizer(normalizer1, xdomNormalizer, normalizer2).normalize(xdom, null, null));
+
+        // The XDOM is walked once by both block normalizers and the new blocks are walked too
+        assertEquals(normalizer1.visited.size(), normalizer2.visited.size());
+        assertEquals(9, normalizer1.visited.size());
+        verify(xdomNormalizer).normalize(xdom, null, null);
+
+        // Blocks produced by a normalizer are passed to the following normalizers
+        Block paragraph = xdom.getChildren().get(0);
+        assertEquals(bold(bold(new WordBlock("c"))), paragraph.getChildren().get(0));
+        assertEquals(new WordBlock("c"), paragraph.getChildren().get(1));
+        assertEquals(bold(bold(bold(new WordBlock("c")))), paragraph.getChildren().get(2));
+    }
+
+    private Block bold(Block child)
+    {
+        return new BoldBlock(Collections.singletonList(child));
+    }
+
+    @Test
+    void normalizeWithoutModification()
+    {
+        XDOM xdom = new XDOM(Collections.singletonList(new WordBlock("c")));
+
+        XDOMNormalizer xdomNormalizer = mock(XDOMNormalizer.class);
+        when(xdomNormalizer.normalize(xdom, null, null)).thenReturn(false);
+
+        assertFalse(new CompositeXDOMNormalizer(new WordXDOMNormalizer("a", "b"), xdomNormalizer).normalize(xdom,
+            null, null));
+    }
+}
@@ -36,6 +36,7 @@ import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -63,6 +64,8 @@ public class ContentDocumentNormalizerTest
 
     private XDOMNormalizer macroXDOMNormalizer;
 
+    private URLCandidateScanner scanner;
+
     @Before
     public void setUp() throws Exception
     {
@@ -70,6 +73,9 @@ public class ContentDocumentNormalizerTest
         this.blockRenderer = this.mocker.registerMockComponent(BlockRenderer.class, Syntax.XWIKI_2_1.toIdString());
         this.linkXDOMNormalizer = this.mocker.registerMockComponent(XDOMNormalizer.class, "link");
         this.macroXDOMNormalizer = this.mocker.registerMockComponent(XDOMNormalizer.class, "macro");
+        this.scanner = this.mocker.registerMockComponent(URLCandidateScanner.class);
+
+        when(this.scanner.mayContainCandidate(any())).thenReturn(true);
     }
 
     @Test
@@ -85,6 +91,22 @@ public class ContentDocumentNormalizerTest
             new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT_OR_SELF).size());
     }
 
+    @Test
+    public void normalizeWithNoCandidateInContent() throws Exception
+    {
+        XDOM xdom = new XDOM(Collections.emptyList());
+        XWikiDocument fakeDocument = URLNormalizationHelper.mockXWikiDocument(xdom);
+        when(fakeDocument.getContent()).thenReturn("content");
+
+        when(this.scanner.mayContainCandidate("content")).thenReturn(false);
+
+        assertFalse(this.mocker.getComponentUnderTest().normalize(fakeDocument, this.parser, this.blockRenderer));
+
+        verify(fakeDocument, never()).getXDOM();
+        verify(this.linkXDOMNormalizer, never()).normalize(any(XDOM.class), any(Parser.class),
+            any(BlockRenderer.class));
+    }
+
     @Test
     public void normalizeWithOneNormalizedLinkInContent() throws Exception
     {
@@ -0,0 +1,233 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.urlnormalizer.DocumentNormalizer;
+import org.xwiki.contrib.urlnormalizer.NormalizationReport;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.contrib.urlnormalizer.internal.ParserRendererCache.ParserRenderer;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultURLNormalizationManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DefaultURLNormalizationManagerTest
+{
+    private static final String NORMALIZER = "test";
+
+    private static final List<String> NORMALIZERS = Collections.singletonList(NORMALIZER);
+
+    private static final DocumentReference DOCUMENT1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private static final DocumentReference DOCUMENT2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private static final DocumentReference DOCUMENT3 = new DocumentReference("wiki", "Space", "Page3");
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @MockComponent
+    private ComponentManager componentManager;
+
+    @MockComponent
+    private ParserRendererCache parserRendererCache;
+
+    @MockComponent
+    private URLRewriteRecorder recorder;
+
+    @InjectMockComponents
+    private DefaultURLNormalizationManager manager;
+
+    private XWikiContext xcontext;
+
+    private XWiki xwiki;
+
+    private DocumentNormalizer normalizer;
+
+    private XWikiDocument document1;
+
+    private XWikiDocument document2;
+
+    private XWikiDocument document3;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.xcontext = mock(XWikiContext.class);
+        this.xwiki = mock(XWiki.class);
+        when(this.xcontextProvider.get()).thenReturn(this.xcontext);
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+
+        ParserRenderer parserRenderer = mock(ParserRenderer.class);
+        when(parserRenderer.getParser()).thenReturn(mock(Parser.class));
+        when(parserRenderer.getBlockRenderer()).thenReturn(mock(BlockRenderer.class));
+        when(this.parserRendererCache.get(Syntax.XWIKI_2_1.toIdString())).thenReturn(parserRenderer);
+
+        this.normalizer = mock(DocumentNormalizer.class);
+        when(this.componentManager.hasComponent(DocumentNormalizer.class, NORMALIZER)).thenReturn(true);
+        when(this.componentManager.getInstance(DocumentNormalizer.class, NORMALIZER)).thenReturn(this.normalizer);
+
+        this.document1 = mockDocument(DOCUMENT1, true);
+        this.document2 = mockDocument(DOCUMENT2, false);
+        this.document3 = mockDocument(DOCUMENT3, true);
+    }
+
+    private XWikiDocument mockDocument(DocumentReference documentReference, boolean modified) throws Exception
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        when(document.clone()).thenReturn(document);
+        when(this.xwiki.getDocument(documentReference, this.xcontext)).thenReturn(document);
+        when(this.normalizer.normalize(same(document), any(), any())).thenReturn(modified);
+
+        return document;
+    }
+
+    @Test
+    void normalizeBatch() throws Exception
+    {
+        NormalizationReport report =
+            this.manager.normalize(Arrays.asList(DOCUMENT1, DOCUMENT2, DOCUMENT3), NORMALIZERS, true);
+
+        assertEquals(NormalizationReport.Status.MODIFIED, report.getStatus(DOCUMENT1));
+        assertEquals(NormalizationReport.Status.UNCHANGED, report.getStatus(DOCUMENT2));
+        assertEquals(NormalizationReport.Status.MODIFIED, report.getStatus(DOCUMENT3));
+        assertEquals(2, report.getModifiedCount());
+        assertEquals(0, report.getFailedCount());
+
+        verify(this.xwiki).saveDocument(same(this.document1), any(), same(this.xcontext));
+        verify(this.xwiki, never()).saveDocument(same(this.document2), any(), same(this.xcontext));
+        verify(this.xwiki).saveDocument(same(this.document3), any(), same(this.xcontext));
+        verify(this.xcontext, never()).setWikiId(any());
+    }
+
+    @Test
+    void normalizeBatchWithDocumentModified() throws Exception
+    {
+        // The first document is saved by someone else while being normalized
+        when(this.document1.getVersion()).thenReturn("1.1", "1.2");
+
+        NormalizationReport report =
+            this.manager.normalize(Arrays.asList(DOCUMENT1, DOCUMENT2, DOCUMENT3), NORMALIZERS, true);
+
+        assertEquals(NormalizationReport.Status.FAILED, report.getStatus(DOCUMENT1));
+        assertTrue(report.getError(DOCUMENT1) instanceof DocumentModifiedException);
+        assertEquals(NormalizationReport.Status.MODIFIED, report.getStatus(DOCUMENT3));
+
+        verify(this.xwiki, never()).saveDocument(same(this.document1), any(), same(this.xcontext));
+        verify(this.xwiki).saveDocument(same(this.document3), any(), same(this.xcontext));
+    }
+
+    @Test
+    void normalizeBatchWhenSaveFails() throws Exception
+    {
+        XWikiException error = new XWikiException();
+        doThrow(error).when(this.xwiki).saveDocument(same(this.document3), any(), same(this.xcontext));
+
+        NormalizationReport report =
+            this.manager.normalize(Arrays.asList(DOCUMENT1, DOCUMENT2, DOCUMENT3), NORMALIZERS, true);
+
+        // Each document is saved on its own so the failure doesn't affect the others and nothing is saved twice
+        verify(this.xwiki).saveDocument(same(this.document1), any(), same(this.xcontext));
+        verify(this.xwiki).saveDocument(same(this.document3), any(), same(this.xcontext));
+        verify(this.normalizer).normalize(same(this.document1), any(), any());
+
+        assertEquals(NormalizationReport.Status.MODIFIED, report.getStatus(DOCUMENT1));
+        assertEquals(NormalizationReport.Status.UNCHANGED, report.getStatus(DOCUMENT2));
+        assertEquals(NormalizationReport.Status.FAILED, report.getStatus(DOCUMENT3));
+        assertEquals(error, report.getError(DOCUMENT3).getCause());
+    }
+
+    @Test
+    void normalizeDocument() throws Exception
+    {
+        when(this.document1.getVersion()).thenReturn("1.1");
+
+        assertTrue(this.manager.normalize(DOCUMENT1, NORMALIZERS, false));
+
+        // A copy of the cached document is normalized and saved
+        verify(this.document1).clone();
+        verify(this.document1).setMetaDataDirty(false);
+        verify(this.xwiki).saveDocument(same(this.document1), any(), same(this.xcontext));
+    }
+
+    @Test
+    void normalizeDocumentModifiedDuringNormalization() throws Exception
+    {
+        when(this.document1.getVersion()).thenReturn("1.1", "1.2");
+
+        assertThrows(DocumentModifiedException.class, () -> this.manager.normalize(DOCUMENT1, NORMALIZERS, false));
+
+        verify(this.xwiki, never()).saveDocument(any(), any(), any());
+    }
+
+    @Test
+    void dryRun() throws Exception
+    {
+        Consumer<URLRewrite> rewrites = rewrite -> { };
+
+        NormalizationReport report = this.manager.dryRun(Arrays.asList(DOCUMENT1, DOCUMENT2), NORMALIZERS, rewrites);
+
+        assertEquals(NormalizationReport.Status.MODIFIED, report.getStatus(DOCUMENT1));
+        assertEquals(NormalizationReport.Status.UNCHANGED, report.getStatus(DOCUMENT2));
+
+        verify(this.recorder).start(DOCUMENT1, rewrites);
+        verify(this.recorder).start(DOCUMENT2, rewrites);
+        verify(this.recorder, times(2)).stop();
+        verify(this.xwiki, never()).saveDocument(any(), any(), any());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link KeywordMatcher}.
+ *
+ * @version $Id$
+ */
+class KeywordMatcherTest
+{
+    @Test
+    void findWithoutKeyword()
+    {
+        KeywordMatcher matcher = new KeywordMatcher(Collections.emptyList());
+
+        assertFalse(matcher.find("some content"));
+        assertFalse(matcher.find(""));
+    }
+
+    @Test
+    void findWithEmptyKeyword()
+    {
+        KeywordMatcher matcher = new KeywordMatcher(Collections.singletonList(""));
+
+        assertTrue(matcher.find("some content"));
+    }
+
+    @Test
+    void find()
+    {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("xwiki.org", "wiki.example", "Space."));
+
+        assertTrue(matcher.find("[[label>>url:https://www.xwiki.org/xwiki/bin/view/A/B]]"));
+        assertTrue(matcher.find("see http://WIKI.EXAMPLE/view"));
+        assertTrue(matcher.find("[[space.Page]]"));
+        assertTrue(matcher.find("xwiki.org"));
+        assertFalse(matcher.find("[[https://www.example.org]] and xwiki.com"));
+        assertFalse(matcher.find("xwiki.or"));
+        assertFalse(matcher.find(""));
+    }
+
+    @Test
+    void findWithOverlappingKeywords()
+    {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("abcd", "bce", "cf"));
+
+        // The failure links must be followed when a keyword match breaks in the middle of another one
+        assertTrue(matcher.find("xabcex"));
+        assertTrue(matcher.find("xabcfx"));
+        assertFalse(matcher.find("abcabc"));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link LocalHostTable}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LocalHostTableTest
+{
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    @Named("xwikicfg")
+    private ConfigurationSource configurationSource;
+
+    @InjectMockComponents
+    private LocalHostTable hostTable;
+
+    private WikiDescriptor mockDescriptor(int port, String... aliases)
+    {
+        WikiDescriptor wikiDescriptor = mock(WikiDescriptor.class);
+        when(wikiDescriptor.getPort()).thenReturn(port);
+        when(wikiDescriptor.getAliases()).thenReturn(Arrays.asList(aliases));
+
+        return wikiDescriptor;
+    }
+
+    @Test
+    void getPort() throws Exception
+    {
+        WikiDescriptor wikiDescriptor = mockDescriptor(-1, "domain", "alias");
+        when(wikiDescriptor.isSecure()).thenReturn(true);
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Arrays.asList(wikiDescriptor, mockDescriptor(8080, "other")));
+        when(this.configurationSource.getProperty("xwiki.home")).thenReturn("http://home/xwiki/");
+
+        assertEquals(443, this.hostTable.getPort("domain"));
+        assertEquals(443, this.hostTable.getPort("alias"));
+        assertEquals(8080, this.hostTable.getPort("other"));
+        assertEquals(80, this.hostTable.getPort("home"));
+        assertNull(this.hostTable.getPort("unknown"));
+
+        // The hosts are gathered only once
+        verify(this.wikiDescriptorManager, times(1)).getAll();
+    }
+
+    @Test
+    void getPortOfURL() throws Exception
+    {
+        assertEquals(80, LocalHostTable.getPort(new URL("http://domain/xwiki/")));
+        assertEquals(443, LocalHostTable.getPort(new URL("https://domain/xwiki/")));
+        assertEquals(8080, LocalHostTable.getPort(new URL("https://domain:8080/xwiki/")));
+    }
+
+    @Test
+    void getPortWithInvalidConfiguredHome() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Collections.singletonList(mockDescriptor(-1, "domain")));
+        when(this.configurationSource.getProperty("xwiki.home")).thenReturn("invalid");
+
+        assertEquals(80, this.hostTable.getPort("domain"));
+        assertEquals(Collections.singleton("domain"), this.hostTable.getHosts());
+    }
+
+    @Test
+    void invalidate() throws Exception
+    {
+        WikiDescriptor wikiDescriptor = mockDescriptor(-1, "domain");
+        when(this.wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(wikiDescriptor));
+
+        String fingerprint = this.hostTable.getFingerprint();
+        assertNull(this.hostTable.getPort("newdomain"));
+
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Arrays.asList(wikiDescriptor, mockDescriptor(-1, "newdomain")));
+
+        // Still the previous hosts
+        assertNull(this.hostTable.getPort("newdomain"));
+        assertEquals(fingerprint, this.hostTable.getFingerprint());
+
+        this.hostTable.invalidate();
+
+        assertEquals(80, this.hostTable.getPort("newdomain"));
+        assertEquals(80, this.hostTable.getPort("domain"));
+        assertNotEquals(fingerprint, this.hostTable.getFingerprint());
+    }
+
+    @Test
+    void getFingerprint() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Arrays.asList(mockDescriptor(-1, "domain"), mockDescriptor(8080, "other")));
+        String fingerprint = this.hostTable.getFingerprint();
+
+        // The fingerprint does not depend on the order of the descriptors
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Arrays.asList(mockDescriptor(8080, "other"), mockDescriptor(-1, "domain")));
+        this.hostTable.invalidate();
+        assertEquals(fingerprint, this.hostTable.getFingerprint());
+
+        // But it depends on the ports
+        when(this.wikiDescriptorManager.getAll())
+            .thenReturn(Arrays.asList(mockDescriptor(8081, "other"), mockDescriptor(-1, "domain")));
+        this.hostTable.invalidate();
+        assertNotEquals(fingerprint, this.hostTable.getFingerprint());
+    }
+}
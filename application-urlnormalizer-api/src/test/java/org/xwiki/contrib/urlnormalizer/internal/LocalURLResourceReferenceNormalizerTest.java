@@ -29,9 +29,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.xwiki.container.Container;
 import org.xwiki.container.servlet.ServletRequest;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
 import org.xwiki.contrib.urlnormalizer.URLValidator;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache.Normalization;
 import org.xwiki.contrib.urlnormalizer.internal.configuration.DefaultURLNormalizerFilter;
 import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerFilterMatcher;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
@@ -49,10 +52,15 @@ import org.xwiki.test.junit5.mockito.MockComponent;
 import org.xwiki.url.ExtendedURL;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -88,6 +96,9 @@ class LocalURLResourceReferenceNormalizerTest
     @MockComponent
     private URLNormalizerConfigurationStore store;
 
+    @MockComponent
+    private ResourceReferenceNormalizationCache cache;
+
     @BeforeEach
     public void beforeEach() throws Exception
     {
@@ -96,6 +107,13 @@ class LocalURLResourceReferenceNormalizerTest
         HttpServletRequest httpRequest = mock(HttpServletRequest.class);
         when(request.getHttpServletRequest()).thenReturn(httpRequest);
         when(httpRequest.getContextPath()).thenReturn("xwiki");
+
+        mockFilters();
+    }
+
+    private void mockFilters(URLNormalizerFilter... filters) throws Exception
+    {
+        when(this.store.getFilterMatcher(null)).thenReturn(new URLNormalizerFilterMatcher(Arrays.asList(filters)));
     }
 
     @Test
@@ -244,11 +262,11 @@ class LocalURLResourceReferenceNormalizerTest
     @Test
     void normalizeWithAFilter() throws Exception
     {
-        when(this.store.getFilters(null)).thenReturn(Arrays.asList(
+        mockFilters(
             new DefaultURLNormalizerFilter(ResourceType.ATTACHMENT, Pattern.compile("re(.*)"),
                 ResourceType.DOCUMENT, "filtered-${1}"),
             new DefaultURLNormalizerFilter(ResourceType.ATTACHMENT, Pattern.compile("otherrefe(?<name>.*)"),
-                ResourceType.DOCUMENT, "filtered-${name}")));
+                ResourceType.DOCUMENT, "filtered-${name}"));
 
         assertEquals(new ResourceReference("reference", ResourceType.DATA), this.normalizer.normalize(new ResourceReference("reference", ResourceType.DATA)));
         assertEquals(new ResourceReference("filtered-ference", ResourceType.DOCUMENT), this.normalizer.normalize(new ResourceReference("reference", ResourceType.ATTACHMENT)));
@@ -258,8 +276,8 @@ class LocalURLResourceReferenceNormalizerTest
     @Test
     void normalizeWithAFilterWithNullLinkType() throws Exception
     {
-        when(this.store.getFilters(null)).thenReturn(Arrays.asList(
-            new DefaultURLNormalizerFilter(null, Pattern.compile("re(.*)"), ResourceType.DOCUMENT, "filtered-${1}")));
+        mockFilters(
+            new DefaultURLNormalizerFilter(null, Pattern.compile("re(.*)"), ResourceType.DOCUMENT, "filtered-${1}"));
 
         assertEquals(new ResourceReference("filtered-ference", ResourceType.DOCUMENT),
             this.normalizer.normalize(new ResourceReference("reference", ResourceType.DOCUMENT)));
@@ -270,10 +288,40 @@ class LocalURLResourceReferenceNormalizerTest
     @Test
     void normalizeWhenDisablingURLPointsToWikiLink() throws Exception
     {
-        when(this.store.getFilters(null)).thenReturn(Arrays.asList(
+        mockFilters(
             new DefaultURLNormalizerFilter(ResourceType.URL, Pattern.compile("http://my.some.domain/xwiki/bin/view/A/B"),
-                null, null)));
+                null, null));
 
         assertNormalizeWhenURLPointsToWikiLink(false);
     }
+
+    @Test
+    void normalizeWhenAlreadyNormalized() throws Exception
+    {
+        ResourceReference cachedReference = new ResourceReference("A.B", ResourceType.DOCUMENT);
+        cachedReference.setParameter("queryString", "a=b");
+        ResourceReference reference =
+            new ResourceReference("http://my.some.domain/xwiki/bin/view/A/B?a=b", ResourceType.URL);
+        when(this.cache.get(any(), same(reference), eq("xwiki"))).thenReturn(Normalization.converted(cachedReference));
+
+        ResourceReference normalizedReference = this.normalizer.normalize(reference);
+
+        assertEquals(cachedReference, normalizedReference);
+        assertNotSame(cachedReference, normalizedReference);
+        verify(this.store, never()).getFilterMatcher(any());
+        verify(this.localURLValidator, never()).validate(any());
+
+        ResourceReference unchangedReference = new ResourceReference("http://www.xwiki.org", ResourceType.URL);
+        when(this.cache.get(any(), same(unchangedReference), eq("xwiki"))).thenReturn(Normalization.UNCHANGED);
+
+        assertSame(unchangedReference, this.normalizer.normalize(unchangedReference));
+    }
+
+    @Test
+    void normalizeRemembersNormalization() throws Exception
+    {
+        assertNormalizeWhenURLPointsToWikiLink(true);
+
+        verify(this.cache).set(any(), any(ResourceReference.class), eq("xwiki"), anyLong(), any(Normalization.class));
+    }
 }
@@ -20,11 +20,15 @@
 package org.xwiki.contrib.urlnormalizer.internal;
 
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 
 import javax.inject.Named;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
@@ -64,6 +68,20 @@ class LocalURLValidatorTest
     public void beforeEach() throws Exception
     {
         when(this.urlConfiguration.getURLFormatId()).thenReturn("standard");
+
+        LocalHostTable hostTable = new LocalHostTable();
+        ReflectionUtils.setFieldValue(hostTable, "logger", mock(Logger.class));
+        ReflectionUtils.setFieldValue(hostTable, "wikiDescriptorManager", this.wikiDescriptorManager);
+        ReflectionUtils.setFieldValue(hostTable, "configurationSource", this.configurationSource);
+        ReflectionUtils.setFieldValue(this.validator, "hostTable", hostTable);
+    }
+
+    private WikiDescriptor mockDescriptor(String... aliases)
+    {
+        WikiDescriptor wikiDescriptor = mock(WikiDescriptor.class);
+        when(wikiDescriptor.getAliases()).thenReturn(Arrays.asList(aliases));
+
+        return wikiDescriptor;
     }
 
     @Test
@@ -80,10 +98,10 @@ class LocalURLValidatorTest
     @Test
     void validateWithDescriptorWithSecure() throws Exception
     {
-        WikiDescriptor wikiDescriptor = mock(WikiDescriptor.class);
+        WikiDescriptor wikiDescriptor = mockDescriptor("domain");
         when(wikiDescriptor.getPort()).thenReturn(-1);
         when(wikiDescriptor.isSecure()).thenReturn(true);
-        when(this.wikiDescriptorManager.getByAlias("domain")).thenReturn(wikiDescriptor);
+        when(this.wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(wikiDescriptor));
 
         assertTrue(this.validator.validate(new ExtendedURL(new URL("https://domain/xwiki/bin/view/A/B"), "xwiki")));
         assertTrue(this.validator.validate(new ExtendedURL(new URL("https://domain:443/xwiki/bin/view/A/B"), "xwiki")));
@@ -93,10 +111,10 @@ class LocalURLValidatorTest
     @Test
     void validateWithDescriptorWithNotSecure() throws Exception
     {
-        WikiDescriptor wikiDescriptor = mock(WikiDescriptor.class);
+        WikiDescriptor wikiDescriptor = mockDescriptor("domain");
         when(wikiDescriptor.getPort()).thenReturn(-1);
         when(wikiDescriptor.isSecure()).thenReturn(false);
-        when(this.wikiDescriptorManager.getByAlias("domain")).thenReturn(wikiDescriptor);
+        when(this.wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(wikiDescriptor));
 
         assertTrue(this.validator.validate(new ExtendedURL(new URL("http://domain/xwiki/bin/view/A/B"), "xwiki")));
         assertTrue(this.validator.validate(new ExtendedURL(new URL("http://domain:80/xwiki/bin/view/A/B"), "xwiki")));
@@ -106,9 +124,9 @@ class LocalURLValidatorTest
     @Test
     void validateWithDescriptorWithCustomPort() throws Exception
     {
-        WikiDescriptor wikiDescriptor = mock(WikiDescriptor.class);
+        WikiDescriptor wikiDescriptor = mockDescriptor("domain");
         when(wikiDescriptor.getPort()).thenReturn(8080);
-        when(this.wikiDescriptorManager.getByAlias("domain")).thenReturn(wikiDescriptor);
+        when(this.wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(wikiDescriptor));
 
         assertTrue(
             this.validator.validate(new ExtendedURL(new URL("https://domain:8080/xwiki/bin/view/A/B"), "xwiki")));
@@ -162,4 +180,17 @@ class LocalURLValidatorTest
         assertFalse(
             this.validator.validate(new ExtendedURL(new URL("http://otherdomain:8080/xwiki/bin/view/A/B"), "xwiki")));
     }
+
+    @Test
+    void validateWithDescriptorAndConfiguredHomeOnSameDomain() throws Exception
+    {
+        WikiDescriptor wikiDescriptor = mockDescriptor("domain");
+        when(wikiDescriptor.getPort()).thenReturn(8080);
+        when(this.wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(wikiDescriptor));
+        when(this.configurationSource.getProperty("xwiki.home")).thenReturn("http://domain/xwiki/bin/view/A/B");
+
+        // The descriptor takes precedence over the configured home
+        assertTrue(this.validator.validate(new ExtendedURL(new URL("http://domain:8080/xwiki/bin/view/A/B"), "xwiki")));
+        assertFalse(this.validator.validate(new ExtendedURL(new URL("http://domain/xwiki/bin/view/A/B"), "xwiki")));
+    }
 }
@@ -0,0 +1,210 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.contrib.urlnormalizer.ResourceReferenceNormalizer;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link MarkupSplicer}.
+ *
+ * @version $Id$
+ */
+class MarkupSplicerTest
+{
+    private static final String QUERY_STRING = "queryString";
+
+    private BlockRenderer blockRenderer;
+
+    private Parser parser;
+
+    private XDOM xdom;
+
+    private MarkupSplicer splicer;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.blockRenderer = mock(BlockRenderer.class);
+        doAnswer(invocation -> {
+            invocation.<WikiPrinter>getArgument(1).print(markup(invocation.getArgument(0)));
+            return null;
+        }).when(this.blockRenderer).render(any(Block.class), any(WikiPrinter.class));
+
+        this.xdom = new XDOM(Collections.emptyList());
+        this.parser = mock(Parser.class);
+        when(this.parser.parse(any(Reader.class))).thenReturn(new XDOM(Collections.emptyList()));
+
+        this.splicer = new MarkupSplicer(this.blockRenderer);
+    }
+
+    private String markup(Block block)
+    {
+        if (block instanceof LinkBlock) {
+            StringBuilder markup = new StringBuilder("[[");
+            for (Block child : block.getChildren()) {
+                markup.append(markup(child));
+                markup.append(">>");
+            }
+            markup.append(((LinkBlock) block).getReference().getReference());
+            if (block.getParameter(QUERY_STRING) != null) {
+                markup.append("||queryString=\"").append(block.getParameter(QUERY_STRING)).append('"');
+            }
+            markup.append("]]");
+
+            return markup.toString();
+        } else if (block instanceof ImageBlock) {
+            return "[[image:" + ((ImageBlock) block).getReference().getReference() + "]]";
+        }
+
+        return "";
+    }
+
+    private LinkBlock link(String reference, Block... children)
+    {
+        return new LinkBlock(Arrays.asList(children), new ResourceReference(reference, ResourceType.URL), false);
+    }
+
+    private ImageBlock image(String reference)
+    {
+        return new ImageBlock(new ResourceReference(reference, ResourceType.URL), false);
+    }
+
+    @Test
+    void spliceInOrder()
+    {
+        this.splicer.replaced(link("a"), link("x"));
+        this.splicer.replaced(link("b"), link("y"));
+
+        assertEquals("see  [[x]] and [[c]] then [[y]]",
+            this.splicer.splice("see  [[a]] and [[c]] then [[b]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithSameMarkup()
+    {
+        this.splicer.replaced(link("a"), link("x"));
+        this.splicer.replaced(link("a"), link("y"));
+
+        assertEquals("[[x]] and [[y]]", this.splicer.splice("[[a]] and [[a]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithAmbiguousMarkup()
+    {
+        // The first occurrence could be located in a verbatim block
+        this.splicer.replaced(link("a"), link("x"));
+
+        assertNull(this.splicer.splice("{{{[[a]]}}} and [[a]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithQueryString()
+    {
+        Map<String, String> parameters = Collections.singletonMap(QUERY_STRING, "a=b");
+        LinkBlock originalLink =
+            new LinkBlock(Collections.emptyList(), new ResourceReference("url", ResourceType.URL), false, parameters);
+        new ParagraphBlock(Arrays.asList(originalLink));
+        ResourceReferenceNormalizer referenceNormalizer = mock(ResourceReferenceNormalizer.class);
+        ResourceReference newReference = new ResourceReference("doc", ResourceType.DOCUMENT);
+        newReference.setParameter("c", "d");
+        when(referenceNormalizer.normalize(originalLink.getReference())).thenReturn(newReference);
+        LinkXDOMNormalizer linkNormalizer = new LinkXDOMNormalizer();
+        ReflectionUtils.setFieldValue(linkNormalizer, "logger", mock(Logger.class));
+        ReflectionUtils.setFieldValue(linkNormalizer, "resourceReferenceNormalizer", referenceNormalizer);
+        ReflectionUtils.setFieldValue(linkNormalizer, "recorder", mock(URLRewriteRecorder.class));
+
+        Block newLink = linkNormalizer.normalize(originalLink, this.xdom, null, this.blockRenderer);
+        this.splicer.replaced(originalLink, newLink);
+
+        // The original block is not modified by the normalization
+        assertEquals("a=b", originalLink.getParameter(QUERY_STRING));
+        assertEquals("see [[doc||queryString=\"a=b&c=d\"]]",
+            this.splicer.splice("see [[url||queryString=\"a=b\"]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithNestedReplacement()
+    {
+        ImageBlock newImage = image("newimage");
+        LinkBlock newLink = link("newlink", newImage);
+        // Make the new link part of a tree
+        new ParagraphBlock(Arrays.asList(newLink));
+
+        this.splicer.replaced(link("link", image("image")), newLink);
+        this.splicer.replaced(image("image"), newImage);
+
+        assertEquals("before [[[[image:newimage]]>>newlink]] after",
+            this.splicer.splice("before [[[[image:image]]>>link]] after", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithUnknownMarkup()
+    {
+        this.splicer.replaced(link("a"), link("x"));
+
+        assertNull(this.splicer.splice("[[label>>a]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceInVerbatimText() throws ParseException
+    {
+        // The link is written differently than it's rendered and its rendered markup is found in a verbatim text,
+        // which is not parsed as a link
+        when(this.parser.parse(any(Reader.class))).thenReturn(new XDOM(Arrays.asList(new ParagraphBlock(
+            Collections.emptyList()))));
+
+        this.splicer.replaced(link("a"), link("x"));
+
+        assertNull(this.splicer.splice("{{code}}[[a]]{{/code}} [[a||target=_blank]]", this.xdom, this.parser));
+    }
+
+    @Test
+    void spliceWithoutReplacement()
+    {
+        assertNull(this.splicer.splice("[[a]]", this.xdom, this.parser));
+    }
+}
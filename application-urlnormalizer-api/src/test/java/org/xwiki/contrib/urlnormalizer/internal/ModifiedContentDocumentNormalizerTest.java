@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ModifiedContentDocumentNormalizer}.
+ *
+ * @version $Id$
+ */
+public class ModifiedContentDocumentNormalizerTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<ModifiedContentDocumentNormalizer> mocker =
+        new MockitoComponentMockingRule<>(ModifiedContentDocumentNormalizer.class);
+
+    private BlockRenderer blockRenderer;
+
+    private Parser parser;
+
+    private XDOMNormalizer linkXDOMNormalizer;
+
+    private XWikiDocument document;
+
+    private XWikiDocument originalDocument;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.parser = this.mocker.registerMockComponent(Parser.class, Syntax.XWIKI_2_1.toIdString());
+        this.blockRenderer = this.mocker.registerMockComponent(BlockRenderer.class, Syntax.XWIKI_2_1.toIdString());
+        this.linkXDOMNormalizer = this.mocker.registerMockComponent(XDOMNormalizer.class, "link");
+        URLCandidateScanner scanner = this.mocker.registerMockComponent(URLCandidateScanner.class);
+
+        when(scanner.mayContainCandidate(any())).thenReturn(true);
+
+        this.document = URLNormalizationHelper.mockXWikiDocument(new XDOM(Collections.emptyList()));
+        when(this.document.getContent()).thenReturn("[[link>>https://www.xwiki.org]]");
+        when(this.document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+
+        this.originalDocument = mock(XWikiDocument.class);
+        when(this.originalDocument.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        when(this.document.getOriginalDocument()).thenReturn(this.originalDocument);
+    }
+
+    @Test
+    public void normalizeWithUnchangedContent() throws Exception
+    {
+        when(this.originalDocument.getContent()).thenReturn("[[link>>https://www.xwiki.org]]");
+
+        assertFalse(this.mocker.getComponentUnderTest().normalize(this.document, this.parser, this.blockRenderer));
+
+        verify(this.document, never()).getXDOM();
+        verify(this.linkXDOMNormalizer, never()).normalize(any(XDOM.class), any(Parser.class),
+            any(BlockRenderer.class));
+    }
+
+    @Test
+    public void normalizeWithModifiedContent() throws Exception
+    {
+        when(this.originalDocument.getContent()).thenReturn("[[link>>https://www.xwiki.com]]");
+
+        this.mocker.getComponentUnderTest().normalize(this.document, this.parser, this.blockRenderer);
+
+        verify(this.linkXDOMNormalizer).normalize(any(XDOM.class), any(Parser.class), any(BlockRenderer.class));
+    }
+
+    @Test
+    public void normalizeWithModifiedSyntax() throws Exception
+    {
+        when(this.originalDocument.getContent()).thenReturn("[[link>>https://www.xwiki.org]]");
+        when(this.originalDocument.getSyntax()).thenReturn(Syntax.XWIKI_2_0);
+
+        this.mocker.getComponentUnderTest().normalize(this.document, this.parser, this.blockRenderer);
+
+        verify(this.linkXDOMNormalizer).normalize(any(XDOM.class), any(Parser.class), any(BlockRenderer.class));
+    }
+
+    @Test
+    public void normalizeNewDocument() throws Exception
+    {
+        when(this.originalDocument.getContent()).thenReturn("[[link>>https://www.xwiki.org]]");
+        when(this.originalDocument.isNew()).thenReturn(true);
+
+        this.mocker.getComponentUnderTest().normalize(this.document, this.parser, this.blockRenderer);
+
+        verify(this.linkXDOMNormalizer).normalize(any(XDOM.class), any(Parser.class), any(BlockRenderer.class));
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Collections;
 
 import javax.inject.Named;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -84,9 +85,18 @@ class ModifiedObjectDocumentNormalizerTest
     @Named("macro")
     private XDOMNormalizer macroXDOMNormalizer;
 
+    @MockComponent
+    private URLCandidateScanner scanner;
+
     @Mock
     private XWikiContext context;
 
+    @BeforeEach
+    void beforeEach()
+    {
+        when(this.scanner.mayContainCandidate(any())).thenReturn(true);
+    }
+
     /**
      * Associate an {@link ObjectDiff} with a related {@link BaseObject} to the given {@link XWikiDocument} in order to
      * test {@link ModifiedObjectDocumentNormalizer#normalize(XWikiDocument, Parser, BlockRenderer)}.
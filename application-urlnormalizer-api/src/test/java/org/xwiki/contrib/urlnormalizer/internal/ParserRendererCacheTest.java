@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.urlnormalizer.internal.ParserRendererCache.ParserRenderer;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ParserRendererCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ParserRendererCacheTest
+{
+    private static final String SYNTAX = "xwiki/2.1";
+
+    private static final String UNSUPPORTED_SYNTAX = "plain/1.0";
+
+    @MockComponent
+    private ComponentManager componentManager;
+
+    @InjectMockComponents
+    private ParserRendererCache cache;
+
+    private Parser parser;
+
+    private BlockRenderer blockRenderer;
+
+    private DefaultComponentDescriptor<Parser> parserDescriptor;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.parser = mock(Parser.class);
+        this.blockRenderer = mock(BlockRenderer.class);
+
+        this.parserDescriptor = new DefaultComponentDescriptor<>();
+        this.parserDescriptor.setInstantiationStrategy(ComponentInstantiationStrategy.SINGLETON);
+        DefaultComponentDescriptor<BlockRenderer> rendererDescriptor = new DefaultComponentDescriptor<>();
+        rendererDescriptor.setInstantiationStrategy(ComponentInstantiationStrategy.SINGLETON);
+
+        when(this.componentManager.getComponentDescriptor(Parser.class, SYNTAX)).thenReturn(this.parserDescriptor);
+        when(this.componentManager.getComponentDescriptor(BlockRenderer.class, SYNTAX))
+            .thenReturn(rendererDescriptor);
+        when(this.componentManager.getInstance(Parser.class, SYNTAX)).thenReturn(this.parser);
+        when(this.componentManager.getInstance(BlockRenderer.class, SYNTAX)).thenReturn(this.blockRenderer);
+        when(this.componentManager.getComponentDescriptor(Parser.class, UNSUPPORTED_SYNTAX))
+            .thenReturn(new DefaultComponentDescriptor<>());
+    }
+
+    @Test
+    void get() throws Exception
+    {
+        ParserRenderer parserRenderer = this.cache.get(SYNTAX);
+
+        assertSame(this.parser, parserRenderer.getParser());
+        assertSame(this.blockRenderer, parserRenderer.getBlockRenderer());
+        assertSame(parserRenderer, this.cache.get(SYNTAX));
+
+        verify(this.componentManager).getInstance(Parser.class, SYNTAX);
+    }
+
+    @Test
+    void getPerLookup() throws Exception
+    {
+        this.parserDescriptor.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+
+        assertSame(this.parser, this.cache.get(SYNTAX).getParser());
+        assertSame(this.parser, this.cache.get(SYNTAX).getParser());
+
+        // The descriptors are cached but a new instance is requested for each call
+        verify(this.componentManager).getComponentDescriptor(Parser.class, SYNTAX);
+        verify(this.componentManager, times(2)).getInstance(Parser.class, SYNTAX);
+        verify(this.componentManager, times(2)).getInstance(BlockRenderer.class, SYNTAX);
+    }
+
+    @Test
+    void getUnsupported() throws Exception
+    {
+        assertNull(this.cache.get(UNSUPPORTED_SYNTAX));
+        assertNull(this.cache.get(UNSUPPORTED_SYNTAX));
+
+        verify(this.componentManager).getComponentDescriptor(BlockRenderer.class, UNSUPPORTED_SYNTAX);
+    }
+
+    @Test
+    void invalidate() throws Exception
+    {
+        this.cache.get(SYNTAX);
+        this.cache.invalidate();
+        this.cache.get(SYNTAX);
+
+        verify(this.componentManager, times(2)).getInstance(Parser.class, SYNTAX);
+    }
+
+    @Test
+    void invalidateDuringGet() throws Exception
+    {
+        when(this.componentManager.getInstance(Parser.class, SYNTAX)).then(invocation -> {
+            // Simulate a parser being registered while the previous one is being looked up
+            this.cache.invalidate();
+
+            return this.parser;
+        }).thenReturn(this.parser);
+
+        this.cache.get(SYNTAX);
+        this.cache.get(SYNTAX);
+
+        // The entry computed before the invalidation must not be reused
+        verify(this.componentManager, times(2)).getInstance(Parser.class, SYNTAX);
+    }
+}
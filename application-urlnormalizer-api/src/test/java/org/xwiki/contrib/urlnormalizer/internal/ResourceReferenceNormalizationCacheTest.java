@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache.Normalization;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ResourceReferenceNormalizationCache}.
+ *
+ * @version $Id$
+ */
+class ResourceReferenceNormalizationCacheTest
+{
+    private static final ResourceReference REFERENCE = new ResourceReference("http://host/", ResourceType.URL);
+
+    private final Map<String, Normalization> values = new ConcurrentHashMap<>();
+
+    private ResourceReferenceNormalizationCache cache;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        Cache<Normalization> storage = mock(Cache.class);
+        when(storage.get(anyString())).thenAnswer(invocation -> this.values.get(invocation.getArgument(0)));
+        doAnswer(invocation -> this.values.put(invocation.getArgument(0), invocation.getArgument(1))).when(storage)
+            .set(anyString(), any());
+        doAnswer(invocation -> this.values.remove(invocation.getArgument(0))).when(storage).remove(anyString());
+        doAnswer(invocation -> {
+            this.values.clear();
+            return null;
+        }).when(storage).removeAll();
+
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.<Normalization>createNewCache(any())).thenReturn(storage);
+
+        this.cache = new ResourceReferenceNormalizationCache();
+        ReflectionUtils.setFieldValue(this.cache, "cacheManager", cacheManager);
+        this.cache.initialize();
+    }
+
+    @Test
+    void set()
+    {
+        this.cache.set("wiki", REFERENCE, "xwiki", this.cache.getGeneration(), Normalization.UNCHANGED);
+
+        assertSame(Normalization.UNCHANGED, this.cache.get("wiki", REFERENCE, "xwiki"));
+        assertNull(this.cache.get("otherwiki", REFERENCE, "xwiki"));
+        assertNull(this.cache.get("wiki", REFERENCE, null));
+    }
+
+    @Test
+    void setAfterInvalidate()
+    {
+        // The normalization is computed before the configuration changes
+        long generation = this.cache.getGeneration();
+        assertNull(this.cache.get("wiki", REFERENCE, "xwiki"));
+
+        this.cache.invalidate();
+
+        this.cache.set("wiki", REFERENCE, "xwiki", generation, Normalization.UNCHANGED);
+
+        assertNull(this.cache.get("wiki", REFERENCE, "xwiki"));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.DefaultURLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link URLCandidateScanner} and {@link PatternUtils}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class URLCandidateScannerTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    @MockComponent
+    private URLNormalizerConfigurationStore store;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    private LocalHostTable hostTable;
+
+    @InjectMockComponents
+    private URLCandidateScanner scanner;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        when(this.wikiDescriptorManager.getCurrentWikiReference()).thenReturn(WIKI);
+
+        when(this.hostTable.getHosts())
+            .thenReturn(new HashSet<>(Arrays.asList("wiki.example.org", "alias.example.org", "home.example.org")));
+        when(this.store.getFilters(WIKI)).thenReturn(Collections.emptyList());
+    }
+
+    private URLNormalizerFilter filter(String regex, ResourceType targetType)
+    {
+        return new DefaultURLNormalizerFilter(ResourceType.URL, Pattern.compile(regex), targetType, "Space.Page");
+    }
+
+    @Test
+    void mayContainCandidateWithHosts()
+    {
+        assertTrue(this.scanner.mayContainCandidate("[[https://WIKI.example.org/xwiki/bin/view/A/B]]"));
+        assertTrue(this.scanner.mayContainCandidate("[[label>>http://alias.example.org/]]"));
+        assertTrue(this.scanner.mayContainCandidate("https://home.example.org:8080/xwiki/bin/view/A/B"));
+
+        assertFalse(this.scanner.mayContainCandidate("[[https://www.xwiki.org/xwiki/bin/view/A/B]]"));
+        assertFalse(this.scanner.mayContainCandidate(""));
+        assertFalse(this.scanner.mayContainCandidate(null));
+    }
+
+    @Test
+    void mayContainCandidateWithEscapedContent()
+    {
+        assertTrue(this.scanner.mayContainCandidate("https://wiki.exa~mple.org"));
+    }
+
+    @Test
+    void mayContainCandidateWithFilters() throws Exception
+    {
+        List<URLNormalizerFilter> filters = Arrays.asList(filter("https://jira\\.example\\.org/browse/(.*)",
+            ResourceType.DOCUMENT), filter(".*", null));
+        when(this.store.getFilters(WIKI)).thenReturn(filters);
+
+        assertTrue(this.scanner.mayContainCandidate("[[https://jira.example.org/browse/ISSUE-1]]"));
+        assertFalse(this.scanner.mayContainCandidate("[[https://www.xwiki.org]]"));
+
+        // Filters without any literal prefix can match anything
+        filters = Arrays.asList(filter("(https?)://jira\\.example\\.org/browse/(.*)", ResourceType.DOCUMENT));
+        when(this.store.getFilters(WIKI)).thenReturn(filters);
+
+        assertTrue(this.scanner.mayContainCandidate("[[https://www.xwiki.org]]"));
+    }
+
+    @Test
+    void mayContainCandidateAfterHostsInvalidation() throws Exception
+    {
+        assertFalse(this.scanner.mayContainCandidate("[[https://new.example.org]]"));
+
+        // The host table returns a new set once invalidated
+        when(this.hostTable.getHosts()).thenReturn(Collections.singleton("new.example.org"));
+
+        assertTrue(this.scanner.mayContainCandidate("[[https://new.example.org]]"));
+    }
+
+    @Test
+    void mayContainCandidateWhenHostsFail() throws Exception
+    {
+        when(this.hostTable.getHosts()).thenThrow(new WikiManagerException("error"));
+
+        assertTrue(this.scanner.mayContainCandidate("[[https://www.xwiki.org]]"));
+    }
+
+    @Test
+    void getLiteralPrefix()
+    {
+        assertEquals("https://jira.example.org/browse/",
+            PatternUtils.getLiteralPrefix(Pattern.compile("https://jira\\.example\\.org/browse/(.*)")));
+        assertEquals("http", PatternUtils.getLiteralPrefix(Pattern.compile("^https?://.*")));
+        assertEquals("a+b", PatternUtils.getLiteralPrefix(Pattern.compile("a+b", Pattern.LITERAL)));
+        assertEquals("Space", PatternUtils.getLiteralPrefix(Pattern.compile("Space\\d+")));
+        assertEquals("", PatternUtils.getLiteralPrefix(Pattern.compile("a.*|b.*")));
+        assertEquals("a", PatternUtils.getLiteralPrefix(Pattern.compile("a(b|c)")));
+        assertEquals("", PatternUtils.getLiteralPrefix(Pattern.compile("[ab]c")));
+    }
+}
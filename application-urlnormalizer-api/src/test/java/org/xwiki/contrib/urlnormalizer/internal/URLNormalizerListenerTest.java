@@ -21,15 +21,25 @@ package org.xwiki.contrib.urlnormalizer.internal;
 
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.contrib.urlnormalizer.DocumentNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 import org.xwiki.rendering.parser.Parser;
 import org.xwiki.rendering.renderer.BlockRenderer;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for {@link URLNormalizerListener}.
@@ -43,8 +53,12 @@ public class URLNormalizerListenerTest
     public final MockitoComponentMockingRule<URLNormalizerListener> mocker =
         new MockitoComponentMockingRule<>(URLNormalizerListener.class);
 
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "Space", "Page");
+
     private XWikiContext context;
 
+    private XWikiDocument document;
+
     private BlockRenderer blockRenderer;
 
     private Parser parser;
@@ -63,6 +77,46 @@ public class URLNormalizerListenerTest
             this.mocker.registerMockComponent(DocumentNormalizer.class, "object/modified");
 
         this.context = mock(XWikiContext.class);
+
+        URLNormalizerConfigurationStore store = this.mocker.getInstance(URLNormalizerConfigurationStore.class);
+        when(store.isEnabled(DOCUMENT.getWikiReference())).thenReturn(true);
+        when(store.isAsynchronous(DOCUMENT.getWikiReference())).thenReturn(true);
+
+        this.document = mock(XWikiDocument.class);
+        when(this.document.getDocumentReference()).thenReturn(DOCUMENT);
+        when(this.document.getDocumentReferenceWithLocale()).thenReturn(DOCUMENT);
+    }
+
+    @Test
+    public void onEventAsynchronous() throws Exception
+    {
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), this.document, new XWikiContext());
+
+        verify(this.mocker.getInstance(AsynchronousURLNormalizer.class)).normalize(DOCUMENT);
+    }
+
+    @Test
+    public void onRemoteEvent() throws Exception
+    {
+        RemoteObservationManagerContext remoteContext =
+            this.mocker.getInstance(RemoteObservationManagerContext.class);
+        when(remoteContext.isRemoteState()).thenReturn(true);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), this.document, new XWikiContext());
+
+        // The member which saved the document normalizes it
+        verify(this.mocker.getInstance(AsynchronousURLNormalizer.class), never()).normalize(any());
+    }
+
+    @Test
+    public void onNormalizedDocumentSave() throws Exception
+    {
+        XWikiContext xcontext = new XWikiContext();
+        xcontext.put(DefaultURLNormalizationManager.CONTEXT_SAVING, Boolean.TRUE);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), this.document, xcontext);
+
+        verify(this.mocker.getInstance(AsynchronousURLNormalizer.class), never()).normalize(any());
     }
 
     /**
@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.DefaultURLNormalizerFilter;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link URLNormalizerMetrics}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class URLNormalizerMetricsTest
+{
+    @MockComponent
+    private JMXBeanRegistration jmxRegistration;
+
+    @InjectMockComponents
+    private URLNormalizerMetrics metrics;
+
+    @Test
+    void registerMBean()
+    {
+        verify(this.jmxRegistration).registerMBean(this.metrics, URLNormalizerMetrics.MBEAN_NAME);
+    }
+
+    @Test
+    void documents()
+    {
+        this.metrics.documentProcessed(true);
+        this.metrics.documentProcessed(false);
+        this.metrics.documentProcessed(false);
+
+        assertEquals(3, this.metrics.getDocumentsProcessed());
+        assertEquals(1, this.metrics.getDocumentsModified());
+    }
+
+    @Test
+    void timers()
+    {
+        this.metrics.parsed(TimeUnit.MILLISECONDS.toNanos(2));
+        this.metrics.parsed(TimeUnit.MILLISECONDS.toNanos(3));
+        this.metrics.normalized(TimeUnit.MILLISECONDS.toNanos(4));
+        this.metrics.normalizerApplied("content", TimeUnit.MILLISECONDS.toNanos(7));
+        this.metrics.normalizerApplied("content", TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(2, this.metrics.getParseCount());
+        assertEquals(5, this.metrics.getParseTime());
+        assertEquals(1, this.metrics.getNormalizeCount());
+        assertEquals(4, this.metrics.getNormalizeTime());
+        assertEquals(0, this.metrics.getRenderCount());
+        assertEquals(0, this.metrics.getRenderTime());
+        assertEquals(Collections.singletonMap("content", 2L), this.metrics.getNormalizerCounts());
+        assertEquals(Collections.singletonMap("content", 8L), this.metrics.getNormalizerTimes());
+    }
+
+    @Test
+    void filterHitsAndCache()
+    {
+        URLNormalizerFilter filter = new DefaultURLNormalizerFilter(ResourceType.URL,
+            Pattern.compile("https://jira\\.example\\.org/(.*)"), ResourceType.DOCUMENT, "Jira.${1}");
+
+        this.metrics.filterHit(filter);
+        this.metrics.filterHit(filter);
+        this.metrics.referenceCacheAccessed(true);
+        this.metrics.referenceCacheAccessed(true);
+        this.metrics.referenceCacheAccessed(true);
+        this.metrics.referenceCacheAccessed(false);
+
+        assertEquals(Collections.singletonMap("https://jira\\.example\\.org/(.*)", 2L), this.metrics.getFilterHits());
+        assertEquals(3, this.metrics.getReferenceCacheHits());
+        assertEquals(1, this.metrics.getReferenceCacheMisses());
+        assertEquals(0.75, this.metrics.getReferenceCacheHitRate(), 0);
+    }
+
+    @Test
+    void reset()
+    {
+        assertEquals(0, this.metrics.getReferenceCacheHitRate(), 0);
+
+        this.metrics.documentProcessed(true);
+        this.metrics.rendered(10);
+        this.metrics.normalizerApplied("object", 10);
+        this.metrics.referenceCacheAccessed(true);
+
+        this.metrics.reset();
+
+        assertEquals(0, this.metrics.getDocumentsProcessed());
+        assertEquals(0, this.metrics.getDocumentsModified());
+        assertEquals(0, this.metrics.getRenderCount());
+        assertEquals(Collections.emptyMap(), this.metrics.getNormalizerCounts());
+        assertEquals(0, this.metrics.getReferenceCacheHits());
+        assertEquals(0, this.metrics.getReferenceCacheHitRate(), 0);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.ObjectPropertyReference;
+import org.xwiki.model.reference.ObjectReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link URLRewriteRecorder}.
+ *
+ * @version $Id$
+ */
+class URLRewriteRecorderTest
+{
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "Space", "Page");
+
+    private static final ResourceReference OLD_REFERENCE =
+        new ResourceReference("http://wiki.example.org/xwiki/bin/view/Space/Target", ResourceType.URL);
+
+    private static final ResourceReference NEW_REFERENCE = new ResourceReference("Space.Target", ResourceType.DOCUMENT);
+
+    private final URLRewriteRecorder recorder = new URLRewriteRecorder();
+
+    @Test
+    void record()
+    {
+        List<URLRewrite> rewrites = new ArrayList<>();
+        this.recorder.start(DOCUMENT, rewrites::add);
+
+        this.recorder.rewritten(OLD_REFERENCE, NEW_REFERENCE);
+
+        ObjectPropertyReference property =
+            new ObjectPropertyReference("content", new ObjectReference("Space.Class[0]", DOCUMENT));
+        this.recorder.setLocation(property);
+        this.recorder.setFilter("pattern");
+        this.recorder.rewritten(OLD_REFERENCE, NEW_REFERENCE);
+
+        this.recorder.stop();
+        this.recorder.rewritten(OLD_REFERENCE, NEW_REFERENCE);
+
+        assertEquals(2, rewrites.size());
+
+        URLRewrite rewrite = rewrites.get(0);
+        assertEquals(DOCUMENT, rewrite.getDocument());
+        assertEquals(DOCUMENT, rewrite.getLocation());
+        assertSame(OLD_REFERENCE, rewrite.getOldReference());
+        assertSame(NEW_REFERENCE, rewrite.getNewReference());
+        assertNull(rewrite.getFilter());
+
+        rewrite = rewrites.get(1);
+        assertEquals(property, rewrite.getLocation());
+        assertEquals("pattern", rewrite.getFilter());
+    }
+
+    @Test
+    void recordOnlyInTheStartingThread() throws Exception
+    {
+        List<URLRewrite> rewrites = new ArrayList<>();
+        this.recorder.start(DOCUMENT, rewrites::add);
+
+        Thread thread = new Thread(() -> this.recorder.rewritten(OLD_REFERENCE, NEW_REFERENCE));
+        thread.start();
+        thread.join();
+
+        this.recorder.stop();
+
+        assertTrue(rewrites.isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link TargetReferenceTemplate}.
+ *
+ * @version $Id$
+ */
+class TargetReferenceTemplateTest
+{
+    private static String render(String template, String regex, String reference)
+    {
+        Matcher matcher = Pattern.compile(regex).matcher(reference);
+        matcher.matches();
+
+        return new TargetReferenceTemplate(template).render(matcher);
+    }
+
+    @Test
+    void render()
+    {
+        String regex = "https://(?<host>[^/]*)/(\\w+)/(\\w+)(/(\\w+))?";
+
+        assertEquals("Space.Page", render("Space.Page", regex, "https://host/space/page"));
+        assertEquals("space.page@host", render("${2}.${3}@${host}", regex, "https://host/space/page"));
+        assertEquals("https://host/space/page", render("${0}", regex, "https://host/space/page"));
+        assertEquals("xspacex${", render("x${2}x${", regex, "https://host/space/page"));
+        assertEquals("${2}.page", render("$${2}.${3}", regex, "https://host/space/page"));
+        assertNull(new TargetReferenceTemplate(null).render(null));
+    }
+
+    @Test
+    void renderWithDefaultValue()
+    {
+        String regex = "(?<space>\\w+)(\\.(?<page>\\w+))?";
+
+        assertEquals("Space.WebHome", render("${space}.${page:-WebHome}", regex, "Space"));
+        assertEquals("Space.Page", render("${space}.${page:-WebHome}", regex, "Space.Page"));
+        assertEquals("Space.${page}", render("${space}.${page}", regex, "Space"));
+    }
+
+    @Test
+    void renderWithVariableInDefaultValue()
+    {
+        // The default value is substituted too
+        assertEquals("a", render("${x:-${1}}", "(\\w+)(?<x>-\\w+)?", "a"));
+    }
+
+    @Test
+    void renderWithValueContainingVariable()
+    {
+        // Values are substituted too
+        assertEquals("b", render("${1}", "(.*)-(\\w+)", "${2}-b"));
+    }
+
+    @Test
+    void renderWithUnknownGroup()
+    {
+        assertThrows(IllegalArgumentException.class, () -> render("${unknown}", "(\\w+)", "a"));
+        assertThrows(IllegalArgumentException.class, () -> render("${2}", "(\\w+)", "a"));
+    }
+}
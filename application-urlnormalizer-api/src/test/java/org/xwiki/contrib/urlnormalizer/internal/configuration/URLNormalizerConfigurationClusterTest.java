@@ -0,0 +1,291 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Make sure the configuration changes are propagated between the members of a cluster, using two in-process members
+ * whose observation managers forward the events to each other.
+ *
+ * @version $Id$
+ */
+class URLNormalizerConfigurationClusterTest
+{
+    private static final WikiReference WIKI = new WikiReference("xwiki");
+
+    private static final DocumentReference CONFIGURATION =
+        new DocumentReference("xwiki", Arrays.asList("URLNormalizer", "Code"), "Configuration");
+
+    /**
+     * The configuration page, shared by the members as if it was stored in the same database.
+     */
+    private final XWikiDocument configurationDocument = mock(XWikiDocument.class);
+
+    private Member member1;
+
+    private Member member2;
+
+    /**
+     * A member of the cluster.
+     */
+    private final class Member
+    {
+        private final XWiki xwiki = mock(XWiki.class);
+
+        private final XWikiContext xcontext = mock(XWikiContext.class);
+
+        private final ObservationManager observationManager = mock(ObservationManager.class);
+
+        private final ResourceReferenceNormalizationCache referenceCache =
+            mock(ResourceReferenceNormalizationCache.class);
+
+        private final URLNormalizerConfigurationStore store = new URLNormalizerConfigurationStore();
+
+        private final URLNormalizerConfigurationVersionListener listener =
+            new URLNormalizerConfigurationVersionListener();
+
+        private final URLNormalizerConfigurationInvalidationListener invalidationListener =
+            new URLNormalizerConfigurationInvalidationListener();
+
+        private boolean remoteState;
+
+        Member() throws Exception
+        {
+            when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+            when(this.xcontext.getMainXWiki()).thenReturn(WIKI.getName());
+            when(this.xcontext.isMainWiki(WIKI.getName())).thenReturn(true);
+            when(this.xwiki.getDocument(CONFIGURATION, this.xcontext))
+                .thenReturn(URLNormalizerConfigurationClusterTest.this.configurationDocument);
+            Provider<XWikiContext> xcontextProvider = mock(Provider.class);
+            when(xcontextProvider.get()).thenReturn(this.xcontext);
+            Provider<ObservationManager> observationManagerProvider = mock(Provider.class);
+            when(observationManagerProvider.get()).thenReturn(this.observationManager);
+
+            CacheManager cacheManager = mock(CacheManager.class);
+            when(cacheManager.createNewCache(any())).thenAnswer(invocation -> mockCache());
+
+            ReflectionUtils.setFieldValue(this.store, "xcontextProvider", xcontextProvider);
+            ReflectionUtils.setFieldValue(this.store, "cacheManager", cacheManager);
+            ReflectionUtils.setFieldValue(this.store, "observationManagerProvider", observationManagerProvider);
+            ReflectionUtils.setFieldValue(this.store, "logger", mock(Logger.class));
+            ConfigurationSource configuration = mock(ConfigurationSource.class);
+            when(configuration.getProperty(URLNormalizerConfigurationStore.PROPERTY_CACHE_CAPACITY,
+                URLNormalizerConfigurationStore.DEFAULT_CACHE_CAPACITY))
+                    .thenReturn(URLNormalizerConfigurationStore.DEFAULT_CACHE_CAPACITY);
+            ReflectionUtils.setFieldValue(this.store, "configuration", configuration);
+            this.store.initialize();
+
+            RemoteObservationManagerContext remoteContext = mock(RemoteObservationManagerContext.class);
+            when(remoteContext.isRemoteState()).thenAnswer(invocation -> this.remoteState);
+
+            ReflectionUtils.setFieldValue(this.listener, "store", this.store);
+            ReflectionUtils.setFieldValue(this.listener, "referenceCache", this.referenceCache);
+            ReflectionUtils.setFieldValue(this.listener, "remoteContext", remoteContext);
+            ReflectionUtils.setFieldValue(this.invalidationListener, "store", this.store);
+            ReflectionUtils.setFieldValue(this.invalidationListener, "referenceCache", this.referenceCache);
+            ReflectionUtils.setFieldValue(this.invalidationListener, "remoteContext", remoteContext);
+        }
+
+        /**
+         * Forward the events sent by this member to the other member, as the remote observation manager would do.
+         */
+        void connect(Member other)
+        {
+            doAnswer(invocation -> {
+                other.receive(invocation.getArgument(0), invocation.getArgument(1));
+                return null;
+            }).when(this.observationManager).notify(any(), any());
+        }
+
+        void receive(Event event, Object source)
+        {
+            this.remoteState = true;
+            try {
+                if (event instanceof URLNormalizerConfigurationChangedEvent) {
+                    this.listener.onEvent(event, source, null);
+                } else {
+                    this.invalidationListener.onEvent(event, source, null);
+                }
+            } finally {
+                this.remoteState = false;
+            }
+        }
+    }
+
+    private static Cache<Object> mockCache()
+    {
+        Map<String, Object> values = new ConcurrentHashMap<>();
+
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).thenAnswer(invocation -> values.get(invocation.getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        doAnswer(invocation -> values.remove(invocation.getArgument(0))).when(cache).remove(anyString());
+        doAnswer(invocation -> {
+            values.clear();
+            return null;
+        }).when(cache).removeAll();
+
+        return cache;
+    }
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        when(this.configurationDocument.getDocumentReference()).thenReturn(CONFIGURATION);
+        setFilters("http://main/(.*)");
+
+        this.member1 = new Member();
+        this.member2 = new Member();
+        this.member1.connect(this.member2);
+        this.member2.connect(this.member1);
+    }
+
+    private void setFilters(String... patterns)
+    {
+        List<BaseObject> filterObjects = new ArrayList<>();
+        for (String pattern : patterns) {
+            BaseObject filterObject = mock(BaseObject.class);
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_LINK_TYPE)).thenReturn("url");
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_LINK_REFERENCE))
+                .thenReturn(pattern);
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_TARGET_TYPE)).thenReturn("doc");
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_TARGET_REFERENCE))
+                .thenReturn("Space.${1}");
+            filterObjects.add(filterObject);
+        }
+
+        when(this.configurationDocument.getXObjects(URLNormalizerFilterClassInitializer.CLASS_REFERENCE))
+            .thenReturn(filterObjects);
+    }
+
+    @Test
+    void propagateChange() throws Exception
+    {
+        assertEquals(1, this.member1.store.getFilters(WIKI).size());
+        assertEquals(1, this.member2.store.getFilters(WIKI).size());
+        assertEquals(0, this.member1.store.getVersion(WIKI));
+
+        // The configuration is modified on the first member
+        setFilters("http://main/(.*)", "http://other/(.*)");
+        this.member1.store.invalidate(WIKI.getName());
+
+        long version = this.member1.store.getVersion(WIKI);
+        assertTrue(version > 0);
+        verify(this.member2.referenceCache).invalidate();
+
+        // The second member reloads the configuration only when it needs it
+        verify(this.member2.xwiki, times(1)).getDocument(CONFIGURATION, this.member2.xcontext);
+        assertEquals(2, this.member2.store.getFilters(WIKI).size());
+        assertEquals(version, this.member2.store.getVersion(WIKI));
+        verify(this.member2.xwiki, times(2)).getDocument(CONFIGURATION, this.member2.xcontext);
+
+        // The first member is not notified back
+        verify(this.member1.referenceCache, times(0)).invalidate();
+
+        // A change with an older version (e.g. made by a restarted member) is not lost, but doesn't lower the version
+        this.member2.receive(new URLNormalizerConfigurationChangedEvent(WIKI.getName(), version - 1), null);
+        assertEquals(2, this.member2.store.getFilters(WIKI).size());
+        verify(this.member2.xwiki, times(3)).getDocument(CONFIGURATION, this.member2.xcontext);
+        assertEquals(version, this.member2.store.getVersion(WIKI));
+    }
+
+    @Test
+    void remoteDocumentEventAfterChange() throws Exception
+    {
+        assertEquals(1, this.member2.store.getFilters(WIKI).size());
+
+        // The second member still has the previous configuration page in its document cache
+        List<BaseObject> previousFilters =
+            this.configurationDocument.getXObjects(URLNormalizerFilterClassInitializer.CLASS_REFERENCE);
+        XWikiDocument previousDocument = mock(XWikiDocument.class);
+        when(previousDocument.getXObjects(URLNormalizerFilterClassInitializer.CLASS_REFERENCE))
+            .thenReturn(previousFilters);
+        when(this.member2.xwiki.getDocument(CONFIGURATION, this.member2.xcontext)).thenReturn(previousDocument);
+
+        setFilters("http://main/(.*)", "http://other/(.*)");
+        this.member1.store.invalidate(WIKI.getName());
+
+        // The configuration change is received before the document cache is updated
+        assertEquals(1, this.member2.store.getFilters(WIKI).size());
+
+        // The forwarded document event drops the configuration loaded from the outdated document
+        when(this.member2.xwiki.getDocument(CONFIGURATION, this.member2.xcontext))
+            .thenReturn(this.configurationDocument);
+        this.member2.receive(new DocumentUpdatedEvent(CONFIGURATION), this.configurationDocument);
+
+        assertEquals(2, this.member2.store.getFilters(WIKI).size());
+        assertEquals(this.member1.store.getVersion(WIKI), this.member2.store.getVersion(WIKI));
+
+        // The second member doesn't notify the first one again
+        verify(this.member2.observationManager, times(0)).notify(any(), any());
+    }
+
+    @Test
+    void changesOnBothMembers() throws Exception
+    {
+        this.member1.store.invalidate(WIKI.getName());
+        long version1 = this.member1.store.getVersion(WIKI);
+
+        this.member2.store.invalidate(WIKI.getName());
+        long version2 = this.member2.store.getVersion(WIKI);
+
+        // The second modification wins on both members
+        assertTrue(version2 > version1);
+        assertEquals(version2, this.member1.store.getVersion(WIKI));
+    }
+}
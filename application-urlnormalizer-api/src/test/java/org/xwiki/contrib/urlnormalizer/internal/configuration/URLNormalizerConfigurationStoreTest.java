@@ -0,0 +1,325 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link URLNormalizerConfigurationStore}.
+ *
+ * @version $Id$
+ */
+class URLNormalizerConfigurationStoreTest
+{
+    private static final long TIMEOUT = 10000;
+
+    private static final WikiReference MAIN_WIKI = new WikiReference("xwiki");
+
+    private static final WikiReference SUB_WIKI = new WikiReference("subwiki");
+
+    private static final DocumentReference MAIN_CONFIGURATION =
+        new DocumentReference("xwiki", Arrays.asList("URLNormalizer", "Code"), "Configuration");
+
+    private static final DocumentReference SUB_CONFIGURATION =
+        new DocumentReference("subwiki", Arrays.asList("URLNormalizer", "Code"), "Configuration");
+
+    private final Map<String, Map<String, Object>> cachedValues = new ConcurrentHashMap<>();
+
+    private final XWiki xwiki = mock(XWiki.class);
+
+    private final XWikiContext xcontext = mock(XWikiContext.class);
+
+    private final ObservationManager observationManager = mock(ObservationManager.class);
+
+    private final ConfigurationSource configuration = mock(ConfigurationSource.class);
+
+    private URLNormalizerConfigurationStore store;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.createNewCache(any())).thenAnswer(
+            invocation -> mockCache(invocation.<CacheConfiguration>getArgument(0).getConfigurationId()));
+
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+        when(this.xcontext.getMainXWiki()).thenReturn(MAIN_WIKI.getName());
+        when(this.xcontext.isMainWiki(anyString()))
+            .thenAnswer(invocation -> MAIN_WIKI.getName().equals(invocation.getArgument(0)));
+        Provider<XWikiContext> xcontextProvider = mock(Provider.class);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        this.store = new URLNormalizerConfigurationStore();
+        ReflectionUtils.setFieldValue(this.store, "xcontextProvider", xcontextProvider);
+        ReflectionUtils.setFieldValue(this.store, "cacheManager", cacheManager);
+        Provider<ObservationManager> observationManagerProvider = mock(Provider.class);
+        when(observationManagerProvider.get()).thenReturn(this.observationManager);
+        ReflectionUtils.setFieldValue(this.store, "observationManagerProvider", observationManagerProvider);
+        ReflectionUtils.setFieldValue(this.store, "logger", mock(Logger.class));
+        ReflectionUtils.setFieldValue(this.store, "configuration", this.configuration);
+        when(this.configuration.getProperty(URLNormalizerConfigurationStore.PROPERTY_CACHE_CAPACITY,
+            URLNormalizerConfigurationStore.DEFAULT_CACHE_CAPACITY)).thenReturn(200);
+        this.store.initialize();
+    }
+
+    private Cache<Object> mockCache(String name)
+    {
+        Map<String, Object> values = new ConcurrentHashMap<>();
+        this.cachedValues.put(name, values);
+
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).thenAnswer(invocation -> values.get(invocation.getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        doAnswer(invocation -> values.remove(invocation.getArgument(0))).when(cache).remove(anyString());
+        doAnswer(invocation -> {
+            values.clear();
+            return null;
+        }).when(cache).removeAll();
+
+        return cache;
+    }
+
+    private XWikiDocument mockConfiguration(DocumentReference reference, String... patterns) throws Exception
+    {
+        List<BaseObject> filterObjects = new ArrayList<>();
+        for (String pattern : patterns) {
+            BaseObject filterObject = mock(BaseObject.class);
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_LINK_TYPE)).thenReturn("url");
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_LINK_REFERENCE))
+                .thenReturn(pattern);
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_TARGET_TYPE)).thenReturn("doc");
+            when(filterObject.getStringValue(URLNormalizerFilterClassInitializer.FIELD_TARGET_REFERENCE))
+                .thenReturn("Space.${1}");
+            filterObjects.add(filterObject);
+        }
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getXObjects(URLNormalizerFilterClassInitializer.CLASS_REFERENCE)).thenReturn(filterObjects);
+        when(this.xwiki.getDocument(reference, this.xcontext)).thenReturn(document);
+
+        return document;
+    }
+
+    @Test
+    void getCacheCapacity()
+    {
+        assertEquals(200, this.store.getCacheCapacity());
+    }
+
+    @Test
+    void getFiltersInheritsMainWikiFilters() throws Exception
+    {
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+        mockConfiguration(SUB_CONFIGURATION, "http://sub/(.*)");
+
+        List<URLNormalizerFilter> filters = this.store.getFilters(SUB_WIKI);
+
+        assertEquals(2, filters.size());
+        assertEquals("http://sub/(.*)", filters.get(0).getLinkReference().pattern());
+        assertEquals("http://main/(.*)", filters.get(1).getLinkReference().pattern());
+        assertThrows(UnsupportedOperationException.class, () -> filters.add(filters.get(0)));
+
+        // Both configurations are cached
+        assertSame(filters, this.store.getFilters(SUB_WIKI));
+        assertEquals(1, this.store.getFilters(MAIN_WIKI).size());
+        verify(this.xwiki, times(1)).getDocument(MAIN_CONFIGURATION, this.xcontext);
+        verify(this.xwiki, times(1)).getDocument(SUB_CONFIGURATION, this.xcontext);
+    }
+
+    @Test
+    void concurrentLoadsAreSingleFlight() throws Exception
+    {
+        XWikiDocument document = mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        when(this.xwiki.getDocument(MAIN_CONFIGURATION, this.xcontext)).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+
+            return document;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<URLNormalizerFilter>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                results.add(executor.submit(() -> this.store.getFilters(MAIN_WIKI)));
+            }
+
+            assertTrue(loading.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            // Give the other threads the time to ask for the configuration being loaded
+            Thread.sleep(100);
+            release.countDown();
+
+            List<URLNormalizerFilter> filters = results.get(0).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            for (Future<List<URLNormalizerFilter>> result : results) {
+                assertSame(filters, result.get(TIMEOUT, TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateCreatesNewSnapshot() throws Exception
+    {
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+
+        List<URLNormalizerFilter> filters = this.store.getFilters(MAIN_WIKI);
+        long version = this.store.getVersion(MAIN_WIKI);
+        String fingerprint = this.store.getFingerprint(MAIN_WIKI);
+
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)", "http://other/(.*)");
+        this.store.invalidate(MAIN_WIKI.getName());
+
+        assertEquals(2, this.store.getFilters(MAIN_WIKI).size());
+        assertNotEquals(version, this.store.getVersion(MAIN_WIKI));
+        assertNotEquals(fingerprint, this.store.getFingerprint(MAIN_WIKI));
+
+        // The previous snapshot is left untouched
+        assertEquals(1, filters.size());
+
+        // The other members of the cluster are notified
+        verify(this.observationManager).notify(any(URLNormalizerConfigurationChangedEvent.class), isNull());
+    }
+
+    @Test
+    void invalidateRemote() throws Exception
+    {
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+
+        this.store.getFilters(MAIN_WIKI);
+
+        this.store.invalidateRemote(MAIN_WIKI.getName(), 42);
+        assertEquals(42, this.store.getVersion(MAIN_WIKI));
+
+        // Older versions still drop the configuration but don't lower the version
+        this.store.invalidateRemote(MAIN_WIKI.getName(), 41);
+        assertEquals(42, this.store.getVersion(MAIN_WIKI));
+        verify(this.xwiki, times(3)).getDocument(MAIN_CONFIGURATION, this.xcontext);
+
+        // Nothing is sent back to the cluster
+        verify(this.observationManager, never()).notify(any(), any());
+
+        // The local changes follow the changes received from the other members
+        this.store.invalidate(MAIN_WIKI.getName());
+        assertEquals(43, this.store.getVersion(MAIN_WIKI));
+    }
+
+    @Test
+    void invalidateWhileLoading() throws Exception
+    {
+        XWikiDocument document = mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+        when(this.xwiki.getDocument(MAIN_CONFIGURATION, this.xcontext)).thenAnswer(invocation -> {
+            // The configuration is modified while being loaded
+            this.store.invalidate(MAIN_WIKI.getName());
+
+            return document;
+        });
+
+        this.store.getFilters(MAIN_WIKI);
+
+        // The possibly outdated configuration is not cached
+        assertTrue(this.cachedValues.get("urlnormalizer.configuration").isEmpty());
+        assertTrue(this.cachedValues.get("urlnormalizer.configuration.local").isEmpty());
+    }
+
+    @Test
+    void invalidateMainWikiKeepsSubWikiFilters() throws Exception
+    {
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)");
+        XWikiDocument subConfiguration = mockConfiguration(SUB_CONFIGURATION, "http://sub/(.*)");
+        BaseObject configurationObject = mock(BaseObject.class);
+        when(configurationObject.getIntValue(URLNormalizerConfigurationClassInitializer.FIELD_ASYNCHRONOUS, -1))
+            .thenReturn(1);
+        when(configurationObject.getIntValue(URLNormalizerConfigurationClassInitializer.FIELD_ENABLED, -1))
+            .thenReturn(-1);
+        when(subConfiguration.getXObject(URLNormalizerConfigurationClassInitializer.CLASS_REFERENCE))
+            .thenReturn(configurationObject);
+
+        URLNormalizerFilter subFilter = this.store.getFilters(SUB_WIKI).get(0);
+        assertTrue(this.store.isAsynchronous(SUB_WIKI));
+        assertTrue(this.store.isEnabled(SUB_WIKI));
+
+        mockConfiguration(MAIN_CONFIGURATION, "http://main/(.*)", "http://other/(.*)");
+        this.store.invalidate(MAIN_WIKI.getName());
+
+        List<URLNormalizerFilter> filters = this.store.getFilters(SUB_WIKI);
+
+        // The main wiki filters are reloaded but the subwiki ones are reused
+        assertEquals(3, filters.size());
+        assertSame(subFilter, filters.get(0));
+        assertEquals("http://other/(.*)", filters.get(2).getLinkReference().pattern());
+        assertTrue(this.store.isAsynchronous(SUB_WIKI));
+        verify(this.xwiki, times(2)).getDocument(MAIN_CONFIGURATION, this.xcontext);
+        verify(this.xwiki, times(1)).getDocument(SUB_CONFIGURATION, this.xcontext);
+    }
+}
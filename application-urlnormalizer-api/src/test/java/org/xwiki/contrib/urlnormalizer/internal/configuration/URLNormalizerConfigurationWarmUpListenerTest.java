@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.Arrays;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link URLNormalizerConfigurationWarmUpListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class URLNormalizerConfigurationWarmUpListenerTest
+{
+    private static final long TIMEOUT = 10000;
+
+    @MockComponent
+    private URLNormalizerConfigurationStore store;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @InjectMockComponents
+    private URLNormalizerConfigurationWarmUpListener listener;
+
+    @Test
+    void warmUpWhenEnabled() throws Exception
+    {
+        when(this.configuration.getProperty(URLNormalizerConfigurationWarmUpListener.PROPERTY_WARMUP, false))
+            .thenReturn(true);
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("xwiki", "wiki1", "wiki2"));
+        when(this.store.getCacheCapacity()).thenReturn(100);
+        when(this.store.getFilterMatcher(new WikiReference("wiki1")))
+            .thenThrow(new NormalizationException("error"));
+
+        this.listener.onEvent(new ApplicationReadyEvent(), null, null);
+
+        // A failing wiki does not prevent loading the others
+        verify(this.store, timeout(TIMEOUT)).getFilterMatcher(new WikiReference("wiki2"));
+        verify(this.store).getFilterMatcher(new WikiReference("xwiki"));
+        verify(this.execution, timeout(TIMEOUT)).removeContext();
+    }
+
+    @Test
+    void warmUpStopsWhenCacheIsFull() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("xwiki", "wiki1", "wiki2"));
+        when(this.store.getCacheCapacity()).thenReturn(2);
+
+        this.listener.warmUp();
+
+        verify(this.store).getFilterMatcher(new WikiReference("xwiki"));
+        verify(this.store).getFilterMatcher(new WikiReference("wiki1"));
+        verify(this.store, never()).getFilterMatcher(new WikiReference("wiki2"));
+    }
+
+    @Test
+    void disabledByDefault() throws Exception
+    {
+        when(this.configuration.getProperty(URLNormalizerConfigurationWarmUpListener.PROPERTY_WARMUP, false))
+            .thenReturn(false);
+
+        this.listener.onEvent(new ApplicationReadyEvent(), null, null);
+
+        verify(this.store, after(100).never()).getFilterMatcher(any());
+        verify(this.wikiDescriptorManager, never()).getAllIds();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerFilterMatcher.Match;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link URLNormalizerFilterMatcher}.
+ *
+ * @version $Id$
+ */
+class URLNormalizerFilterMatcherTest
+{
+    private static URLNormalizerFilter filter(ResourceType type, String regex)
+    {
+        return new DefaultURLNormalizerFilter(type, Pattern.compile(regex), ResourceType.DOCUMENT, "${0}");
+    }
+
+    @Test
+    void find()
+    {
+        URLNormalizerFilter filter0 = filter(ResourceType.URL, "https://jira\\.example\\.org/browse/(.*)");
+        URLNormalizerFilter filter1 = filter(null, "https://.*");
+        URLNormalizerFilter filter2 = filter(ResourceType.URL, "https://wiki\\.example\\.org/(?<page>.*)");
+        URLNormalizerFilter filter3 = filter(ResourceType.DOCUMENT, "Space\\.(.*)");
+        URLNormalizerFilter filter4 = filter(ResourceType.URL, "(?i)HTTP://.*");
+
+        URLNormalizerFilterMatcher matcher =
+            new URLNormalizerFilterMatcher(Arrays.asList(filter0, filter1, null, filter2, filter3, filter4));
+
+        Match match = matcher.find(ResourceType.URL, "https://jira.example.org/browse/ISSUE-1");
+        assertSame(filter0, match.getFilter());
+        assertEquals("ISSUE-1", match.getMatcher().group(1));
+
+        // The first matching filter wins
+        assertSame(filter1, matcher.find(ResourceType.URL, "https://wiki.example.org/Page").getFilter());
+        assertSame(filter1, matcher.find(ResourceType.ATTACHMENT, "https://jira.example.org/").getFilter());
+
+        assertSame(filter3, matcher.find(ResourceType.DOCUMENT, "Space.Page").getFilter());
+        assertNull(matcher.find(ResourceType.URL, "Space.Page"));
+        assertNull(matcher.find(ResourceType.DOCUMENT, "Other.Page"));
+
+        // Case insensitive patterns are always tried
+        assertSame(filter4, matcher.find(ResourceType.URL, "http://www.xwiki.org").getFilter());
+        assertNull(matcher.find(ResourceType.DOCUMENT, "http://www.xwiki.org"));
+    }
+
+    @Test
+    void findWithoutFilters()
+    {
+        assertNull(new URLNormalizerFilterMatcher(Collections.emptyList()).find(ResourceType.URL, "http://www.xwiki.org"));
+    }
+}
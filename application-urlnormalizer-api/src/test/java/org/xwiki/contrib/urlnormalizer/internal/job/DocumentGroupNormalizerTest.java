@@ -0,0 +1,236 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.contrib.urlnormalizer.NormalizationReport;
+import org.xwiki.contrib.urlnormalizer.URLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeDocumentResult.Outcome;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DocumentGroupNormalizer}.
+ *
+ * @version $Id$
+ */
+class DocumentGroupNormalizerTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private static final DocumentReference AUTHOR = new DocumentReference("xwiki", "XWiki", "Author");
+
+    private static final DocumentReference USER = new DocumentReference("xwiki", "XWiki", "User");
+
+    private static final DocumentReference DOCUMENT1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private static final DocumentReference DOCUMENT2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private static final DocumentReference DOCUMENT3 = new DocumentReference("wiki", "Space", "Page3");
+
+    private static final DocumentReference DOCUMENT4 = new DocumentReference("wiki", "Space", "Page4");
+
+    private DocumentReferenceResolver<String> resolver = mock(DocumentReferenceResolver.class);
+
+    private AuthorizationManager authorizationManager = mock(AuthorizationManager.class);
+
+    private URLNormalizationManager urlNormalizationManager = mock(URLNormalizationManager.class);
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    @TempDir
+    File directory;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        when(this.resolver.resolve(any(String.class), any())).thenAnswer(
+            invocation -> new DocumentReference("wiki", "Space", invocation.<String>getArgument(0).substring(6)));
+
+        when(this.xcontext.getAuthorReference()).thenReturn(AUTHOR);
+        when(this.xcontext.getUserReference()).thenReturn(USER);
+
+        when(this.authorizationManager.hasAccess(any(), any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void split()
+    {
+        DocumentGroupNormalizer groupNormalizer = new DocumentGroupNormalizer(this.resolver,
+            this.authorizationManager, this.urlNormalizationManager, true, 2, null);
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e")),
+            groupNormalizer.split(Arrays.asList("a", "b", "c", "d", "e")));
+        assertEquals(Collections.emptyList(), groupNormalizer.split(Collections.emptyList()));
+    }
+
+    @Test
+    void normalize()
+    {
+        when(this.authorizationManager.hasAccess(Right.EDIT, AUTHOR, DOCUMENT1)).thenReturn(false);
+        when(this.authorizationManager.hasAccess(Right.EDIT, USER, DOCUMENT2)).thenReturn(false);
+
+        NormalizationException error = new NormalizationException("error");
+        NormalizationReport report = new NormalizationReport();
+        report.addResult(DOCUMENT3, true);
+        report.addFailure(DOCUMENT4, error);
+        when(this.urlNormalizationManager.normalize(Arrays.asList(DOCUMENT3, DOCUMENT4), Collections.emptyList(),
+            false)).thenReturn(report);
+
+        DocumentGroupNormalizer groupNormalizer = new DocumentGroupNormalizer(this.resolver,
+            this.authorizationManager, this.urlNormalizationManager, false, 10, null);
+
+        List<NormalizeDocumentResult> results = groupNormalizer
+            .normalize(Arrays.asList("Space.Page1", "Space.Page2", "Space.Page3", "Space.Page4"), WIKI, this.xcontext);
+
+        assertEquals(4, results.size());
+        assertEquals("Space.Page1", results.get(0).getDocument());
+        assertEquals(Outcome.AUTHOR_DENIED, results.get(0).getOutcome());
+        assertEquals(Outcome.USER_DENIED, results.get(1).getOutcome());
+        assertEquals(DOCUMENT3, results.get(2).getDocumentReference());
+        assertEquals(Outcome.NORMALIZED, results.get(2).getOutcome());
+        assertEquals(Outcome.FAILED, results.get(3).getOutcome());
+        assertSame(error, results.get(3).getError());
+
+        verify(this.urlNormalizationManager, never()).dryRun(any(), any(), any());
+    }
+
+    @Test
+    void logDenied()
+    {
+        DocumentGroupNormalizer groupNormalizer = new DocumentGroupNormalizer(this.resolver,
+            this.authorizationManager, this.urlNormalizationManager, false, 10, null);
+        Logger logger = mock(Logger.class);
+
+        groupNormalizer.log(new NormalizeDocumentResult("Space.Page1", DOCUMENT1, Outcome.AUTHOR_DENIED, null),
+            this.xcontext, logger);
+        groupNormalizer.log(new NormalizeDocumentResult("Space.Page2", DOCUMENT2, Outcome.USER_DENIED, null),
+            this.xcontext, logger);
+
+        verify(logger).error("The author [{}] doesn't have the right to normalize the document [{}].", AUTHOR,
+            DOCUMENT1);
+        verify(logger).error("The user [{}] doesn't have the right to normalize the document [{}].", USER,
+            DOCUMENT2);
+    }
+
+    @Test
+    void dryRun()
+    {
+        Consumer<URLRewrite> manifest = rewrite -> { };
+
+        NormalizationReport report = new NormalizationReport();
+        report.addResult(DOCUMENT1, false);
+        when(this.urlNormalizationManager.dryRun(Arrays.asList(DOCUMENT1), Collections.emptyList(), manifest))
+            .thenReturn(report);
+
+        DocumentGroupNormalizer groupNormalizer = new DocumentGroupNormalizer(this.resolver,
+            this.authorizationManager, this.urlNormalizationManager, true, 10, manifest);
+
+        List<NormalizeDocumentResult> results =
+            groupNormalizer.normalize(Arrays.asList("Space.Page1"), WIKI, this.xcontext);
+
+        assertEquals(Outcome.UNCHANGED, results.get(0).getOutcome());
+
+        verify(this.urlNormalizationManager, never()).normalize(anyCollection(), any(), anyBoolean());
+    }
+
+    @Test
+    void normalizeIncremental() throws Exception
+    {
+        XWiki xwiki = mock(XWiki.class);
+        when(this.xcontext.getWiki()).thenReturn(xwiki);
+        XWikiDocument document1 = mockDocument(DOCUMENT1, "content1", xwiki);
+        XWikiDocument document2 = mockDocument(DOCUMENT2, "content2", xwiki);
+        XWikiDocument document3 = mockDocument(DOCUMENT3, "content3", xwiki);
+
+        NormalizeJobIndex index = new NormalizeJobIndex(new File(this.directory, "index.tsv"), "configuration");
+        index.put("Space.Page1", NormalizeJobIndex.hash(document1), Outcome.UNCHANGED);
+        index.put("Space.Page2", "previous content", Outcome.UNCHANGED);
+        index.put("Space.Deleted", "deleted content", Outcome.UNCHANGED);
+
+        NormalizationReport report = new NormalizationReport();
+        report.addResult(DOCUMENT2, true);
+        report.addResult(DOCUMENT3, false);
+        when(this.urlNormalizationManager.normalize(Arrays.asList(DOCUMENT2, DOCUMENT3), Collections.emptyList(),
+            true)).thenReturn(report);
+        // The second call returns the saved content
+        when(document2.getContent()).thenReturn("content2", "normalized content2");
+
+        DocumentGroupNormalizer groupNormalizer = new DocumentGroupNormalizer(this.resolver,
+            this.authorizationManager, this.urlNormalizationManager, true, 10, null);
+        groupNormalizer.setIndex(WIKI, index);
+
+        List<NormalizeDocumentResult> results = groupNormalizer
+            .normalize(Arrays.asList("Space.Page1", "Space.Page2", "Space.Page3"), WIKI, this.xcontext);
+
+        assertEquals(Outcome.SKIPPED, results.get(0).getOutcome());
+        assertEquals(Outcome.NORMALIZED, results.get(1).getOutcome());
+        assertEquals(Outcome.UNCHANGED, results.get(2).getOutcome());
+
+        // The saved content is indexed
+        assertTrue(index.isUnchanged("Space.Page2", NormalizeJobIndex.hash(document2)));
+        assertFalse(index.isUnchanged("Space.Page2", "previous content"));
+        assertTrue(index.isUnchanged("Space.Page3", NormalizeJobIndex.hash(document3)));
+
+        // Only the enumerated documents are kept
+        assertEquals(1, index.prune());
+        assertEquals(3, index.size());
+    }
+
+    private XWikiDocument mockDocument(DocumentReference reference, String content, XWiki xwiki) throws Exception
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getContent()).thenReturn(content);
+        when(document.getXObjects()).thenReturn(Collections.emptyMap());
+        when(xwiki.getDocument(reference, this.xcontext)).thenReturn(document);
+
+        return document;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DocumentPager}.
+ *
+ * @version $Id$
+ */
+class DocumentPagerTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private EntityReferenceSerializer<String> localSerializer = mock(EntityReferenceSerializer.class);
+
+    @BeforeEach
+    void beforeEach()
+    {
+        when(this.localSerializer.serialize(any())).thenAnswer(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            return reference.getName();
+        });
+    }
+
+    @Test
+    void enumerateList() throws Exception
+    {
+        DocumentPager pager = new DocumentPager(Arrays.asList("C.WebHome", "A.WebHome", "B.WebHome", "A.WebHome"), 2,
+            null);
+
+        assertEquals(3, pager.count());
+        assertEquals(Arrays.asList("A.WebHome", "B.WebHome"), pager.next());
+        assertEquals(Collections.singletonList("C.WebHome"), pager.next());
+        assertTrue(pager.next().isEmpty());
+    }
+
+    @Test
+    void resumeList() throws Exception
+    {
+        DocumentPager pager = new DocumentPager(Arrays.asList("A.WebHome", "B.WebHome", "C.WebHome"), 10, "A.WebHome");
+
+        assertEquals(2, pager.count());
+        assertEquals(Arrays.asList("B.WebHome", "C.WebHome"), pager.next());
+        assertTrue(pager.next().isEmpty());
+    }
+
+    @Test
+    void enumerateScopedWiki() throws Exception
+    {
+        QueryManager queryManager = mock(QueryManager.class);
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(anyString(), anyString())).thenReturn(query);
+        when(query.setWiki(anyString())).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+        when(query.setLimit(anyInt())).thenReturn(query);
+        when(query.<String>execute()).thenReturn(Collections.singletonList("Migrated_Space.Sub.Page"));
+
+        DocumentPager pager = new DocumentPager(queryManager, WIKI, 10, null);
+        pager.setSpace(new SpaceReference("wiki", "Migrated_Space"), this.localSerializer);
+        pager.setWhere("doc.date > '2020-01-01'", Query.XWQL);
+
+        assertEquals(Collections.singletonList("Migrated_Space.Sub.Page"), pager.next());
+        assertTrue(pager.next().isEmpty());
+
+        verify(queryManager).createQuery("select distinct doc.fullName from Document doc"
+            + " where doc.fullName > :lastDocument and (doc.space = :space or doc.space like :spacePrefix escape '!')"
+            + " and (doc.date > '2020-01-01') order by doc.fullName", Query.XWQL);
+        verify(query).setWiki("wiki");
+        verify(query).bindValue("lastDocument", "");
+        verify(query).bindValue("space", "Migrated_Space");
+        verify(query).bindValue("spacePrefix", "Migrated!_Space.%");
+    }
+
+    @Test
+    void setSpaceFromAnotherWiki()
+    {
+        DocumentPager pager = new DocumentPager(mock(QueryManager.class), WIKI, 10, null);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> pager.setSpace(new SpaceReference("otherwiki", "Space"), this.localSerializer));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeDocumentResult.Outcome;
+import org.xwiki.rendering.syntax.Syntax;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link NormalizeJobIndex}.
+ *
+ * @version $Id$
+ */
+class NormalizeJobIndexTest
+{
+    @TempDir
+    File directory;
+
+    @Test
+    void isUnchanged()
+    {
+        NormalizeJobIndex index = new NormalizeJobIndex(new File(this.directory, "index.tsv"), "configuration");
+
+        index.put("Space.Normalized", "hash1", Outcome.NORMALIZED);
+        index.put("Space.Unchanged", "hash2", Outcome.UNCHANGED);
+        index.put("Space.Failed", "hash3", Outcome.FAILED);
+
+        assertTrue(index.isUnchanged("Space.Normalized", "hash1"));
+        assertTrue(index.isUnchanged("Space.Unchanged", "hash2"));
+        assertFalse(index.isUnchanged("Space.Normalized", "modified"));
+        assertFalse(index.isUnchanged("Space.Failed", "hash3"));
+        assertFalse(index.isUnchanged("Space.Unknown", "hash1"));
+
+        index.remove("Space.Unchanged");
+
+        assertFalse(index.isUnchanged("Space.Unchanged", "hash2"));
+    }
+
+    @Test
+    void saveAndLoad() throws Exception
+    {
+        File file = new File(this.directory, "wiki/index.tsv");
+
+        NormalizeJobIndex index = new NormalizeJobIndex(file, "configuration");
+        index.put("Space.Page", "hash", Outcome.UNCHANGED);
+        index.put("Space.Page\twith tab", "hash", Outcome.NORMALIZED);
+        index.save();
+
+        NormalizeJobIndex loadedIndex = new NormalizeJobIndex(file, "configuration");
+        loadedIndex.load();
+
+        assertEquals(2, loadedIndex.size());
+        assertTrue(loadedIndex.isUnchanged("Space.Page", "hash"));
+        assertTrue(loadedIndex.isUnchanged("Space.Page\twith tab", "hash"));
+
+        // The documents have to be normalized again when the configuration changed
+        NormalizeJobIndex reconfiguredIndex = new NormalizeJobIndex(file, "modified configuration");
+        reconfiguredIndex.load();
+
+        assertFalse(reconfiguredIndex.isUnchanged("Space.Page", "hash"));
+    }
+
+    @Test
+    void prune()
+    {
+        NormalizeJobIndex index = new NormalizeJobIndex(new File(this.directory, "index.tsv"), "configuration");
+        index.put("Space.Kept", "hash1", Outcome.NORMALIZED);
+        index.put("Space.Deleted", "hash2", Outcome.UNCHANGED);
+
+        index.visit("Space.Kept");
+        index.visit("Space.Denied");
+
+        assertEquals(1, index.prune());
+        assertEquals(1, index.size());
+        assertTrue(index.isUnchanged("Space.Kept", "hash1"));
+        assertFalse(index.isUnchanged("Space.Deleted", "hash2"));
+    }
+
+    @Test
+    void loadMissingFile() throws Exception
+    {
+        NormalizeJobIndex index = new NormalizeJobIndex(new File(this.directory, "missing.tsv"), "configuration");
+        index.load();
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void hash()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        when(document.getContent()).thenReturn("[[label>>http://host/xwiki/bin/view/Space/Page]]");
+        when(document.getXObjects()).thenReturn(Collections.emptyMap());
+
+        String hash = NormalizeJobIndex.hash(document);
+
+        assertEquals(hash, NormalizeJobIndex.hash(document));
+
+        when(document.getContent()).thenReturn("[[label>>doc:Space.Page]]");
+
+        assertNotEquals(hash, NormalizeJobIndex.hash(document));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.internal.job;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xwiki.contrib.urlnormalizer.URLRewrite;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link RewriteManifest}.
+ *
+ * @version $Id$
+ */
+class RewriteManifestTest
+{
+    @TempDir
+    File directory;
+
+    @Test
+    void write() throws Exception
+    {
+        EntityReferenceSerializer<String> serializer = mock(EntityReferenceSerializer.class);
+        when(serializer.serialize(any(EntityReference.class)))
+            .thenAnswer(invocation -> ((EntityReference) invocation.getArgument(0)).getName());
+
+        File file = new File(this.directory, "manifests/dryrun.tsv");
+        DocumentReference document = new DocumentReference("wiki", "Space", "Page");
+
+        try (RewriteManifest manifest = new RewriteManifest(file, serializer)) {
+            manifest.accept(new URLRewrite(document, document,
+                new ResourceReference("http://host/xwiki/bin/view/Space/Target", ResourceType.URL),
+                new ResourceReference("Space.Target", ResourceType.DOCUMENT), null));
+            manifest.accept(new URLRewrite(document, document,
+                new ResourceReference("http://host/a\tb", ResourceType.URL),
+                new ResourceReference("A\\B", ResourceType.DOCUMENT), "http://host/(.*)"));
+
+            assertEquals(2, manifest.getCount());
+        }
+
+        assertEquals(Arrays.asList("# document\tlocation\told reference\tnew reference\tfilter",
+            "Page\tPage\turl:http://host/xwiki/bin/view/Space/Target\tdoc:Space.Target\t-",
+            "Page\tPage\turl:http://host/a\\tb\tdoc:A\\\\B\thttp://host/(.*)"),
+            Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+}
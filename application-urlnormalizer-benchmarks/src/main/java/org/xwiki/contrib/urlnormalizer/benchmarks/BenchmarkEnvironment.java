@@ -0,0 +1,451 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.inject.Provider;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.ComponentDeclaration;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.container.Container;
+import org.xwiki.container.servlet.ServletRequest;
+import org.xwiki.contrib.urlnormalizer.DocumentNormalizer;
+import org.xwiki.contrib.urlnormalizer.URLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.ContentDocumentNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.DefaultURLNormalizationManager;
+import org.xwiki.contrib.urlnormalizer.internal.ImageXDOMNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.LinkXDOMNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.LocalHostTable;
+import org.xwiki.contrib.urlnormalizer.internal.LocalURLResourceReferenceNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.LocalURLValidator;
+import org.xwiki.contrib.urlnormalizer.internal.MacroXDOMNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.ObjectDocumentNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.ParserRendererCache;
+import org.xwiki.contrib.urlnormalizer.internal.ResourceReferenceNormalizationCache;
+import org.xwiki.contrib.urlnormalizer.internal.SupportedActionURLValidator;
+import org.xwiki.contrib.urlnormalizer.internal.URLCandidateScanner;
+import org.xwiki.contrib.urlnormalizer.internal.URLNormalizerMetrics;
+import org.xwiki.contrib.urlnormalizer.internal.URLRewriteRecorder;
+import org.xwiki.contrib.urlnormalizer.internal.XDOMNormalizer;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.DefaultURLNormalizerFilter;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerFilterMatcher;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.macro.MacroId;
+import org.xwiki.rendering.macro.MacroManager;
+import org.xwiki.rendering.macro.descriptor.ContentDescriptor;
+import org.xwiki.rendering.macro.descriptor.MacroDescriptor;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.resource.ResourceReferenceResolver;
+import org.xwiki.resource.ResourceTypeResolver;
+import org.xwiki.resource.entity.EntityResourceAction;
+import org.xwiki.resource.entity.EntityResourceReference;
+import org.xwiki.url.ExtendedURL;
+import org.xwiki.url.URLConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The normalization components wired together with the real xwiki/2.1 parser and renderer and mocks for the XWiki
+ * platform services (configuration, wiki descriptors, request, URL resolution).
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public class BenchmarkEnvironment
+{
+    /**
+     * The host of the local URLs.
+     */
+    public static final String HOST = "wiki.example.org";
+
+    /**
+     * The context path of the local URLs.
+     */
+    public static final String CONTEXT_PATH = "/xwiki";
+
+    private static final WikiReference WIKI = new WikiReference("xwiki");
+
+    private static final String XWIKI21 = Syntax.XWIKI_2_1.toIdString();
+
+    private static final String LOGGER = "logger";
+
+    private static final String METRICS = "metrics";
+
+    private static final String RECORDER = "recorder";
+
+    private final EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+
+    // Not registered in JMX
+    private final URLNormalizerMetrics metrics = new URLNormalizerMetrics();
+
+    // Never recording since the benchmarks don't run dry-runs
+    private final URLRewriteRecorder recorder = new URLRewriteRecorder();
+
+    private final Parser parser;
+
+    private final BlockRenderer renderer;
+
+    private final LocalURLResourceReferenceNormalizer referenceNormalizer;
+
+    private final XDOMNormalizer linkNormalizer;
+
+    private final XDOMNormalizer imageNormalizer;
+
+    private final XDOMNormalizer macroNormalizer;
+
+    private final ContentDocumentNormalizer contentNormalizer;
+
+    private final ObjectDocumentNormalizer objectNormalizer;
+
+    private final DefaultURLNormalizationManager manager;
+
+    /**
+     * @param filterCount the number of configured filters
+     * @param cache true if the normalized references should be cached
+     * @throws Exception when failing to initialize the environment
+     */
+    public BenchmarkEnvironment(int filterCount, boolean cache) throws Exception
+    {
+        // Only load the rendering and commons components, the rest is mocked
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        ClassLoader classLoader = getClass().getClassLoader();
+        List<ComponentDeclaration> declarations = new ArrayList<>();
+        Enumeration<URL> componentLists = classLoader.getResources(ComponentAnnotationLoader.COMPONENT_LIST);
+        while (componentLists.hasMoreElements()) {
+            URL componentList = componentLists.nextElement();
+            String location = componentList.toString();
+            if (location.contains("/xwiki-rendering-") || location.contains("/xwiki-commons-")) {
+                try (InputStream stream = componentList.openStream()) {
+                    declarations.addAll(loader.getDeclaredComponents(stream));
+                }
+            }
+        }
+        loader.initialize(this.componentManager, classLoader, declarations);
+
+        this.parser = this.componentManager.getInstance(Parser.class, XWIKI21);
+        this.renderer = this.componentManager.getInstance(BlockRenderer.class, XWIKI21);
+
+        WikiDescriptorManager wikiDescriptorManager = mockWikiDescriptorManager();
+        URLNormalizerConfigurationStore store = mockStore(filterCount);
+        LocalHostTable hostTable = createHostTable(wikiDescriptorManager);
+
+        this.referenceNormalizer = createReferenceNormalizer(store, wikiDescriptorManager, hostTable, cache);
+
+        this.linkNormalizer = new LinkXDOMNormalizer();
+        this.imageNormalizer = new ImageXDOMNormalizer();
+        for (XDOMNormalizer normalizer : new XDOMNormalizer[] {this.linkNormalizer, this.imageNormalizer}) {
+            ReflectionUtils.setFieldValue(normalizer, LOGGER, NOPLogger.NOP_LOGGER);
+            ReflectionUtils.setFieldValue(normalizer, "resourceReferenceNormalizer", this.referenceNormalizer);
+            ReflectionUtils.setFieldValue(normalizer, RECORDER, this.recorder);
+        }
+
+        this.macroNormalizer = new MacroXDOMNormalizer();
+        ReflectionUtils.setFieldValue(this.macroNormalizer, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(this.macroNormalizer, "macroManager", mockMacroManager());
+        ReflectionUtils.setFieldValue(this.macroNormalizer, "linkXDOMNormalizer", this.linkNormalizer);
+        ReflectionUtils.setFieldValue(this.macroNormalizer, "imageXDOMNormalizer", this.imageNormalizer);
+
+        URLCandidateScanner scanner = new URLCandidateScanner();
+        ReflectionUtils.setFieldValue(scanner, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(scanner, "store", store);
+        ReflectionUtils.setFieldValue(scanner, "wikiDescriptorManager", wikiDescriptorManager);
+        ReflectionUtils.setFieldValue(scanner, "hostTable", hostTable);
+
+        this.contentNormalizer = new ContentDocumentNormalizer();
+        this.objectNormalizer = new ObjectDocumentNormalizer();
+        for (DocumentNormalizer normalizer : new DocumentNormalizer[] {this.contentNormalizer,
+            this.objectNormalizer}) {
+            ReflectionUtils.setFieldValue(normalizer, "scanner", scanner);
+            ReflectionUtils.setFieldValue(normalizer, METRICS, this.metrics);
+            ReflectionUtils.setFieldValue(normalizer, RECORDER, this.recorder);
+            ReflectionUtils.setFieldValue(normalizer, "linkXDOMNormalizer", this.linkNormalizer);
+            ReflectionUtils.setFieldValue(normalizer, "imageXDOMNormalizer", this.imageNormalizer);
+            ReflectionUtils.setFieldValue(normalizer, "macroXDOMNormalizer", this.macroNormalizer);
+        }
+        ReflectionUtils.setFieldValue(this.objectNormalizer, "xcontextProvider",
+            (Provider<XWikiContext>) () -> null);
+
+        this.manager = createManager();
+    }
+
+    private WikiDescriptorManager mockWikiDescriptorManager() throws Exception
+    {
+        WikiDescriptor descriptor = mock(WikiDescriptor.class);
+        when(descriptor.getAliases()).thenReturn(Collections.singletonList(HOST));
+        when(descriptor.getPort()).thenReturn(-1);
+        when(descriptor.isSecure()).thenReturn(false);
+
+        WikiDescriptorManager wikiDescriptorManager = mock(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.getCurrentWikiId()).thenReturn(WIKI.getName());
+        when(wikiDescriptorManager.getCurrentWikiReference()).thenReturn(WIKI);
+        when(wikiDescriptorManager.getByAlias(HOST)).thenReturn(descriptor);
+        when(wikiDescriptorManager.getAll()).thenReturn(Collections.singletonList(descriptor));
+
+        return wikiDescriptorManager;
+    }
+
+    private URLNormalizerConfigurationStore mockStore(int filterCount) throws Exception
+    {
+        List<URLNormalizerFilter> filters = new ArrayList<>(filterCount);
+        for (int i = 0; i < filterCount; ++i) {
+            filters.add(new DefaultURLNormalizerFilter(ResourceType.URL,
+                Pattern.compile("https://jira" + i + "\\.example\\.org/browse/(?<issue>.*)"), ResourceType.DOCUMENT,
+                "Migrated" + i + ".${issue}"));
+        }
+        filters = Collections.unmodifiableList(filters);
+
+        URLNormalizerConfigurationStore store = mock(URLNormalizerConfigurationStore.class);
+        when(store.isEnabled(WIKI)).thenReturn(true);
+        when(store.getFilters(WIKI)).thenReturn(filters);
+        when(store.getFilterMatcher(WIKI)).thenReturn(new URLNormalizerFilterMatcher(filters));
+
+        return store;
+    }
+
+    private MacroManager mockMacroManager() throws Exception
+    {
+        ContentDescriptor contentDescriptor = mock(ContentDescriptor.class);
+        when(contentDescriptor.getType()).thenReturn(Block.LIST_BLOCK_TYPE);
+        MacroDescriptor macroDescriptor = mock(MacroDescriptor.class);
+        when(macroDescriptor.getContentDescriptor()).thenReturn(contentDescriptor);
+        Macro<?> macro = mock(Macro.class);
+        when(macro.getDescriptor()).thenReturn(macroDescriptor);
+
+        MacroManager macroManager = mock(MacroManager.class);
+        when(macroManager.getMacro(any(MacroId.class))).thenAnswer(invocation -> macro);
+
+        return macroManager;
+    }
+
+    private LocalHostTable createHostTable(WikiDescriptorManager wikiDescriptorManager) throws Exception
+    {
+        LocalHostTable hostTable = new LocalHostTable();
+        ReflectionUtils.setFieldValue(hostTable, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(hostTable, "wikiDescriptorManager", wikiDescriptorManager);
+        ReflectionUtils.setFieldValue(hostTable, "configurationSource", mock(ConfigurationSource.class));
+
+        return hostTable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private LocalURLResourceReferenceNormalizer createReferenceNormalizer(URLNormalizerConfigurationStore store,
+        WikiDescriptorManager wikiDescriptorManager, LocalHostTable hostTable, boolean cache) throws Exception
+    {
+        // Request
+        HttpServletRequest httpServletRequest = mock(HttpServletRequest.class);
+        when(httpServletRequest.getContextPath()).thenReturn(CONTEXT_PATH);
+        ServletRequest request = mock(ServletRequest.class);
+        when(request.getHttpServletRequest()).thenReturn(httpServletRequest);
+        Container container = mock(Container.class);
+        when(container.getRequest()).thenReturn(request);
+
+        // URL validation
+        URLConfiguration urlConfiguration = mock(URLConfiguration.class);
+        when(urlConfiguration.getURLFormatId()).thenReturn("standard");
+        LocalURLValidator localURLValidator = new LocalURLValidator();
+        ReflectionUtils.setFieldValue(localURLValidator, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(localURLValidator, "hostTable", hostTable);
+        ReflectionUtils.setFieldValue(localURLValidator, "urlConfiguration", urlConfiguration);
+
+        // URL resolution: /bin/view/<space>/<page>
+        org.xwiki.resource.ResourceType entityType = new org.xwiki.resource.ResourceType("entity");
+        ResourceTypeResolver<ExtendedURL> typeResolver = mock(ResourceTypeResolver.class);
+        when(typeResolver.resolve(any(ExtendedURL.class), any())).thenReturn(entityType);
+        ResourceReferenceResolver<ExtendedURL> resolver = mock(ResourceReferenceResolver.class);
+        when(resolver.resolve(any(ExtendedURL.class), eq(entityType), any())).thenAnswer(invocation -> {
+            List<String> segments = invocation.<ExtendedURL>getArgument(0).getSegments();
+            return new EntityResourceReference(new DocumentReference(WIKI.getName(), segments.get(2), segments.get(3)),
+                EntityResourceAction.VIEW);
+        });
+        EntityReferenceSerializer<String> serializer = mock(EntityReferenceSerializer.class);
+        when(serializer.serialize(any(EntityReference.class))).thenAnswer(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            return reference.getParent().getName() + '.' + reference.getName();
+        });
+
+        // Reference cache
+        CacheManager cacheManager = mock(CacheManager.class);
+        if (cache) {
+            when(cacheManager.createNewCache(any(CacheConfiguration.class))).thenAnswer(i -> new MapCache<>());
+        } else {
+            when(cacheManager.createNewCache(any(CacheConfiguration.class))).thenAnswer(i -> new MapCache<Object>()
+            {
+                @Override
+                public void set(String key, Object value)
+                {
+                    // Never remember anything
+                }
+            });
+        }
+        ResourceReferenceNormalizationCache referenceCache = new ResourceReferenceNormalizationCache();
+        ReflectionUtils.setFieldValue(referenceCache, "cacheManager", cacheManager);
+        referenceCache.initialize();
+
+        LocalURLResourceReferenceNormalizer normalizer = new LocalURLResourceReferenceNormalizer();
+        ReflectionUtils.setFieldValue(normalizer, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(normalizer, "container", container);
+        ReflectionUtils.setFieldValue(normalizer, "typeResolver", typeResolver);
+        ReflectionUtils.setFieldValue(normalizer, "resolver", resolver);
+        ReflectionUtils.setFieldValue(normalizer, "serializer", serializer);
+        ReflectionUtils.setFieldValue(normalizer, "localURLValidator", localURLValidator);
+        ReflectionUtils.setFieldValue(normalizer, "actionURLValidator", new SupportedActionURLValidator());
+        ReflectionUtils.setFieldValue(normalizer, "store", store);
+        ReflectionUtils.setFieldValue(normalizer, "wikiDescriptorManager", wikiDescriptorManager);
+        ReflectionUtils.setFieldValue(normalizer, "cache", referenceCache);
+        ReflectionUtils.setFieldValue(normalizer, METRICS, this.metrics);
+        ReflectionUtils.setFieldValue(normalizer, RECORDER, this.recorder);
+
+        return normalizer;
+    }
+
+    private DefaultURLNormalizationManager createManager() throws Exception
+    {
+        ComponentManager managerComponentManager = mock(ComponentManager.class);
+        when(managerComponentManager.getComponentDescriptor(Parser.class, XWIKI21))
+            .thenReturn(this.componentManager.getComponentDescriptor(Parser.class, XWIKI21));
+        when(managerComponentManager.getComponentDescriptor(BlockRenderer.class, XWIKI21))
+            .thenReturn(this.componentManager.getComponentDescriptor(BlockRenderer.class, XWIKI21));
+        when(managerComponentManager.getInstance(Parser.class, XWIKI21)).thenReturn(this.parser);
+        when(managerComponentManager.getInstance(BlockRenderer.class, XWIKI21)).thenReturn(this.renderer);
+        when(managerComponentManager.hasComponent(DocumentNormalizer.class, ContentDocumentNormalizer.HINT))
+            .thenReturn(true);
+        when(managerComponentManager.getInstance(DocumentNormalizer.class, ContentDocumentNormalizer.HINT))
+            .thenReturn(this.contentNormalizer);
+        when(managerComponentManager.hasComponent(DocumentNormalizer.class, ObjectDocumentNormalizer.HINT))
+            .thenReturn(true);
+        when(managerComponentManager.getInstance(DocumentNormalizer.class, ObjectDocumentNormalizer.HINT))
+            .thenReturn(this.objectNormalizer);
+
+        ParserRendererCache parserRendererCache = new ParserRendererCache();
+        ReflectionUtils.setFieldValue(parserRendererCache, "componentManager", managerComponentManager);
+
+        DefaultURLNormalizationManager normalizationManager = new DefaultURLNormalizationManager();
+        ReflectionUtils.setFieldValue(normalizationManager, LOGGER, NOPLogger.NOP_LOGGER);
+        ReflectionUtils.setFieldValue(normalizationManager, "componentManager", managerComponentManager);
+        ReflectionUtils.setFieldValue(normalizationManager, "parserRendererCache", parserRendererCache);
+        ReflectionUtils.setFieldValue(normalizationManager, METRICS, this.metrics);
+        ReflectionUtils.setFieldValue(normalizationManager, RECORDER, this.recorder);
+
+        return normalizationManager;
+    }
+
+    /**
+     * @return the xwiki/2.1 parser
+     */
+    public Parser getParser()
+    {
+        return this.parser;
+    }
+
+    /**
+     * @return the xwiki/2.1 renderer
+     */
+    public BlockRenderer getRenderer()
+    {
+        return this.renderer;
+    }
+
+    /**
+     * @return the resource reference normalizer
+     */
+    public LocalURLResourceReferenceNormalizer getReferenceNormalizer()
+    {
+        return this.referenceNormalizer;
+    }
+
+    /**
+     * @return the link XDOM normalizer
+     */
+    public XDOMNormalizer getLinkNormalizer()
+    {
+        return this.linkNormalizer;
+    }
+
+    /**
+     * @return the image XDOM normalizer
+     */
+    public XDOMNormalizer getImageNormalizer()
+    {
+        return this.imageNormalizer;
+    }
+
+    /**
+     * @return the macro XDOM normalizer
+     */
+    public XDOMNormalizer getMacroNormalizer()
+    {
+        return this.macroNormalizer;
+    }
+
+    /**
+     * @return the document content normalizer
+     */
+    public ContentDocumentNormalizer getContentNormalizer()
+    {
+        return this.contentNormalizer;
+    }
+
+    /**
+     * @return the document objects normalizer
+     */
+    public ObjectDocumentNormalizer getObjectNormalizer()
+    {
+        return this.objectNormalizer;
+    }
+
+    /**
+     * @return the normalization manager
+     */
+    public DefaultURLNormalizationManager getManager()
+    {
+        return this.manager;
+    }
+}
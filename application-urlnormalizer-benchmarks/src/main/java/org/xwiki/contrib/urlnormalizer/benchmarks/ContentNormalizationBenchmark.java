@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of the normalization of a document content: parsing, normalization of the XDOM and rendering.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentNormalizationBenchmark
+{
+    private static final int PARAGRAPHS = 200;
+
+    /**
+     * The kind of content to normalize.
+     */
+    @Param({ "link-heavy", "macro-nested", "no-candidate" })
+    public String content;
+
+    /**
+     * The number of configured filters.
+     */
+    @Param({ "0", "300" })
+    public int filters;
+
+    private BenchmarkEnvironment environment;
+
+    private String source;
+
+    private XWikiDocument document;
+
+    /**
+     * @throws Exception when failing to initialize the environment
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.environment = new BenchmarkEnvironment(this.filters, true);
+
+        switch (this.content) {
+            case "link-heavy":
+                this.source = SyntheticContent.linkHeavy(PARAGRAPHS);
+                break;
+            case "macro-nested":
+                this.source = SyntheticContent.macroNested(PARAGRAPHS, 3);
+                break;
+            default:
+                this.source = SyntheticContent.noCandidate(PARAGRAPHS);
+                break;
+        }
+
+        // A document parsing its content each time its XDOM is requested and rendering the XDOM it's given, like
+        // a document which was just loaded
+        Parser parser = this.environment.getParser();
+        BlockRenderer renderer = this.environment.getRenderer();
+        this.document = mock(XWikiDocument.class);
+        when(this.document.getDocumentReference()).thenReturn(new DocumentReference("xwiki", "Space", "Page"));
+        when(this.document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        when(this.document.getContent()).thenReturn(this.source);
+        when(this.document.getXDOM()).thenAnswer(invocation -> parser.parse(new StringReader(this.source)));
+        when(this.document.getXObjects()).thenReturn(Collections.emptyMap());
+        doAnswer(invocation -> {
+            renderer.render(invocation.<XDOM>getArgument(0), new DefaultWikiPrinter());
+            return null;
+        }).when(this.document).setContent(any(XDOM.class));
+    }
+
+    /**
+     * @return the parsed content
+     * @throws ParseException when failing to parse the content
+     */
+    @Benchmark
+    public XDOM parse() throws ParseException
+    {
+        return this.environment.getParser().parse(new StringReader(this.source));
+    }
+
+    /**
+     * @return true if the content was modified
+     * @throws NormalizationException when failing to normalize the content
+     */
+    @Benchmark
+    public boolean contentNormalizer() throws NormalizationException
+    {
+        return this.environment.getContentNormalizer().normalize(this.document, this.environment.getParser(),
+            this.environment.getRenderer());
+    }
+
+    /**
+     * @return true if the document was modified
+     * @throws NormalizationException when failing to normalize the document
+     */
+    @Benchmark
+    public boolean manager() throws NormalizationException
+    {
+        return this.environment.getManager().normalize(this.document);
+    }
+}
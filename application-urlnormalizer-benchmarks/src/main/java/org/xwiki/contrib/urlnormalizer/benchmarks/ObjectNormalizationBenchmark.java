@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.urlnormalizer.NormalizationException;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.classes.StringClass;
+import com.xpn.xwiki.objects.classes.TextAreaClass;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of the normalization of a document with many objects.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectNormalizationBenchmark
+{
+    /**
+     * The number of objects in the document.
+     */
+    @Param({ "10", "100" })
+    public int objects;
+
+    /**
+     * The number of configured filters.
+     */
+    @Param({ "0", "300" })
+    public int filters;
+
+    private BenchmarkEnvironment environment;
+
+    private XWikiDocument document;
+
+    /**
+     * @throws Exception when failing to initialize the environment
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.environment = new BenchmarkEnvironment(this.filters, true);
+
+        TextAreaClass wikiClass = mock(TextAreaClass.class);
+        when(wikiClass.isWikiContent()).thenReturn(true);
+        StringClass stringClass = mock(StringClass.class);
+
+        // Each object has two wiki TextArea properties and three String properties
+        List<BaseObject> xobjects = new ArrayList<>(this.objects);
+        for (int i = 0; i < this.objects; ++i) {
+            List<BaseProperty<?>> properties = new ArrayList<>();
+            for (int j = 0; j < 5; ++j) {
+                BaseProperty<?> property = mock(BaseProperty.class);
+                if (j < 2) {
+                    when(property.getPropertyClass(any())).thenReturn(wikiClass);
+                    when(property.getValue()).thenReturn(SyntheticContent.linkHeavy(2));
+                } else {
+                    when(property.getPropertyClass(any())).thenReturn(stringClass);
+                    when(property.getValue()).thenReturn(SyntheticContent.externalURL(j));
+                }
+                properties.add(property);
+            }
+
+            BaseObject xobject = mock(BaseObject.class);
+            when(xobject.getFieldList()).thenReturn(properties);
+            xobjects.add(xobject);
+        }
+
+        this.document = mock(XWikiDocument.class);
+        when(this.document.getXObjects()).thenReturn(
+            Collections.singletonMap(new DocumentReference("xwiki", "Space", "Class"), xobjects));
+    }
+
+    /**
+     * @return true if the objects were modified
+     * @throws NormalizationException when failing to normalize the objects
+     */
+    @Benchmark
+    public boolean objectNormalizer() throws NormalizationException
+    {
+        return this.environment.getObjectNormalizer().normalize(this.document, this.environment.getParser(),
+            this.environment.getRenderer());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.urlnormalizer.ResourceReferenceNormalizer;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+/**
+ * Cost of the normalization of a single resource reference.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceReferenceNormalizerBenchmark
+{
+    private static final int DISTINCT_REFERENCES = 20;
+
+    /**
+     * The number of configured filters.
+     */
+    @Param({ "0", "300" })
+    public int filters;
+
+    /**
+     * True if the normalized references are cached.
+     */
+    @Param({ "true", "false" })
+    public boolean cache;
+
+    private ResourceReferenceNormalizer normalizer;
+
+    private final ResourceReference[] localReferences = new ResourceReference[DISTINCT_REFERENCES];
+
+    private final ResourceReference[] filteredReferences = new ResourceReference[DISTINCT_REFERENCES];
+
+    private final ResourceReference[] externalReferences = new ResourceReference[DISTINCT_REFERENCES];
+
+    private int index;
+
+    /**
+     * @throws Exception when failing to initialize the normalizer
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.normalizer = new BenchmarkEnvironment(this.filters, this.cache).getReferenceNormalizer();
+
+        for (int i = 0; i < DISTINCT_REFERENCES; ++i) {
+            this.localReferences[i] = new ResourceReference(SyntheticContent.localURL(i), ResourceType.URL);
+            // Hit filters spread over the whole list
+            this.filteredReferences[i] = new ResourceReference(
+                SyntheticContent.filteredURL(i * Math.max(1, this.filters / DISTINCT_REFERENCES)), ResourceType.URL);
+            this.externalReferences[i] = new ResourceReference(SyntheticContent.externalURL(i), ResourceType.URL);
+        }
+    }
+
+    private int next()
+    {
+        this.index = (this.index + 1) % DISTINCT_REFERENCES;
+
+        return this.index;
+    }
+
+    /**
+     * @return the normalized reference
+     */
+    @Benchmark
+    public ResourceReference localURL()
+    {
+        return this.normalizer.normalize(this.localReferences[next()]);
+    }
+
+    /**
+     * @return the normalized reference
+     */
+    @Benchmark
+    public ResourceReference filteredURL()
+    {
+        return this.normalizer.normalize(this.filteredReferences[next()]);
+    }
+
+    /**
+     * @return the normalized reference
+     */
+    @Benchmark
+    public ResourceReference externalURL()
+    {
+        return this.normalizer.normalize(this.externalReferences[next()]);
+    }
+}
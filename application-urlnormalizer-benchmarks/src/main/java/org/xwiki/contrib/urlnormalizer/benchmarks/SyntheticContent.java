@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+/**
+ * Generate the synthetic wiki content used by the benchmarks.
+ *
+ * @version $Id$
+ * @since 1.9.1
+ */
+public final class SyntheticContent
+{
+    private SyntheticContent()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param index the index of the reference
+     * @return a local URL which is converted by the standard conversion
+     */
+    public static String localURL(int index)
+    {
+        return "http://" + BenchmarkEnvironment.HOST + BenchmarkEnvironment.CONTEXT_PATH + "/bin/view/Space" + index
+            + "/Page" + index;
+    }
+
+    /**
+     * @param index the index of the reference
+     * @return an URL matched by one of the configured filters
+     */
+    public static String filteredURL(int index)
+    {
+        return "https://jira" + index + ".example.org/browse/ISSUE-" + index;
+    }
+
+    /**
+     * @param index the index of the reference
+     * @return an URL which is not modified
+     */
+    public static String externalURL(int index)
+    {
+        return "https://www.example.com/page" + index;
+    }
+
+    /**
+     * @param paragraphs the number of paragraphs
+     * @return content with many links and images to local, filtered and external URLs
+     */
+    public static String linkHeavy(int paragraphs)
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < paragraphs; ++i) {
+            content.append("Paragraph ").append(i).append(" with a [[local link>>").append(localURL(i % 20))
+                .append("]], a [[filtered link>>").append(filteredURL(i % 20)).append("]], an [[external link>>")
+                .append(externalURL(i)).append("]] and [[image:").append(localURL(i % 20)).append("]]\n\n");
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * @param paragraphs the number of paragraphs
+     * @param depth the number of nested macros around each paragraph
+     * @return content with links inside nested wiki content macros
+     */
+    public static String macroNested(int paragraphs, int depth)
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < paragraphs; ++i) {
+            StringBuilder paragraph =
+                new StringBuilder("[[nested link>>").append(localURL(i % 20)).append("]] ").append(externalURL(i));
+            for (int j = 0; j < depth; ++j) {
+                paragraph.insert(0, "{{info}}\n").append("\n{{/info}}");
+            }
+            content.append(paragraph).append("\n\n");
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * @param paragraphs the number of paragraphs
+     * @return content without any reference which could be normalized
+     */
+    public static String noCandidate(int paragraphs)
+    {
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < paragraphs; ++i) {
+            content.append("Paragraph ").append(i).append(" with **bold** text, a [[wiki link>>Space.Page")
+                .append(i).append("]] and an [[external link>>").append(externalURL(i)).append("]]\n\n");
+        }
+
+        return content.toString();
+    }
+}
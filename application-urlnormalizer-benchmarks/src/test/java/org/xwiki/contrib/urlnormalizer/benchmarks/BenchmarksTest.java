@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.urlnormalizer.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.rendering.listener.reference.ResourceType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Run each benchmark once to make sure the benchmark environment still matches the normalizers (the benchmarks
+ * themselves are only run with the {@code benchmarks} profile).
+ *
+ * @version $Id$
+ */
+class BenchmarksTest
+{
+    @Test
+    void resourceReferenceNormalizer() throws Exception
+    {
+        ResourceReferenceNormalizerBenchmark benchmark = new ResourceReferenceNormalizerBenchmark();
+        benchmark.filters = 300;
+        benchmark.cache = false;
+        benchmark.setUp();
+
+        assertEquals(ResourceType.DOCUMENT, benchmark.localURL().getType());
+        assertEquals(ResourceType.DOCUMENT, benchmark.filteredURL().getType());
+        assertEquals(ResourceType.URL, benchmark.externalURL().getType());
+    }
+
+    @Test
+    void contentNormalization() throws Exception
+    {
+        ContentNormalizationBenchmark benchmark = new ContentNormalizationBenchmark();
+        benchmark.content = "link-heavy";
+        benchmark.filters = 300;
+        benchmark.setUp();
+
+        assertNotNull(benchmark.parse());
+        assertTrue(benchmark.contentNormalizer());
+        assertTrue(benchmark.manager());
+
+        benchmark.content = "no-candidate";
+        benchmark.setUp();
+
+        assertFalse(benchmark.contentNormalizer());
+        assertFalse(benchmark.manager());
+    }
+
+    @Test
+    void objectNormalization() throws Exception
+    {
+        ObjectNormalizationBenchmark benchmark = new ObjectNormalizationBenchmark();
+        benchmark.objects = 10;
+        benchmark.filters = 0;
+        benchmark.setUp();
+
+        assertTrue(benchmark.objectNormalizer());
+    }
+}
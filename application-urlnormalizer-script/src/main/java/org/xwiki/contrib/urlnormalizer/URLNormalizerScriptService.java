@@ -19,7 +19,9 @@
  */
 package org.xwiki.contrib.urlnormalizer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -33,9 +35,15 @@ import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.context.concurrent.ContextStoreManager;
+import org.xwiki.contrib.urlnormalizer.internal.URLNormalizerMetrics;
+import org.xwiki.contrib.urlnormalizer.internal.URLNormalizerMetricsMBean;
 import org.xwiki.contrib.urlnormalizer.internal.configuration.URLNormalizerConfigurationStore;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeFarmJob;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeFarmJobRequest;
 import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeJob;
 import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeJobRequest;
+import org.xwiki.contrib.urlnormalizer.internal.job.NormalizeJobStatus;
+import org.xwiki.job.AbstractRequest;
 import org.xwiki.job.Job;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
@@ -49,6 +57,7 @@ import org.xwiki.security.authorization.AccessDeniedException;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.internal.context.XWikiContextContextStore;
@@ -88,6 +97,12 @@ public class URLNormalizerScriptService implements ScriptService
     @Inject
     private URLNormalizerConfigurationStore configuration;
 
+    @Inject
+    private URLNormalizerMetrics metrics;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
     @Inject
     private Provider<XWikiContext> xcontextProvider;
 
@@ -105,6 +120,18 @@ public class URLNormalizerScriptService implements ScriptService
         return this.urlNormalizationManager;
     }
 
+    /**
+     * @return the counters and timings of the URL normalization, also exposed through JMX
+     * @throws AccessDeniedException the current author does not have programming right
+     * @since 1.9.1
+     */
+    public URLNormalizerMetricsMBean getMetrics() throws AccessDeniedException
+    {
+        this.contextualAuthorizationManager.checkAccess(Right.PROGRAM);
+
+        return this.metrics;
+    }
+
     /**
      * Normalize the given document. The current user should have edit rights on the document in order to normalize
      * while creating a new version.
@@ -144,6 +171,35 @@ public class URLNormalizerScriptService implements ScriptService
         }
     }
 
+    /**
+     * Normalize the given documents, saving each modified one on its own. The documents which the current user is not
+     * allowed to edit are skipped (and not part of the returned report).
+     *
+     * @param documentReferences the documents to normalize
+     * @param createNewVersion whether a new version of the documents should be created
+     * @return the result of the normalization of each document
+     * @throws AccessDeniedException the current author or current user is not allowed to modify a document without
+     *             incrementing the version
+     * @since 1.9.1
+     */
+    public NormalizationReport normalize(Collection<DocumentReference> documentReferences, boolean createNewVersion)
+        throws AccessDeniedException
+    {
+        List<DocumentReference> allowedDocuments = new ArrayList<>(documentReferences.size());
+        for (DocumentReference documentReference : documentReferences) {
+            checkCreateNewVersionRight(documentReference, createNewVersion);
+
+            if (this.contextualAuthorizationManager.hasAccess(Right.EDIT, documentReference)) {
+                allowedDocuments.add(documentReference);
+            } else {
+                this.logger.error("The user [{}] doesn't have the right to normalize the document [{}]",
+                    this.documentAccessBridge.getCurrentUserReference(), documentReference);
+            }
+        }
+
+        return this.urlNormalizationManager.normalize(allowedDocuments, Collections.emptyList(), createNewVersion);
+    }
+
     /**
      * Perform a simple normalization on the given document.
      *
@@ -169,7 +225,18 @@ public class URLNormalizerScriptService implements ScriptService
      */
     public JobStatus getNormalizeJobStatus(WikiReference wiki)
     {
-        List<String> jobId = NormalizeJobRequest.toJobId(wiki);
+        return getNormalizeJobStatus(wiki, false);
+    }
+
+    /**
+     * @param wiki the wiki associated with the job
+     * @param dryRun true for the status of the dry-run job
+     * @return the status of the current or last wiki normalize job
+     * @since 1.9.1
+     */
+    public JobStatus getNormalizeJobStatus(WikiReference wiki, boolean dryRun)
+    {
+        List<String> jobId = NormalizeJobRequest.toJobId(wiki, dryRun);
 
         // Try running job
         Job job = this.jobs.getJob(jobId);
@@ -195,10 +262,165 @@ public class URLNormalizerScriptService implements ScriptService
     public Job startNormalizeJob(WikiReference wiki, boolean createNewVersion)
         throws NormalizationException, JobException, AccessDeniedException
     {
-        checkCreateNewVersionRight(wiki, createNewVersion);
+        return startNormalizeJob(createNormalizeJobRequest(wiki, createNewVersion));
+    }
+
+    /**
+     * @param wiki the wiki to normalize
+     * @param createNewVersion whether a new version of the document should be created
+     * @param resume true if the job should restart from the last checkpoint of the previous job if it did not complete
+     * @return the started job
+     * @throws NormalizationException when failing to start the job
+     * @throws JobException when failing to start the job
+     * @throws AccessDeniedException the current author or current user is not allowed to modify a document without
+     *             incrementing the version
+     * @since 1.9.1
+     */
+    public Job startNormalizeJob(WikiReference wiki, boolean createNewVersion, boolean resume)
+        throws NormalizationException, JobException, AccessDeniedException
+    {
+        NormalizeJobRequest request = createNormalizeJobRequest(wiki, createNewVersion);
+
+        if (resume) {
+            JobStatus previousStatus = this.jobStore.getJobStatus(request.getId());
+
+            // The checkpoint of a job restricted to some documents is meaningless for the whole wiki
+            if (previousStatus instanceof NormalizeJobStatus && !((NormalizeJobStatus) previousStatus).isCompleted()
+                && !((NormalizeJobStatus) previousStatus).getRequest().isScoped()) {
+                request.setCheckpoint(((NormalizeJobStatus) previousStatus).getCheckpoint());
+            }
+        }
+
+        return startNormalizeJob(request);
+    }
+
+    /**
+     * Start a normalization which doesn't save anything but writes the references which would be rewritten to a
+     * manifest file, see {@link NormalizeJobStatus#getManifest()}.
+     *
+     * @param wiki the wiki to analyze
+     * @return the started job
+     * @throws NormalizationException when failing to start the job
+     * @throws JobException when failing to start the job
+     * @throws AccessDeniedException the current author or current user is not allowed to start the job
+     * @since 1.9.1
+     */
+    public Job startNormalizeDryRunJob(WikiReference wiki)
+        throws NormalizationException, JobException, AccessDeniedException
+    {
+        NormalizeJobRequest request = createNormalizeJobRequest(wiki, true);
+        request.setDryRun(true);
+
+        return startNormalizeJob(request);
+    }
+
+    /**
+     * Create a request which can be customized (number of threads, restriction to a space or to some documents, etc.)
+     * before being passed to {@link #startNormalizeJob(NormalizeJobRequest)}.
+     * 
+     * @param wiki the wiki to normalize
+     * @param createNewVersion whether a new version of the document should be created
+     * @return the request to pass to {@link #startNormalizeJob(NormalizeJobRequest)}
+     * @since 1.9.1
+     */
+    public NormalizeJobRequest createNormalizeJobRequest(WikiReference wiki, boolean createNewVersion)
+    {
+        return new NormalizeJobRequest(wiki, createNewVersion);
+    }
+
+    /**
+     * @param request the request created with {@link #createNormalizeJobRequest(WikiReference, boolean)}
+     * @return the started job
+     * @throws NormalizationException when failing to start the job
+     * @throws JobException when failing to start the job
+     * @throws AccessDeniedException the current author or current user is not allowed to modify a document without
+     *             incrementing the version, or the request contains a query condition and the current author does not
+     *             have programming right
+     * @since 1.9.1
+     */
+    public Job startNormalizeJob(NormalizeJobRequest request)
+        throws NormalizationException, JobException, AccessDeniedException
+    {
+        checkCreateNewVersionRight(request.getWikiReference(), request.isCreateNewVersion());
+
+        // The condition is inserted as is in the query enumerating the documents
+        if (request.getWhere() != null) {
+            this.contextualAuthorizationManager.checkAccess(Right.PROGRAM);
+        }
+
+        setContext(request);
+
+        return this.jobs.execute(NormalizeJob.JOBTYPE, request);
+    }
+
+    /**
+     * @return the status of the current or last farm normalize job
+     * @since 1.9.1
+     */
+    public JobStatus getNormalizeFarmJobStatus()
+    {
+        // Try running job
+        Job job = this.jobs.getJob(NormalizeFarmJobRequest.JOBID);
+
+        if (job != null) {
+            return job.getStatus();
+        }
+
+        // Try serialized job
+        return this.jobStore.getJobStatus(NormalizeFarmJobRequest.JOBID);
+    }
+
+    /**
+     * Create a request which can be customized (wikis, number of threads, etc.) before being passed to
+     * {@link #startNormalizeFarmJob(NormalizeFarmJobRequest)}.
+     * 
+     * @param createNewVersion whether a new version of the document should be created
+     * @return the request to pass to {@link #startNormalizeFarmJob(NormalizeFarmJobRequest)}
+     * @since 1.9.1
+     */
+    public NormalizeFarmJobRequest createNormalizeFarmJobRequest(boolean createNewVersion)
+    {
+        return new NormalizeFarmJobRequest(createNewVersion);
+    }
+
+    /**
+     * Normalize all the wikis of the farm.
+     * 
+     * @param createNewVersion whether a new version of the document should be created
+     * @return the started job
+     * @throws NormalizationException when failing to start the job
+     * @throws JobException when failing to start the job
+     * @throws AccessDeniedException the current author is not an administrator of the main wiki
+     * @since 1.9.1
+     */
+    public Job startNormalizeFarmJob(boolean createNewVersion)
+        throws NormalizationException, JobException, AccessDeniedException
+    {
+        return startNormalizeFarmJob(createNormalizeFarmJobRequest(createNewVersion));
+    }
 
-        NormalizeJobRequest request = new NormalizeJobRequest(wiki, createNewVersion);
+    /**
+     * @param request the request created with {@link #createNormalizeFarmJobRequest(boolean)}
+     * @return the started job
+     * @throws NormalizationException when failing to start the job
+     * @throws JobException when failing to start the job
+     * @throws AccessDeniedException the current author is not an administrator of the main wiki
+     * @since 1.9.1
+     */
+    public Job startNormalizeFarmJob(NormalizeFarmJobRequest request)
+        throws NormalizationException, JobException, AccessDeniedException
+    {
+        // Only farm administrators are allowed to normalize all the wikis at once
+        this.authorizationManager.checkAccess(Right.ADMIN, this.xcontextProvider.get().getAuthorReference(),
+            new WikiReference(this.wikiDescriptorManager.getMainWikiId()));
+
+        setContext(request);
+
+        return this.jobs.execute(NormalizeFarmJob.JOBTYPE, request);
+    }
 
+    private void setContext(AbstractRequest request) throws NormalizationException
+    {
         // Pass current user and author to the job
         try {
             request.setContext(this.contextStore
@@ -206,8 +428,6 @@ public class URLNormalizerScriptService implements ScriptService
         } catch (ComponentLookupException e) {
             throw new NormalizationException("Failed to get the current user and author", e);
         }
-
-        return this.jobs.execute(NormalizeJob.JOBTYPE, request);
     }
 
     private void checkCreateNewVersionRight(EntityReference entity, boolean createNewVersion)
@@ -241,4 +461,26 @@ public class URLNormalizerScriptService implements ScriptService
     {
         return this.configuration.isEnabled(wiki);
     }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @return the version of the configuration of the passed wiki currently applied by this member of the cluster
+     * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
+     */
+    public long getConfigurationVersion(WikiReference wiki) throws NormalizationException
+    {
+        return this.configuration.getVersion(wiki);
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @return true if saved documents are normalized in the background in the passed wiki
+     * @throws NormalizationException when failing to load the configuration
+     * @since 1.9.1
+     */
+    public boolean isAsynchronous(WikiReference wiki) throws NormalizationException
+    {
+        return this.configuration.isAsynchronous(wiki);
+    }
 }